@@ -3,6 +3,8 @@ package io.joshworks.fstore.codec.test;
 import io.joshworks.fstore.codec.snappy.LZ4Codec;
 import io.joshworks.fstore.codec.snappy.SnappyCodec;
 import io.joshworks.fstore.codec.std.DeflaterCodec;
+import io.joshworks.fstore.codec.std.DictionaryCodec;
+import io.joshworks.fstore.codec.std.DictionaryTrainer;
 import io.joshworks.fstore.core.codec.Codec;
 import io.joshworks.fstore.core.util.Size;
 import org.junit.Before;
@@ -11,6 +13,7 @@ import org.junit.Test;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -302,4 +305,19 @@ public abstract class CodecTest {
         }
     }
 
+    public static class DictionaryTest extends CodecTest {
+
+        @Override
+        public Codec codec() {
+            DictionaryTrainer trainer = new DictionaryTrainer(4096, Size.MB.ofInt(1));
+            for (int i = 0; i < 100; i++) {
+                String sample = "{\"type\":\"OrderPlaced\",\"orderId\":\"" + UUID.randomUUID() + "\",\"amount\":" + i + "}";
+                trainer.add(ByteBuffer.wrap(sample.getBytes(StandardCharsets.UTF_8)));
+            }
+            byte[] dictionary = trainer.train();
+            assertTrue(dictionary.length > 0);
+            return new DictionaryCodec(dictionary, Map.of(DictionaryCodec.dictionaryId(dictionary), dictionary)::get);
+        }
+    }
+
 }
\ No newline at end of file
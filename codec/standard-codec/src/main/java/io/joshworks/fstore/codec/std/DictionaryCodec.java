@@ -0,0 +1,100 @@
+package io.joshworks.fstore.codec.std;
+
+import io.joshworks.fstore.core.codec.Codec;
+import io.joshworks.fstore.core.hash.XXHash;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.function.IntFunction;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflate with a preset dictionary, suited for small records with lots of shared content (field names, event types)
+ * that a regular codec can't exploit on its own.
+ * <p>
+ * Compressed data is prefixed with the dictionary id (4 BYTES), so any block can be decompressed as long as
+ * the dictionary it was compressed with can be resolved by id.
+ * A codec created without a dictionary can only decompress.
+ */
+public class DictionaryCodec implements Codec {
+
+    private static final XXHash hasher = new XXHash();
+
+    private final byte[] dictionary;
+    private final int dictionaryId;
+    private final IntFunction<byte[]> dictionaries;
+
+    private final ThreadLocal<Deflater> deflater;
+    private final ThreadLocal<Inflater> inflater;
+
+    public DictionaryCodec(IntFunction<byte[]> dictionaries) {
+        this(null, dictionaries, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public DictionaryCodec(byte[] dictionary, IntFunction<byte[]> dictionaries) {
+        this(dictionary, dictionaries, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public DictionaryCodec(byte[] dictionary, IntFunction<byte[]> dictionaries, int level) {
+        this.dictionary = dictionary;
+        this.dictionaryId = dictionary == null ? 0 : dictionaryId(dictionary);
+        this.dictionaries = dictionaries;
+        this.deflater = ThreadLocal.withInitial(() -> new Deflater(level, true));
+        this.inflater = ThreadLocal.withInitial(() -> new Inflater(true));
+    }
+
+    public static int dictionaryId(byte[] dictionary) {
+        return hasher.hash32(dictionary);
+    }
+
+    public int dictionaryId() {
+        return dictionaryId;
+    }
+
+    @Override
+    public void compress(ByteBuffer src, ByteBuffer dst) {
+        if (dictionary == null) {
+            throw new IllegalStateException("No dictionary available, codec can only decompress");
+        }
+        Deflater instance = deflater.get();
+        try {
+            dst.putInt(dictionaryId);
+            instance.setDictionary(dictionary);
+            instance.setInput(src);
+            instance.finish();
+            while (!instance.finished()) {
+                if (!dst.hasRemaining()) {
+                    throw new BufferOverflowException();
+                }
+                instance.deflate(dst);
+            }
+        } finally {
+            instance.reset();
+        }
+    }
+
+    @Override
+    public void decompress(ByteBuffer src, ByteBuffer dst) {
+        int id = src.getInt();
+        byte[] dict = dictionaries.apply(id);
+        if (dict == null) {
+            throw new IllegalStateException("Dictionary not found: " + id);
+        }
+        Inflater instance = inflater.get();
+        try {
+            instance.setDictionary(dict);
+            instance.setInput(src);
+            while (!instance.finished()) {
+                int inflated = instance.inflate(dst);
+                if (inflated == 0 && (instance.needsInput() || !dst.hasRemaining())) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        } finally {
+            instance.reset();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package io.joshworks.fstore.codec.std;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Builds a {@link DictionaryCodec} dictionary from sample records.
+ * <p>
+ * Samples are split into fixed size segments, each segment is scored by how many other samples share its k-mers
+ * (approximated by a hashed counting table). Segments are then greedily picked, best first, discounting k-mers
+ * already covered by previously picked segments. The best segments are placed at the end of the dictionary
+ * as Deflate favours closer (shorter distance) matches.
+ * <p>
+ * Not thread safe
+ */
+public class DictionaryTrainer {
+
+    //Deflate window size, anything beyond this is unreachable
+    public static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+
+    private static final int KMER = 8;
+    private static final int SEGMENT_SIZE = 64;
+    private static final int TABLE_BITS = 18;
+    private static final int TABLE_MASK = (1 << TABLE_BITS) - 1;
+
+    private final int dictionarySize;
+    private final int maxSampleBytes;
+    private final List<byte[]> samples = new ArrayList<>();
+    private int sampleBytes;
+
+    public DictionaryTrainer(int dictionarySize, int maxSampleBytes) {
+        if (dictionarySize <= 0 || dictionarySize > MAX_DICTIONARY_SIZE) {
+            throw new IllegalArgumentException("Dictionary size must be between 1 and " + MAX_DICTIONARY_SIZE);
+        }
+        this.dictionarySize = dictionarySize;
+        this.maxSampleBytes = maxSampleBytes;
+    }
+
+    /**
+     * Adds the remaining bytes of the given buffer as a sample, buffer position is not modified
+     *
+     * @return false if the sample was not added because the sample limit has been reached
+     */
+    public boolean add(ByteBuffer sample) {
+        int len = sample.remaining();
+        if (len < KMER) {
+            return true;
+        }
+        if (sampleBytes + len > maxSampleBytes) {
+            return false;
+        }
+        byte[] copy = new byte[len];
+        sample.get(sample.position(), copy);
+        samples.add(copy);
+        sampleBytes += len;
+        return true;
+    }
+
+    public int samples() {
+        return samples.size();
+    }
+
+    public int sampleBytes() {
+        return sampleBytes;
+    }
+
+    public void clear() {
+        samples.clear();
+        sampleBytes = 0;
+    }
+
+    /**
+     * @return The trained dictionary, or null if samples don't have enough shared content
+     */
+    public byte[] train() {
+        int[] counts = new int[TABLE_MASK + 1];
+        int[] lastSeen = new int[TABLE_MASK + 1];
+
+        //number of distinct samples each k-mer appears in
+        for (int s = 0; s < samples.size(); s++) {
+            byte[] sample = samples.get(s);
+            for (int i = 0; i + KMER <= sample.length; i++) {
+                int slot = slot(sample, i);
+                if (lastSeen[slot] != s + 1) {
+                    lastSeen[slot] = s + 1;
+                    counts[slot]++;
+                }
+            }
+        }
+
+        PriorityQueue<Segment> candidates = new PriorityQueue<>((a, b) -> Long.compare(b.score, a.score));
+        for (byte[] sample : samples) {
+            for (int offset = 0; offset + KMER <= sample.length; offset += SEGMENT_SIZE) {
+                int len = Math.min(SEGMENT_SIZE, sample.length - offset);
+                var segment = new Segment(sample, offset, len);
+                segment.score = score(segment, counts);
+                if (segment.score > 0) {
+                    candidates.add(segment);
+                }
+            }
+        }
+
+        List<Segment> selected = new ArrayList<>();
+        int size = 0;
+        while (!candidates.isEmpty() && size < dictionarySize) {
+            Segment segment = candidates.poll();
+            //lazy greedy: scores only decrease, re-score and put back if no longer the best
+            long score = score(segment, counts);
+            if (score <= 0) {
+                continue;
+            }
+            if (score < segment.score && !candidates.isEmpty() && score < candidates.peek().score) {
+                segment.score = score;
+                candidates.add(segment);
+                continue;
+            }
+            for (int i = segment.offset; i + KMER <= segment.offset + segment.length; i++) {
+                counts[slot(segment.sample, i)] = 0;
+            }
+            selected.add(segment);
+            size += segment.length;
+        }
+
+        if (selected.isEmpty()) {
+            return null;
+        }
+
+        //best segments go last, closest to the data being compressed
+        byte[] dictionary = new byte[Math.min(size, dictionarySize)];
+        int pos = dictionary.length;
+        for (Segment segment : selected) {
+            int len = Math.min(segment.length, pos);
+            pos -= len;
+            System.arraycopy(segment.sample, segment.offset, dictionary, pos, len);
+            if (pos == 0) {
+                break;
+            }
+        }
+        return dictionary;
+    }
+
+    private static long score(Segment segment, int[] counts) {
+        long score = 0;
+        for (int i = segment.offset; i + KMER <= segment.offset + segment.length; i++) {
+            int count = counts[slot(segment.sample, i)];
+            //k-mers found in a single sample don't help across records
+            score += count > 1 ? count : 0;
+        }
+        return score;
+    }
+
+    private static int slot(byte[] data, int offset) {
+        long k = 0;
+        for (int i = 0; i < KMER; i++) {
+            k = (k << 8) | (data[offset + i] & 0xFF);
+        }
+        k *= 0x9E3779B97F4A7C15L;
+        return (int) (k >>> (Long.SIZE - TABLE_BITS)) & TABLE_MASK;
+    }
+
+    private static final class Segment {
+        private final byte[] sample;
+        private final int offset;
+        private final int length;
+        private long score;
+
+        private Segment(byte[] sample, int offset, int length) {
+            this.sample = sample;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+}
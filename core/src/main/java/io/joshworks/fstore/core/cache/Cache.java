@@ -1,5 +1,11 @@
 package io.joshworks.fstore.core.cache;
 
+import io.joshworks.fstore.core.Serializer;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.ToIntBiFunction;
+
 public interface Cache<K, V> {
 
     void add(K key, V newValue);
@@ -16,7 +22,33 @@ public interface Cache<K, V> {
         return size > 0 ? new LRUCache<>(size, maxAgeSec) : new NoCache<>();
     }
 
-    //TODO SOFT MAP accumulating too much memory
+    /**
+     * Scan resistant W-TinyLFU cache holding up to maxEntries
+     */
+    static <K, V> Cache<K, V> tinyLfu(long maxEntries) {
+        return maxEntries > 0 ? new TinyLfuCache<>(maxEntries, (k, v) -> 1, null, Runnable::run) : new NoCache<>();
+    }
+
+    /**
+     * Scan resistant W-TinyLFU cache bounded by the total weight (e.g. bytes) of its entries,
+     * the listener is called in the common pool
+     */
+    static <K, V> Cache<K, V> tinyLfu(long maxWeight, ToIntBiFunction<K, V> weigher, RemovalListener<K, V> listener) {
+        return tinyLfu(maxWeight, weigher, listener, ForkJoinPool.commonPool());
+    }
+
+    static <K, V> Cache<K, V> tinyLfu(long maxWeight, ToIntBiFunction<K, V> weigher, RemovalListener<K, V> listener, Executor executor) {
+        return maxWeight > 0 ? new TinyLfuCache<>(maxWeight, weigher, listener, executor) : new NoCache<>();
+    }
+
+    /**
+     * Cache with serialized keys and values stored in direct memory, see {@link OffHeapCache}. Must be closed to release the memory.
+     */
+    static <K, V> OffHeapCache<K, V> offHeap(long capacityInBytes, int slotSize, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        return new OffHeapCache<>(capacityInBytes, slotSize, keySerializer, valueSerializer);
+    }
+
+    //TODO SOFT MAP accumulating too much memory, prefer tinyLfu
     static <K, V> Cache<K, V> softCache() {
         return new SoftCache<>();
     }
@@ -0,0 +1,96 @@
+package io.joshworks.fstore.core.cache;
+
+/**
+ * Count-min sketch of 4 bit counters estimating how often a key has been seen, used for TinyLFU admission.
+ * Each long holds 16 counters, a key maps to one counter in each of 4 longs.
+ * All counters are halved once the number of increments reaches 10x the table size, so old popularity fades.
+ * <p>
+ * NOT THREAD SAFE
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+    private static final int MAX_COUNT = 15;
+
+    private long[] table = new long[0];
+    private int tableMask;
+    private int sampleSize;
+    private int size;
+
+    /**
+     * Grows the sketch to track about the given number of keys, counts are lost when growing
+     */
+    void ensureCapacity(long keys) {
+        int capacity = (int) Math.min(Math.max(keys, 16), 1 << 24);
+        if (table.length >= capacity) {
+            return;
+        }
+        table = new long[Integer.highestOneBit(capacity - 1) << 1];
+        tableMask = table.length - 1;
+        sampleSize = 10 * table.length;
+        size = 0;
+    }
+
+    int capacity() {
+        return table.length;
+    }
+
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++size == sampleSize) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int index, int counter) {
+        int offset = counter << 2;
+        long mask = 0xfL << offset;
+        if ((table[index] & mask) != ((long) MAX_COUNT << offset)) {
+            table[index] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    //halves all counters, odd counters lose their remainder, which is discounted from the size
+    private void reset() {
+        int odd = 0;
+        for (int i = 0; i < table.length; i++) {
+            odd += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size >>> 1) - (odd >>> 2);
+    }
+
+    private int indexOf(int hash, int depth) {
+        long h = (hash + SEEDS[depth]) * SEEDS[depth];
+        h += h >>> 32;
+        return ((int) h) & tableMask;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+
+}
@@ -0,0 +1,405 @@
+package io.joshworks.fstore.core.cache;
+
+import io.joshworks.fstore.core.Serializer;
+import io.joshworks.fstore.core.hash.Murmur3;
+import io.joshworks.fstore.core.io.buffers.Buffers;
+import io.joshworks.fstore.core.metrics.Counter;
+import io.joshworks.fstore.core.metrics.Metrics;
+import io.joshworks.fstore.core.metrics.Monitored;
+import io.joshworks.fstore.core.util.MappedByteBuffers;
+
+import java.io.Closeable;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cache that keeps keys and values serialized in direct memory, so the cached data puts no pressure on the GC.
+ * <p>
+ * Memory is split into segments, each with its own lock, a fixed number of fixed size slots and an open addressing
+ * hash table (int array, linear probing) pointing to the slots. Each slot holds one entry:
+ *
+ * <pre>
+ * HASH (4 BYTES)
+ * KEY_LENGTH (4 BYTES)
+ * VALUE_LENGTH (4 BYTES)
+ * KEY (N BYTES)
+ * VALUE (N BYTES)
+ * </pre>
+ * <p>
+ * Entries that don't fit in a slot are not cached, slot size should match the entries being cached (e.g. index entries or blocks).
+ * A full segment evicts with CLOCK: a referenced bit per slot is set on access and cleared by the clock hand, the first
+ * unreferenced slot is evicted. On heap footprint is 9 to 17 bytes per slot: one clock byte plus 2 to 4 table ints,
+ * the table being the next power of two of twice the slots (at most half full).
+ * Values returned by {@link #get(Object)} are new instances deserialized on each call.
+ */
+public class OffHeapCache<K, V> implements Cache<K, V>, Monitored, Closeable {
+
+    static final int HEADER_BYTES = Integer.BYTES * 3;
+    private static final int MAX_SEGMENT_BYTES = 1 << 30;
+    private static final int MIN_SEGMENTS = 16;
+
+    private static final byte UNREFERENCED = 0;
+    private static final byte REFERENCED = 1;
+    private static final byte FREE = 2;
+
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private final int slotSize;
+    private final Segment[] segments;
+    private final int segmentShift;
+    private final ThreadLocal<ByteBuffer> scratch;
+
+    private final Metrics metrics = new Metrics();
+    private final Counter hits = metrics.counter("hits");
+    private final Counter misses = metrics.counter("misses");
+    private final Counter evictions = metrics.counter("evictions");
+    private final Counter rejected = metrics.counter("rejected");
+
+    /**
+     * @param capacityInBytes total direct memory used by the cache
+     * @param slotSize        bytes per entry, including a {@link #HEADER_BYTES} header
+     */
+    public OffHeapCache(long capacityInBytes, int slotSize, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        if (slotSize <= HEADER_BYTES) {
+            throw new IllegalArgumentException("Slot size must be greater than " + HEADER_BYTES);
+        }
+        long minSegments = Math.max(MIN_SEGMENTS, (capacityInBytes + MAX_SEGMENT_BYTES - 1) / MAX_SEGMENT_BYTES);
+        int numSegments = Integer.highestOneBit((int) minSegments - 1) << 1;
+        int slotsPerSegment = (int) (capacityInBytes / numSegments / slotSize);
+        if (slotsPerSegment <= 0) {
+            throw new IllegalArgumentException("Capacity must hold at least one slot per segment: " + numSegments * (long) slotSize + " bytes");
+        }
+
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.slotSize = slotSize;
+        this.segmentShift = 32 - Integer.numberOfTrailingZeros(numSegments);
+        this.segments = new Segment[numSegments];
+        for (int i = 0; i < numSegments; i++) {
+            segments[i] = new Segment(slotsPerSegment, slotSize, evictions);
+        }
+        this.scratch = ThreadLocal.withInitial(() -> ByteBuffer.allocate(slotSize));
+    }
+
+    @Override
+    public void add(K key, V newValue) {
+        ByteBuffer entry = scratch.get().clear();
+        int keyLen;
+        int valueLen;
+        try {
+            entry.position(HEADER_BYTES);
+            keySerializer.writeTo(key, entry);
+            keyLen = entry.position() - HEADER_BYTES;
+            valueSerializer.writeTo(newValue, entry);
+            valueLen = entry.position() - HEADER_BYTES - keyLen;
+        } catch (BufferOverflowException e) {
+            //too large, make sure a previous value is not returned
+            rejected.increment();
+            remove(key);
+            return;
+        }
+        int hash = Murmur3.hash32(entry, HEADER_BYTES, keyLen);
+        entry.putInt(0, hash).putInt(4, keyLen).putInt(8, valueLen).flip();
+        segment(hash).put(hash, entry, keyLen);
+    }
+
+    @Override
+    public V get(K key) {
+        ByteBuffer buffer = serializeKey(key);
+        if (buffer == null) {
+            misses.increment();
+            return null;
+        }
+        int hash = Murmur3.hash32(buffer, 0, buffer.remaining());
+        int valueLen = segment(hash).get(hash, buffer);
+        if (valueLen < 0) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return valueSerializer.fromBytes(buffer.limit(valueLen).position(0));
+    }
+
+    @Override
+    public V remove(K key) {
+        ByteBuffer buffer = serializeKey(key);
+        if (buffer == null) {
+            return null;
+        }
+        int hash = Murmur3.hash32(buffer, 0, buffer.remaining());
+        int valueLen = segment(hash).remove(hash, buffer);
+        return valueLen < 0 ? null : valueSerializer.fromBytes(buffer.limit(valueLen).position(0));
+    }
+
+    //key bytes in the scratch buffer, or null if the key doesn't fit in a slot
+    private ByteBuffer serializeKey(K key) {
+        ByteBuffer buffer = scratch.get().clear();
+        try {
+            keySerializer.writeTo(key, buffer);
+        } catch (BufferOverflowException e) {
+            return null;
+        }
+        return buffer.flip();
+    }
+
+    private Segment segment(int hash) {
+        return segments[hash >>> segmentShift];
+    }
+
+    @Override
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Max number of entries
+     */
+    public long capacity() {
+        return (long) segments.length * segments[0].slots;
+    }
+
+    @Override
+    public Metrics metrics() {
+        metrics.set("size", size());
+        metrics.set("capacity", capacity());
+        return metrics;
+    }
+
+    /**
+     * Frees the direct memory right away instead of waiting for GC. Entries are dropped and further puts fail.
+     */
+    @Override
+    public void close() {
+        for (Segment segment : segments) {
+            segment.close();
+        }
+    }
+
+    //smallest power of two >= 2 * slots, keeps linear probing chains short
+    static int tableSize(int slots) {
+        int min = Math.max(1, slots) * 2;
+        return Integer.highestOneBit(min - 1) << 1;
+    }
+
+    private static final class Segment {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final int slots;
+        private final int slotSize;
+        private final Counter evictions;
+        private final byte[] clock;
+        //slot + 1, zero means empty
+        private final int[] table;
+        private final int tableMask;
+        private ByteBuffer memory;
+        private int hand;
+        private int size;
+
+        private Segment(int slots, int slotSize, Counter evictions) {
+            this.slots = slots;
+            this.slotSize = slotSize;
+            this.evictions = evictions;
+            this.memory = ByteBuffer.allocateDirect(slots * slotSize);
+            this.clock = new byte[slots];
+            this.table = new int[tableSize(slots)];
+            this.tableMask = table.length - 1;
+            Arrays.fill(clock, FREE);
+        }
+
+        private void put(int hash, ByteBuffer entry, int keyLen) {
+            lock.lock();
+            try {
+                if (memory == null) {
+                    throw new IllegalStateException("Cache is closed");
+                }
+                int idx = find(hash, entry, HEADER_BYTES, keyLen);
+                int slot;
+                if (idx >= 0) {
+                    slot = table[idx] - 1;
+                } else {
+                    slot = allocate();
+                    insert(hash, slot);
+                    size++;
+                }
+                Buffers.copy(entry, 0, entry.remaining(), memory, slot * slotSize);
+                clock[slot] = REFERENCED;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        //copies the value to dst, returns its length or -1 if not found
+        private int get(int hash, ByteBuffer key) {
+            lock.lock();
+            try {
+                int idx = find(hash, key, 0, key.remaining());
+                if (idx < 0) {
+                    return -1;
+                }
+                int slot = table[idx] - 1;
+                clock[slot] = REFERENCED;
+                return copyValue(slot, key);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private int remove(int hash, ByteBuffer key) {
+            lock.lock();
+            try {
+                int idx = find(hash, key, 0, key.remaining());
+                if (idx < 0) {
+                    return -1;
+                }
+                int slot = table[idx] - 1;
+                int valueLen = copyValue(slot, key);
+                delete(idx);
+                clock[slot] = FREE;
+                size--;
+                return valueLen;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private int copyValue(int slot, ByteBuffer dst) {
+            int base = slot * slotSize;
+            int keyLen = memory.getInt(base + 4);
+            int valueLen = memory.getInt(base + 8);
+            Buffers.copy(memory, base + HEADER_BYTES + keyLen, valueLen, dst.clear(), 0);
+            return valueLen;
+        }
+
+        //table index of the key, or -1
+        private int find(int hash, ByteBuffer key, int keyOffset, int keyLen) {
+            for (int i = hash & tableMask; ; i = (i + 1) & tableMask) {
+                int ref = table[i];
+                if (ref == 0) {
+                    return -1;
+                }
+                int base = (ref - 1) * slotSize;
+                if (memory.getInt(base) == hash && memory.getInt(base + 4) == keyLen && keyEquals(base + HEADER_BYTES, key, keyOffset, keyLen)) {
+                    return i;
+                }
+            }
+        }
+
+        private boolean keyEquals(int pos, ByteBuffer key, int keyOffset, int keyLen) {
+            int i = 0;
+            for (; i + Long.BYTES <= keyLen; i += Long.BYTES) {
+                if (memory.getLong(pos + i) != key.getLong(keyOffset + i)) {
+                    return false;
+                }
+            }
+            for (; i < keyLen; i++) {
+                if (memory.get(pos + i) != key.get(keyOffset + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void insert(int hash, int slot) {
+            int i = hash & tableMask;
+            while (table[i] != 0) {
+                i = (i + 1) & tableMask;
+            }
+            table[i] = slot + 1;
+        }
+
+        //backward shift deletion, keeps probe sequences intact without tombstones
+        private void delete(int idx) {
+            int hole = idx;
+            for (int i = (idx + 1) & tableMask; table[i] != 0; i = (i + 1) & tableMask) {
+                int home = memory.getInt((table[i] - 1) * slotSize) & tableMask;
+                boolean reachable = hole <= i ? (hole < home && home <= i) : (hole < home || home <= i);
+                if (!reachable) {
+                    table[hole] = table[i];
+                    hole = i;
+                }
+            }
+            table[hole] = 0;
+        }
+
+        private int allocate() {
+            while (true) {
+                int slot = hand;
+                hand = (hand + 1) % slots;
+                if (clock[slot] == FREE) {
+                    return slot;
+                }
+                if (clock[slot] == REFERENCED) {
+                    clock[slot] = UNREFERENCED;
+                    continue;
+                }
+                evict(slot);
+                return slot;
+            }
+        }
+
+        private void evict(int slot) {
+            int hash = memory.getInt(slot * slotSize);
+            for (int i = hash & tableMask; ; i = (i + 1) & tableMask) {
+                if (table[i] == slot + 1) {
+                    delete(i);
+                    break;
+                }
+            }
+            clock[slot] = FREE;
+            size--;
+            evictions.increment();
+        }
+
+        private void clear() {
+            lock.lock();
+            try {
+                Arrays.fill(table, 0);
+                Arrays.fill(clock, FREE);
+                size = 0;
+                hand = 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private int size() {
+            lock.lock();
+            try {
+                return size;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        //freed under the lock, so no reader can access it afterwards
+        private void close() {
+            lock.lock();
+            try {
+                if (memory == null) {
+                    return;
+                }
+                MappedByteBuffers.free(memory);
+                memory = null;
+                Arrays.fill(table, 0);
+                Arrays.fill(clock, FREE);
+                size = 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+}
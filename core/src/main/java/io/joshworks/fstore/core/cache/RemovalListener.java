@@ -0,0 +1,26 @@
+package io.joshworks.fstore.core.cache;
+
+/**
+ * Notified when an entry leaves the cache, called asynchronously
+ */
+@FunctionalInterface
+public interface RemovalListener<K, V> {
+
+    void onRemoval(K key, V value, Cause cause);
+
+    enum Cause {
+        /**
+         * Removed by {@link Cache#remove(Object)} or {@link Cache#clear()}
+         */
+        EXPLICIT,
+        /**
+         * Value replaced by {@link Cache#add(Object, Object)}
+         */
+        REPLACED,
+        /**
+         * Evicted, or not admitted, due to the cache capacity
+         */
+        SIZE
+    }
+
+}
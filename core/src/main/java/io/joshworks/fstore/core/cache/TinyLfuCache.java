@@ -0,0 +1,385 @@
+package io.joshworks.fstore.core.cache;
+
+import io.joshworks.fstore.core.metrics.Counter;
+import io.joshworks.fstore.core.metrics.Metrics;
+import io.joshworks.fstore.core.metrics.Monitored;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * Weight bounded cache with W-TinyLFU eviction.
+ * <p>
+ * New entries go to a small LRU window (1% of the capacity). Entries leaving the window only enter the main space
+ * (segmented LRU, 20% probation and 80% protected) if they have been seen more often than the probation entry they
+ * would evict, according to a {@link FrequencySketch} of recent accesses. One-hit keys from a large scan never get
+ * past the window, while frequently used entries are kept.
+ * <p>
+ * Reads are lock free, accesses are recorded in a lossy buffer and applied to the policy in batches.
+ * Writes are serialized by a lock. Removal listeners are called in the given executor.
+ */
+class TinyLfuCache<K, V> implements Cache<K, V>, Monitored {
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+    private static final int DEAD = 3;
+
+    private static final int READ_BUFFER_SIZE = 256;
+    private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+    private static final int DRAIN_THRESHOLD = 64;
+
+    private final Map<K, Node<K, V>> data = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final FrequencySketch sketch = new FrequencySketch();
+    private final AccessDeque<K, V> window = new AccessDeque<>();
+    private final AccessDeque<K, V> probation = new AccessDeque<>();
+    private final AccessDeque<K, V> protectedQueue = new AccessDeque<>();
+
+    private final AtomicReferenceArray<Node<K, V>> readBuffer = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+    private final AtomicLong reads = new AtomicLong();
+
+    private final long maxWeight;
+    private final long maxWindowWeight;
+    private final long maxProtectedWeight;
+    private final ToIntBiFunction<K, V> weigher;
+    private final RemovalListener<K, V> listener;
+    private final Executor executor;
+
+    private long windowWeight;
+    private long probationWeight;
+    private long protectedWeight;
+
+    private final Metrics metrics = new Metrics();
+    private final Counter hits = metrics.counter("hits");
+    private final Counter misses = metrics.counter("misses");
+    private final Counter evictions = metrics.counter("evictions");
+    private final Counter evictedWeight = metrics.counter("evictedWeight");
+
+    TinyLfuCache(long maxWeight, ToIntBiFunction<K, V> weigher, RemovalListener<K, V> listener, Executor executor) {
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("Max weight must be greater than zero");
+        }
+        this.maxWeight = maxWeight;
+        this.maxWindowWeight = Math.max(1, maxWeight / 100);
+        this.maxProtectedWeight = (long) ((maxWeight - maxWindowWeight) * 0.8);
+        this.weigher = weigher;
+        this.listener = listener;
+        this.executor = executor;
+        this.sketch.ensureCapacity(Math.min(maxWeight, 1024));
+    }
+
+    @Override
+    public void add(K key, V newValue) {
+        int weight = weigher.applyAsInt(key, newValue);
+        if (weight < 0) {
+            throw new IllegalArgumentException("Weight must not be negative");
+        }
+        lock.lock();
+        try {
+            drainReads();
+            sketch.increment(key);
+            Node<K, V> node = data.get(key);
+            if (node != null) {
+                V old = node.value;
+                node.value = newValue;
+                updateWeight(node, weight);
+                onAccess(node);
+                notify(key, old, RemovalListener.Cause.REPLACED);
+            } else {
+                if (weight > maxWeight) {
+                    notify(key, newValue, RemovalListener.Cause.SIZE);
+                    return;
+                }
+                node = new Node<>(key, newValue, weight);
+                data.put(key, node);
+                node.queue = WINDOW;
+                window.addLast(node);
+                windowWeight += weight;
+                if (data.size() > sketch.capacity()) {
+                    sketch.ensureCapacity(2L * data.size());
+                }
+            }
+            evict();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public V get(K key) {
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        recordRead(node);
+        return node.value;
+    }
+
+    @Override
+    public V remove(K key) {
+        lock.lock();
+        try {
+            Node<K, V> node = data.remove(key);
+            if (node == null) {
+                return null;
+            }
+            unlink(node);
+            notify(key, node.value, RemovalListener.Cause.EXPLICIT);
+            return node.value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            for (Node<K, V> node : data.values()) {
+                unlink(node);
+                notify(node.key, node.value, RemovalListener.Cause.EXPLICIT);
+            }
+            data.clear();
+            for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+                readBuffer.set(i, null);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long size() {
+        return data.size();
+    }
+
+    /**
+     * Current total weight of the entries, applies pending reads
+     */
+    long weight() {
+        lock.lock();
+        try {
+            drainReads();
+            return windowWeight + probationWeight + protectedWeight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Metrics metrics() {
+        metrics.set("size", data.size());
+        metrics.set("weight", weight());
+        return metrics;
+    }
+
+    private void recordRead(Node<K, V> node) {
+        long idx = reads.getAndIncrement();
+        readBuffer.lazySet((int) (idx & READ_BUFFER_MASK), node);
+        if ((idx & (DRAIN_THRESHOLD - 1)) == DRAIN_THRESHOLD - 1 && lock.tryLock()) {
+            try {
+                drainReads();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void drainReads() {
+        for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+            Node<K, V> node = readBuffer.getAndSet(i, null);
+            if (node != null) {
+                sketch.increment(node.key);
+                onAccess(node);
+            }
+        }
+    }
+
+    private void onAccess(Node<K, V> node) {
+        switch (node.queue) {
+            case WINDOW -> window.moveToLast(node);
+            case PROBATION -> {
+                probation.remove(node);
+                probationWeight -= node.weight;
+                node.queue = PROTECTED;
+                protectedQueue.addLast(node);
+                protectedWeight += node.weight;
+                demoteProtected();
+            }
+            case PROTECTED -> protectedQueue.moveToLast(node);
+            default -> {
+                //removed while the read was buffered
+            }
+        }
+    }
+
+    private void demoteProtected() {
+        while (protectedWeight > maxProtectedWeight) {
+            Node<K, V> demoted = protectedQueue.pollFirst();
+            protectedWeight -= demoted.weight;
+            demoted.queue = PROBATION;
+            probation.addLast(demoted);
+            probationWeight += demoted.weight;
+        }
+    }
+
+    private void updateWeight(Node<K, V> node, int weight) {
+        int delta = weight - node.weight;
+        node.weight = weight;
+        switch (node.queue) {
+            case WINDOW -> windowWeight += delta;
+            case PROBATION -> probationWeight += delta;
+            case PROTECTED -> protectedWeight += delta;
+            default -> throw new IllegalStateException("Node not in cache");
+        }
+    }
+
+    private void evict() {
+        //entries overflowing the window become admission candidates at the end of probation
+        Node<K, V> candidate = null;
+        while (windowWeight > maxWindowWeight) {
+            Node<K, V> node = window.pollFirst();
+            windowWeight -= node.weight;
+            node.queue = PROBATION;
+            probation.addLast(node);
+            probationWeight += node.weight;
+            if (candidate == null) {
+                candidate = node;
+            }
+        }
+
+        while (windowWeight + probationWeight + protectedWeight > maxWeight) {
+            Node<K, V> victim = probation.peekFirst();
+            if (victim == null || victim == candidate) {
+                //no conflict, evict in LRU order
+                Node<K, V> evicted = victim != null ? victim : (protectedQueue.peekFirst() != null ? protectedQueue.peekFirst() : window.peekFirst());
+                if (evicted == candidate) {
+                    candidate = evicted.next;
+                }
+                evictNode(evicted);
+                continue;
+            }
+            if (candidate == null) {
+                evictNode(victim);
+                continue;
+            }
+            if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                evictNode(victim);
+            } else {
+                Node<K, V> next = candidate.next;
+                evictNode(candidate);
+                candidate = next;
+            }
+        }
+    }
+
+    private void evictNode(Node<K, V> node) {
+        data.remove(node.key);
+        unlink(node);
+        evictions.increment();
+        evictedWeight.update(node.weight);
+        notify(node.key, node.value, RemovalListener.Cause.SIZE);
+    }
+
+    private void unlink(Node<K, V> node) {
+        switch (node.queue) {
+            case WINDOW -> {
+                window.remove(node);
+                windowWeight -= node.weight;
+            }
+            case PROBATION -> {
+                probation.remove(node);
+                probationWeight -= node.weight;
+            }
+            case PROTECTED -> {
+                protectedQueue.remove(node);
+                protectedWeight -= node.weight;
+            }
+            default -> {
+                return;
+            }
+        }
+        node.queue = DEAD;
+    }
+
+    private void notify(K key, V value, RemovalListener.Cause cause) {
+        if (listener != null) {
+            executor.execute(() -> listener.onRemoval(key, value, cause));
+        }
+    }
+
+    private static final class Node<K, V> {
+        private final K key;
+        private volatile V value;
+        private int weight;
+        private int queue;
+        private Node<K, V> prev;
+        private Node<K, V> next;
+
+        private Node(K key, V value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    //intrusive doubly linked list, first is the least recently used
+    private static final class AccessDeque<K, V> {
+        private Node<K, V> first;
+        private Node<K, V> last;
+
+        private Node<K, V> peekFirst() {
+            return first;
+        }
+
+        private Node<K, V> pollFirst() {
+            Node<K, V> node = first;
+            if (node != null) {
+                remove(node);
+            }
+            return node;
+        }
+
+        private void addLast(Node<K, V> node) {
+            node.prev = last;
+            node.next = null;
+            if (last == null) {
+                first = node;
+            } else {
+                last.next = node;
+            }
+            last = node;
+        }
+
+        private void moveToLast(Node<K, V> node) {
+            if (node != last) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        private void remove(Node<K, V> node) {
+            if (node.prev == null) {
+                first = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                last = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+    }
+
+}
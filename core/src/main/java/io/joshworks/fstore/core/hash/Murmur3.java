@@ -39,13 +39,14 @@ public class Murmur3 {
         return hash32(data, offset, count, DEFAULT_SEED);
     }
 
+    //offset is absolute, buffer position is ignored
     public static int hash32(ByteBuffer data, int offset, int count, int seed) {
         int hash = seed;
         final int nblocks = count >> 2;
 
         // body
-        for (int i = offset; i < nblocks; i++) {
-            int i_4 = i << 2;
+        for (int i = 0; i < nblocks; i++) {
+            int i_4 = offset + (i << 2);
             int k = (data.get(i_4) & 0xff)
                     | ((data.get(i_4 + 1) & 0xff) << 8)
                     | ((data.get(i_4 + 2) & 0xff) << 16)
@@ -60,9 +61,10 @@ public class Murmur3 {
         }
 
         // tail
-        int idx = nblocks << 2;
+        int tail = count - (nblocks << 2);
+        int idx = offset + (nblocks << 2);
         int k1 = 0;
-        switch (count - idx) {
+        switch (tail) {
             case 3:
                 k1 ^= data.get(idx + 2) << 16;
             case 2:
@@ -135,8 +137,8 @@ public class Murmur3 {
         final int nblocks = length >> 2;
 
         // body
-        for (int i = off; i < nblocks; i++) {
-            int i_4 = i << 2;
+        for (int i = 0; i < nblocks; i++) {
+            int i_4 = off + (i << 2);
             int k = (data[i_4] & 0xff)
                     | ((data[i_4 + 1] & 0xff) << 8)
                     | ((data[i_4 + 2] & 0xff) << 16)
@@ -151,9 +153,10 @@ public class Murmur3 {
         }
 
         // tail
-        int idx = nblocks << 2;
+        int tail = length - (nblocks << 2);
+        int idx = off + (nblocks << 2);
         int k1 = 0;
-        switch (length - idx) {
+        switch (tail) {
             case 3:
                 k1 ^= data[idx + 2] << 16;
             case 2:
@@ -1,5 +1,7 @@
 package io.joshworks.fstore.core.io;
 
+import io.joshworks.fstore.core.metrics.Counter;
+import io.joshworks.fstore.core.metrics.Histogram;
 import io.joshworks.fstore.core.metrics.Metrics;
 
 import java.io.IOException;
@@ -10,6 +12,15 @@ import java.nio.channels.WritableByteChannel;
 public class MetricStorage implements Storage {
 
     private final Metrics metrics = new Metrics();
+    private final Histogram writeTime = metrics.histogram("writeTime");
+    private final Histogram readTime = metrics.histogram("readTime");
+    private final Histogram transferToTime = metrics.histogram("transferToTime");
+    private final Counter writes = metrics.counter("writes");
+    private final Counter reads = metrics.counter("read");
+    private final Counter transfersTo = metrics.counter("transferTo");
+    private final Counter transfersFrom = metrics.counter("transferFrom");
+    private final Counter bytesWritten = metrics.counter("bytesWritten");
+    private final Counter bytesRead = metrics.counter("bytesRead");
 
     private final Storage delegate;
 
@@ -19,61 +30,61 @@ public class MetricStorage implements Storage {
 
     @Override
     public int write(ByteBuffer src) {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         int written = delegate.write(src);
-        metrics.update("writeTime", (System.currentTimeMillis() - start));
-        metrics.update("writes");
-        metrics.update("bytesWritten", written);
+        writeTime.recordSince(start);
+        writes.increment();
+        bytesWritten.update(written);
         return written;
     }
 
     @Override
     public int write(long position, ByteBuffer src) {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         int written = delegate.write(position, src);
-        metrics.update("writeTime", (System.currentTimeMillis() - start));
-        metrics.update("writes");
-        metrics.update("bytesWritten", written);
+        writeTime.recordSince(start);
+        writes.increment();
+        bytesWritten.update(written);
         return written;
     }
 
     @Override
     public long write(ByteBuffer[] srcs) {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         long written = delegate.write(srcs);
-        metrics.update("writeTime", (System.currentTimeMillis() - start));
-        metrics.update("writes");
-        metrics.update("bytesWritten", written);
+        writeTime.recordSince(start);
+        writes.increment();
+        bytesWritten.update(written);
         return written;
     }
 
     @Override
     public int read(long position, ByteBuffer dst) {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         int read = delegate.read(position, dst);
-        metrics.update("readTime", (System.currentTimeMillis() - start));
-        metrics.update("read");
-        metrics.update("bytesRead", read);
+        readTime.recordSince(start);
+        reads.increment();
+        bytesRead.update(read);
         return read;
     }
 
     @Override
     public long transferTo(long position, long count, WritableByteChannel target) {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         long read = delegate.transferTo(position, count, target);
-        metrics.update("transferToTime", (System.currentTimeMillis() - start));
-        metrics.update("transferTo");
-        metrics.update("bytesRead", read);
+        transferToTime.recordSince(start);
+        transfersTo.increment();
+        bytesRead.update(read);
         return read;
     }
 
     @Override
     public long transferFrom(ReadableByteChannel src, long position, long count) {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         long written = delegate.transferFrom(src, position, count);
-        metrics.update("transferToTime", (System.currentTimeMillis() - start));
-        metrics.update("transferFrom");
-        metrics.update("bytesWritten", written);
+        transferToTime.recordSince(start);
+        transfersFrom.increment();
+        bytesWritten.update(written);
         return written;
     }
 
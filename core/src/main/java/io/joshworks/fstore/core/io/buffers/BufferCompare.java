@@ -0,0 +1,143 @@
+package io.joshworks.fstore.core.io.buffers;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Comparison and search over buffer regions using absolute offsets, positions and limits are never modified.
+ * Bytes are compared 8 at a time through big endian {@link VarHandle} views, so a single unsigned long comparison
+ * gives the same result as comparing each of its bytes, without Unsafe and regardless of the buffer byte order.
+ */
+public final class BufferCompare {
+
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    //signed keys are read in the buffer byte order
+    private static final VarHandle LONG_LE = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT_LE = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private BufferCompare() {
+
+    }
+
+    /**
+     * @return the index, relative to the offsets, of the first byte that differs in the given regions, or -1 if equal
+     */
+    public static int mismatch(ByteBuffer a, int aOffset, ByteBuffer b, int bOffset, int length) {
+        int i = 0;
+        for (; i + Long.BYTES <= length; i += Long.BYTES) {
+            long diff = (long) LONG.get(a, aOffset + i) ^ (long) LONG.get(b, bOffset + i);
+            if (diff != 0) {
+                return i + (Long.numberOfLeadingZeros(diff) >>> 3);
+            }
+        }
+        for (; i < length; i++) {
+            if (a.get(aOffset + i) != b.get(bOffset + i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Lexicographic comparison of unsigned bytes, a shorter region that is a prefix of the other comes first
+     */
+    public static int compare(ByteBuffer a, int aOffset, int aLength, ByteBuffer b, int bOffset, int bLength) {
+        int length = Math.min(aLength, bLength);
+        int i = 0;
+        for (; i + Long.BYTES <= length; i += Long.BYTES) {
+            long va = (long) LONG.get(a, aOffset + i);
+            long vb = (long) LONG.get(b, bOffset + i);
+            if (va != vb) {
+                return Long.compareUnsigned(va, vb);
+            }
+        }
+        if (i + Integer.BYTES <= length) {
+            int va = (int) INT.get(a, aOffset + i);
+            int vb = (int) INT.get(b, bOffset + i);
+            if (va != vb) {
+                return Integer.compareUnsigned(va, vb);
+            }
+            i += Integer.BYTES;
+        }
+        for (; i < length; i++) {
+            int cmp = Byte.compareUnsigned(a.get(aOffset + i), b.get(bOffset + i));
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(aLength, bLength);
+    }
+
+    /**
+     * Binary search over fixed size entries whose first keyLength bytes are the key, compared with {@link #compare}
+     *
+     * @return the entry index if found, otherwise -(insertion point + 1)
+     */
+    public static int binarySearch(ByteBuffer data, int start, int entries, int entrySize, ByteBuffer key, int keyOffset, int keyLength) {
+        int low = 0;
+        int high = entries - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(data, start + mid * entrySize, keyLength, key, keyOffset, keyLength);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Binary search over fixed size entries starting with a signed (long, int) key, e.g. stream and version,
+     * stored in the buffer byte order. The int is only read when the long matches.
+     *
+     * @return the entry index if found, otherwise -(insertion point + 1)
+     */
+    public static int binarySearch(ByteBuffer data, int start, int entries, int entrySize, long key1, int key2) {
+        int low = 0;
+        int high = entries - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int pos = start + mid * entrySize;
+            int cmp = Long.compare(getLong(data, pos), key1);
+            if (cmp == 0) {
+                cmp = Integer.compare(getInt(data, pos + Long.BYTES), key2);
+            }
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Compares signed (long, int) keys, e.g. stream and version, stored in each buffer byte order.
+     * The ints are only read when the longs match.
+     */
+    public static int compareKey(ByteBuffer a, int aOffset, ByteBuffer b, int bOffset) {
+        int cmp = Long.compare(getLong(a, aOffset), getLong(b, bOffset));
+        if (cmp != 0) {
+            return cmp;
+        }
+        return Integer.compare(getInt(a, aOffset + Long.BYTES), getInt(b, bOffset + Long.BYTES));
+    }
+
+    private static long getLong(ByteBuffer data, int offset) {
+        return data.order() == ByteOrder.BIG_ENDIAN ? (long) LONG.get(data, offset) : (long) LONG_LE.get(data, offset);
+    }
+
+    private static int getInt(ByteBuffer data, int offset) {
+        return data.order() == ByteOrder.BIG_ENDIAN ? (int) INT.get(data, offset) : (int) INT_LE.get(data, offset);
+    }
+
+}
@@ -0,0 +1,148 @@
+package io.joshworks.fstore.core.io.buffers;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Reference counted buffer, the underlying memory is deallocated (e.g. returned to its pool) when the last
+ * reference is released. Lets a single off-heap copy be shared by multiple readers (read results, caches,
+ * network writes) instead of copying it before the owner frees it.
+ * <p>
+ * A new buffer starts with one reference. Anyone keeping the buffer beyond the call it was passed to must
+ * {@link #retain()} it and {@link #release()} it when done. Slices share the reference count of their parent.
+ * Position and limit are not shared: each instance has its own view, the content is shared.
+ */
+public class RefCountedBuffer implements Closeable {
+
+    private final ByteBuffer buffer;
+    private final Ref ref;
+
+    private RefCountedBuffer(ByteBuffer buffer, Ref ref) {
+        this.buffer = buffer;
+        this.ref = ref;
+    }
+
+    /**
+     * @param deallocator called with the original buffer once all references have been released
+     */
+    public static RefCountedBuffer wrap(ByteBuffer buffer, Consumer<ByteBuffer> deallocator) {
+        return new RefCountedBuffer(buffer, new Ref(buffer, deallocator));
+    }
+
+    /**
+     * Allocates a buffer from the pool, returned to the pool when all references are released
+     */
+    public static RefCountedBuffer allocate(SizeClassBufferPool pool, int size) {
+        return wrap(pool.allocate(size), pool::free);
+    }
+
+    /**
+     * The buffer view of this instance, must not be used after the last reference has been released
+     *
+     * @throws IllegalStateException if all references have been released
+     */
+    public ByteBuffer buffer() {
+        ref.ensureAccessible();
+        return buffer;
+    }
+
+    public RefCountedBuffer retain() {
+        ref.retain();
+        return this;
+    }
+
+    /**
+     * @return true if this was the last reference and the buffer was deallocated
+     */
+    public boolean release() {
+        return ref.release();
+    }
+
+    public int refCount() {
+        return ref.count.get();
+    }
+
+    /**
+     * Slice of the buffer content, sharing the reference count of this buffer without retaining it
+     */
+    public RefCountedBuffer slice(int index, int length) {
+        ref.ensureAccessible();
+        return new RefCountedBuffer(buffer.slice(index, length), ref);
+    }
+
+    /**
+     * Same as {@link #slice(int, int)}, retaining a reference that must be released by the slice owner
+     */
+    public RefCountedBuffer retainedSlice(int index, int length) {
+        RefCountedBuffer slice = slice(index, length);
+        ref.retain();
+        return slice;
+    }
+
+    /**
+     * New view of the whole content with its own position and limit, sharing the reference count
+     */
+    public RefCountedBuffer duplicate() {
+        ref.ensureAccessible();
+        return new RefCountedBuffer(buffer.duplicate(), ref);
+    }
+
+    /**
+     * Same as {@link #release()}
+     */
+    @Override
+    public void close() {
+        release();
+    }
+
+    @Override
+    public String toString() {
+        return "RefCountedBuffer{" +
+                "buffer=" + buffer +
+                ", refCount=" + ref.count.get() +
+                '}';
+    }
+
+    private static final class Ref {
+        private final AtomicInteger count = new AtomicInteger(1);
+        private final ByteBuffer original;
+        private final Consumer<ByteBuffer> deallocator;
+
+        private Ref(ByteBuffer original, Consumer<ByteBuffer> deallocator) {
+            this.original = original;
+            this.deallocator = deallocator;
+        }
+
+        private void retain() {
+            int current;
+            do {
+                current = count.get();
+                if (current <= 0) {
+                    throw new IllegalStateException("Buffer already released");
+                }
+            } while (!count.compareAndSet(current, current + 1));
+        }
+
+        private boolean release() {
+            int remaining = count.decrementAndGet();
+            if (remaining < 0) {
+                count.incrementAndGet();
+                throw new IllegalStateException("Buffer already released");
+            }
+            if (remaining == 0) {
+                deallocator.accept(original);
+                return true;
+            }
+            return false;
+        }
+
+        private void ensureAccessible() {
+            if (count.get() <= 0) {
+                throw new IllegalStateException("Buffer already released");
+            }
+        }
+    }
+
+}
@@ -0,0 +1,384 @@
+package io.joshworks.fstore.core.io.buffers;
+
+import io.joshworks.fstore.core.metrics.Counter;
+import io.joshworks.fstore.core.metrics.Metrics;
+import io.joshworks.fstore.core.metrics.Monitored;
+import io.joshworks.fstore.core.util.MappedByteBuffers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread safe pool of buffers in power of two size classes, with a hard cap on the total memory allocated.
+ * <p>
+ * Each thread keeps a loaded and a previous magazine (small stack of buffers) per size class, so most allocations
+ * and frees don't touch shared state. Full magazines are exchanged with a lock free per class depot.
+ * Up to 2 * {@link #MAGAZINE_SIZE} free buffers per size class can be cached by each thread, they count towards the
+ * capacity but are only available to that thread. Buffers cached by a thread that dies are returned to the depot once
+ * its magazines are garbage collected.
+ * <p>
+ * When the capacity is reached, the allocating thread releases its own cached buffers and the ones in the depot,
+ * and other threads move their cached buffers to the depot on their next allocate or free, so they can be reclaimed.
+ * <p>
+ * In debug mode the allocation site of every buffer in use is recorded, buffers not freed are reported by
+ * {@link #leaks()} and logged on {@link #close()}, double frees fail. Outside debug mode only double frees of buffers
+ * still cached by the freeing thread are detected, see {@link #free(ByteBuffer)}.
+ */
+public class SizeClassBufferPool implements Monitored, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(SizeClassBufferPool.class);
+
+    private static final Cleaner cleaner = Cleaner.create();
+    static final int MAGAZINE_SIZE = 16;
+
+    private final int minShift;
+    private final int classes;
+    private final long capacityInBytes;
+    private final boolean direct;
+    private final boolean debug;
+
+    private final AtomicLong reserved = new AtomicLong();
+    //incremented when capacity is reached, threads flush their magazines to the depot when it changes
+    private final AtomicLong trims = new AtomicLong();
+    private final Queue<Magazine>[] depot;
+    private final Queue<Magazine> empty = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Magazines> local = ThreadLocal.withInitial(this::newMagazines);
+    private final Map<ByteBuffer, Throwable> inUse = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    private final Metrics metrics = new Metrics();
+    private final Counter allocations = metrics.counter("allocations");
+    private final Counter created = metrics.counter("created");
+    private final Counter depotHits = metrics.counter("depotHits");
+    private final Counter released = metrics.counter("released");
+    private final Counter inUseBytes = metrics.counter("inUseBytes");
+
+    /**
+     * @param minSize         smallest size class, power of two
+     * @param maxSize         largest size class, power of two
+     * @param capacityInBytes maximum memory allocated by this pool, in use or cached
+     */
+    public SizeClassBufferPool(int minSize, int maxSize, long capacityInBytes, boolean direct) {
+        this(minSize, maxSize, capacityInBytes, direct, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    public SizeClassBufferPool(int minSize, int maxSize, long capacityInBytes, boolean direct, boolean debug) {
+        if (Integer.bitCount(minSize) != 1 || Integer.bitCount(maxSize) != 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Min and max size must be powers of two, with min <= max");
+        }
+        if (capacityInBytes < maxSize) {
+            throw new IllegalArgumentException("Capacity must be at least " + maxSize);
+        }
+        this.minShift = Integer.numberOfTrailingZeros(minSize);
+        this.classes = Integer.numberOfTrailingZeros(maxSize) - minShift + 1;
+        this.capacityInBytes = capacityInBytes;
+        this.direct = direct;
+        this.debug = debug;
+        this.depot = new Queue[classes];
+        for (int i = 0; i < classes; i++) {
+            depot[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    /**
+     * Returns a buffer with capacity of the smallest size class that fits, limited to size. Must be freed after use.
+     *
+     * @throws IllegalStateException if a new buffer is needed and the pool capacity would be exceeded
+     */
+    public ByteBuffer allocate(int size) {
+        int sizeClass = sizeClass(size);
+        Magazines magazines = magazines();
+        ByteBuffer buffer = magazines.pop(sizeClass);
+        if (buffer == null) {
+            buffer = newBuffer(sizeClass, magazines);
+        }
+        allocations.increment();
+        inUseBytes.update(buffer.capacity());
+        if (debug) {
+            inUse.put(buffer, new Throwable("Buffer of " + buffer.capacity() + " bytes allocated"));
+        }
+        return buffer.clear().limit(size);
+    }
+
+    /**
+     * Returns the buffer to the pool, it must not be used afterwards.
+     * <b>A buffer must be freed exactly once.</b> Outside debug mode a double free is only detected while the buffer is
+     * still cached by the freeing thread, otherwise the buffer is cached twice and later handed out to two owners.
+     *
+     * @throws IllegalStateException if the buffer is detected as freed twice
+     */
+    public void free(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        int sizeClass = sizeClass(capacity);
+        if (classSize(sizeClass) != capacity) {
+            throw new IllegalArgumentException("Buffer of " + capacity + " bytes does not belong to this pool");
+        }
+        if (debug && inUse.remove(buffer) == null) {
+            throw new IllegalStateException("Buffer is not in use, freed twice or not allocated by this pool");
+        }
+        Magazines magazines = magazines();
+        if (magazines.contains(sizeClass, buffer)) {
+            throw new IllegalStateException("Buffer freed twice");
+        }
+        inUseBytes.update(-capacity);
+        magazines.push(sizeClass, buffer.clear());
+    }
+
+    /**
+     * Allocation sites of the buffers currently in use, only available in debug mode
+     */
+    public List<Throwable> leaks() {
+        synchronized (inUse) {
+            return new ArrayList<>(inUse.values());
+        }
+    }
+
+    /**
+     * Bytes allocated by this pool, in use or cached
+     */
+    public long allocatedBytes() {
+        return reserved.get();
+    }
+
+    int sizeClass(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Size must not be negative");
+        }
+        int sizeClass = size <= (1 << minShift) ? 0 : 32 - Integer.numberOfLeadingZeros(size - 1) - minShift;
+        if (sizeClass >= classes) {
+            throw new IllegalArgumentException("Size " + size + " exceeds the largest size class of " + classSize(classes - 1));
+        }
+        return sizeClass;
+    }
+
+    private int classSize(int sizeClass) {
+        return 1 << (sizeClass + minShift);
+    }
+
+    private Magazines magazines() {
+        Magazines magazines = local.get();
+        long trim = trims.get();
+        if (magazines.trim != trim) {
+            magazines.trim = trim;
+            magazines.flush();
+        }
+        return magazines;
+    }
+
+    private ByteBuffer newBuffer(int sizeClass, Magazines magazines) {
+        int size = classSize(sizeClass);
+        if (!reserve(size)) {
+            //cached buffers count towards the capacity, release the ones this thread can reach and ask others to flush
+            magazines.trim = trims.incrementAndGet();
+            magazines.flush();
+            ByteBuffer cached = magazines.pop(sizeClass);
+            if (cached != null) {
+                return cached;
+            }
+            for (Queue<Magazine> queue : depot) {
+                Magazine magazine;
+                while ((magazine = queue.poll()) != null) {
+                    release(magazine);
+                }
+            }
+            if (!reserve(size)) {
+                throw new IllegalStateException("Buffer pool capacity of " + capacityInBytes + " bytes exceeded");
+            }
+        }
+        created.increment();
+        return Buffers.allocate(size, direct);
+    }
+
+    private boolean reserve(int size) {
+        long current;
+        do {
+            current = reserved.get();
+            if (current + size > capacityInBytes) {
+                return false;
+            }
+        } while (!reserved.compareAndSet(current, current + size));
+        return true;
+    }
+
+    private void release(Magazine magazine) {
+        while (!magazine.isEmpty()) {
+            ByteBuffer buffer = magazine.pop();
+            reserved.addAndGet(-buffer.capacity());
+            released.increment();
+            if (direct) {
+                MappedByteBuffers.free(buffer);
+            }
+        }
+        empty.offer(magazine);
+    }
+
+    private Magazines newMagazines() {
+        Magazines magazines = new Magazines();
+        cleaner.register(magazines, new ReturnToDepot(magazines.loaded, magazines.previous, depot));
+        return magazines;
+    }
+
+    private Magazine emptyMagazine() {
+        Magazine magazine = empty.poll();
+        return magazine != null ? magazine : new Magazine();
+    }
+
+    @Override
+    public Metrics metrics() {
+        metrics.set("allocatedBytes", reserved.get());
+        metrics.set("capacity", capacityInBytes);
+        return metrics;
+    }
+
+    /**
+     * Frees the buffers cached by the calling thread and in the depot.
+     * Buffers cached by other threads are left to the garbage collector.
+     */
+    @Override
+    public void close() {
+        for (Throwable leak : leaks()) {
+            log.warn("Buffer leak", leak);
+        }
+        local.get().flush();
+        local.remove();
+        for (Queue<Magazine> queue : depot) {
+            Magazine magazine;
+            while ((magazine = queue.poll()) != null) {
+                release(magazine);
+            }
+        }
+        empty.clear();
+    }
+
+    private static final class Magazine {
+        private final ByteBuffer[] items = new ByteBuffer[MAGAZINE_SIZE];
+        private int size;
+
+        private boolean isEmpty() {
+            return size == 0;
+        }
+
+        private boolean isFull() {
+            return size == items.length;
+        }
+
+        private ByteBuffer pop() {
+            ByteBuffer buffer = items[--size];
+            items[size] = null;
+            return buffer;
+        }
+
+        private void push(ByteBuffer buffer) {
+            items[size++] = buffer;
+        }
+
+        private boolean contains(ByteBuffer buffer) {
+            for (int i = 0; i < size; i++) {
+                if (items[i] == buffer) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    //per thread, only accessed by its owner thread
+    private final class Magazines {
+        private final Magazine[] loaded = new Magazine[classes];
+        private final Magazine[] previous = new Magazine[classes];
+        private long trim = trims.get();
+
+        private Magazines() {
+            for (int i = 0; i < classes; i++) {
+                loaded[i] = new Magazine();
+                previous[i] = new Magazine();
+            }
+        }
+
+        private ByteBuffer pop(int sizeClass) {
+            Magazine magazine = loaded[sizeClass];
+            if (magazine.isEmpty()) {
+                if (!previous[sizeClass].isEmpty()) {
+                    swap(sizeClass);
+                } else {
+                    Magazine full = depot[sizeClass].poll();
+                    if (full == null) {
+                        return null;
+                    }
+                    depotHits.increment();
+                    empty.offer(previous[sizeClass]);
+                    previous[sizeClass] = magazine;
+                    loaded[sizeClass] = full;
+                }
+                magazine = loaded[sizeClass];
+            }
+            return magazine.pop();
+        }
+
+        private void push(int sizeClass, ByteBuffer buffer) {
+            Magazine magazine = loaded[sizeClass];
+            if (magazine.isFull()) {
+                if (!previous[sizeClass].isFull()) {
+                    swap(sizeClass);
+                } else {
+                    depot[sizeClass].offer(previous[sizeClass]);
+                    previous[sizeClass] = magazine;
+                    loaded[sizeClass] = emptyMagazine();
+                }
+                magazine = loaded[sizeClass];
+            }
+            magazine.push(buffer);
+        }
+
+        private boolean contains(int sizeClass, ByteBuffer buffer) {
+            return loaded[sizeClass].contains(buffer) || previous[sizeClass].contains(buffer);
+        }
+
+        //moves all cached buffers to the depot
+        private void flush() {
+            for (int i = 0; i < classes; i++) {
+                if (!loaded[i].isEmpty()) {
+                    depot[i].offer(loaded[i]);
+                    loaded[i] = emptyMagazine();
+                }
+                if (!previous[i].isEmpty()) {
+                    depot[i].offer(previous[i]);
+                    previous[i] = emptyMagazine();
+                }
+            }
+        }
+
+        private void swap(int sizeClass) {
+            Magazine tmp = loaded[sizeClass];
+            loaded[sizeClass] = previous[sizeClass];
+            previous[sizeClass] = tmp;
+        }
+    }
+
+    //must not reference the Magazines instance, otherwise it would never become unreachable
+    private record ReturnToDepot(Magazine[] loaded, Magazine[] previous, Queue<Magazine>[] depot) implements Runnable {
+        @Override
+        public void run() {
+            for (int i = 0; i < depot.length; i++) {
+                if (!loaded[i].isEmpty()) {
+                    depot[i].offer(loaded[i]);
+                }
+                if (!previous[i].isEmpty()) {
+                    depot[i].offer(previous[i]);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,49 @@
+package io.joshworks.fstore.core.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Striped counter, updates from different threads go to different cells and are only summed when read.
+ * Handles should be obtained once with {@link Metrics#counter(String)} and kept, so the hot path is a single add.
+ */
+public class Counter implements Metric {
+
+    private final LongAdder value = new LongAdder();
+    private volatile boolean gauge;
+
+    public void increment() {
+        value.increment();
+    }
+
+    @Override
+    public void update(long delta) {
+        value.add(delta);
+    }
+
+    @Override
+    public long get() {
+        return value.sum();
+    }
+
+    /**
+     * Resets the counter to zero, returning its previous value
+     */
+    public long reset() {
+        return value.sumThenReset();
+    }
+
+    /**
+     * Not atomic with concurrent updates, meant for gauges that are only set.
+     * A counter that has been set is exported as a gauge.
+     */
+    @Override
+    public void set(long newValue) {
+        gauge = true;
+        value.add(newValue - value.sum());
+    }
+
+    boolean isGauge() {
+        return gauge;
+    }
+
+}
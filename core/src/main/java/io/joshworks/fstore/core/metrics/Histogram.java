@@ -0,0 +1,178 @@
+package io.joshworks.fstore.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free latency histogram with log-linear buckets (HDR style), values are recorded in nanoseconds.
+ * Each power of two range is split in {@link #SUB_BUCKETS} linear buckets, so the relative error of any reported
+ * value is below 1 / SUB_BUCKETS (~3%) across the whole long range, with a fixed memory footprint.
+ * <p>
+ * {@link #snapshot()} returns all values recorded so far, {@link #intervalSnapshot()} only the ones recorded since
+ * the previous interval snapshot.
+ */
+public class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int BUCKETS = (64 - SUB_BUCKET_BITS) << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+
+    //cumulative counts at the last interval snapshot
+    private long[] lastInterval = new long[BUCKETS];
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucket(value));
+        sum.addAndGet(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Records the time elapsed since the given {@link System#nanoTime()}
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Adds all values recorded so far by other to this histogram, other is not modified
+     */
+    public void add(Histogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = other.counts.get(i);
+            if (count > 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+        sum.addAndGet(other.sum.get());
+        max.accumulateAndGet(other.max.get(), Math::max);
+    }
+
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new Snapshot(copy, max.get());
+    }
+
+    public synchronized Snapshot intervalSnapshot() {
+        long[] current = snapshot().counts;
+        long[] delta = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            delta[i] = current[i] - lastInterval[i];
+        }
+        lastInterval = current;
+        return new Snapshot(delta, max.get());
+    }
+
+    public long count() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    public long sum() {
+        return sum.get();
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    //highest value that falls in the bucket
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+        long sub = (bucket & (SUB_BUCKETS - 1)) + SUB_BUCKETS;
+        long next = (sub + 1) << shift;
+        return next < 0 ? Long.MAX_VALUE : next - 1;
+    }
+
+    /**
+     * Immutable bucket counts of a histogram, percentiles are reported as the upper bound of the bucket they fall in
+     */
+    public static class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long max;
+
+        private Snapshot(long[] counts, long recordedMax) {
+            this.counts = counts;
+            long total = 0;
+            int highest = -1;
+            for (int i = 0; i < counts.length; i++) {
+                total += counts[i];
+                if (counts[i] > 0) {
+                    highest = i;
+                }
+            }
+            this.count = total;
+            //recordedMax can be from a previous interval, or not yet visible in the buckets
+            this.max = highest < 0 ? 0 : Math.min(upperBound(highest), Math.max(recordedMax, lowerBound(highest)));
+        }
+
+        private static long lowerBound(int bucket) {
+            return bucket == 0 ? 0 : upperBound(bucket - 1) + 1;
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         */
+        public long percentile(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("Percentile must be between 0 and 100");
+            }
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(count * (percentile / 100)));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), max);
+                }
+            }
+            return max;
+        }
+
+        public long count() {
+            return count;
+        }
+
+        public long max() {
+            return max;
+        }
+
+        /**
+         * Visits each non empty bucket with its upper bound and count, in ascending order
+         */
+        public void forEachBucket(BucketConsumer consumer) {
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    consumer.accept(upperBound(i), counts[i]);
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface BucketConsumer {
+        void accept(long upperBound, long count);
+    }
+
+}
@@ -13,7 +13,9 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
@@ -71,6 +73,20 @@ public class MetricRegistry {
         }
     }
 
+    /**
+     * Visits the current metrics of each registration with its attributes
+     */
+    static void forEach(BiConsumer<Map<String, String>, Metrics> consumer) {
+        for (JmxMetricsBean bean : table.values()) {
+            Map<String, String> attributes = new TreeMap<>();
+            for (Map.Entry<String, String> kv : bean.objectName.getKeyPropertyList().entrySet()) {
+                String value = kv.getValue();
+                attributes.put(kv.getKey(), value.startsWith("\"") ? ObjectName.unquote(value) : value);
+            }
+            consumer.accept(attributes, bean.supplier.get());
+        }
+    }
+
     public static void clear() {
         table.values().forEach(jmxBean -> unregister(jmxBean.objectName));
         table.clear();
@@ -95,7 +111,7 @@ public class MetricRegistry {
             if ((now - lastUpdate) >= updateInterval) {
                 lastUpdate = now;
                 Metrics metrics = supplier.get();
-                this.metrics = metrics.items;
+                this.metrics = metrics.values();
             }
             return metrics;
 
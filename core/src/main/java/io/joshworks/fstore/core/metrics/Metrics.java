@@ -1,20 +1,25 @@
 package io.joshworks.fstore.core.metrics;
 
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
+/**
+ * Named {@link Counter}s and {@link Histogram}s. The name based methods look up the metric on every call,
+ * hot paths should keep the handle returned by {@link #counter(String)} or {@link #histogram(String)} instead.
+ */
 public class Metrics {
 
-    final Map<String, Long> items;
+    final Map<String, Counter> items;
+    final Map<String, Histogram> histograms;
 
     public Metrics() {
-        this.items = new ConcurrentHashMap<>();
+        this(new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
     }
 
-    private Metrics(Map<String, Long> items) {
+    private Metrics(Map<String, Counter> items, Map<String, Histogram> histograms) {
         this.items = items;
+        this.histograms = histograms;
     }
 
     public void update(String name) {
@@ -22,32 +27,89 @@ public class Metrics {
     }
 
     public void update(String name, long delta) {
-        items.compute(name, (k, v) -> v == null ? delta : v + (delta));
+        counter(name).update(delta);
     }
 
     public void set(String name, long value) {
-        items.put(name, value);
+        counter(name).set(value);
     }
 
+    /**
+     * Returns the counter with the given name, creating it if needed
+     */
+    public Counter counter(String name) {
+        Counter counter = items.get(name);
+        return counter != null ? counter : items.computeIfAbsent(name, k -> new Counter());
+    }
+
+    /**
+     * Resets all counters, existing handles remain valid
+     */
     public void clear() {
-        items.clear();
+        items.values().forEach(Counter::reset);
     }
 
+    /**
+     * Resets the counter, returning its previous value
+     */
     public long remove(String key) {
-        Long item = items.remove(key);
-        return item == null ? 0 : item;
+        Counter counter = items.get(key);
+        return counter == null ? 0 : counter.reset();
     }
 
     public long get(String key) {
-        return items.getOrDefault(key, 0L);
+        Counter counter = items.get(key);
+        return counter == null ? 0 : counter.get();
     }
 
-    public static Metrics merge(Metrics... items) {
-        Map<String, Long> merged = Stream.of(items)
-                .flatMap(map -> map.items.entrySet().stream())
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, Long::sum));
+    /**
+     * Returns the histogram with the given name, creating it if needed
+     */
+    public Histogram histogram(String name) {
+        Histogram histogram = histograms.get(name);
+        return histogram != null ? histogram : histograms.computeIfAbsent(name, k -> new Histogram());
+    }
 
-        return new Metrics(merged);
+    public void register(String name, Histogram histogram) {
+        histograms.put(name, histogram);
+    }
+
+    /**
+     * Counters plus p50, p99, p999 and max of each histogram since the previous call
+     */
+    Map<String, Long> values() {
+        Map<String, Long> values = new HashMap<>();
+        for (Map.Entry<String, Counter> kv : items.entrySet()) {
+            values.put(kv.getKey(), kv.getValue().get());
+        }
+        for (Map.Entry<String, Histogram> kv : histograms.entrySet()) {
+            String name = kv.getKey();
+            Histogram.Snapshot snapshot = kv.getValue().intervalSnapshot();
+            values.put(name + ".count", snapshot.count());
+            values.put(name + ".p50", snapshot.percentile(50));
+            values.put(name + ".p99", snapshot.percentile(99));
+            values.put(name + ".p999", snapshot.percentile(99.9));
+            values.put(name + ".max", snapshot.max());
+        }
+        return values;
+    }
+
+    /**
+     * Counter values are summed into new counters, histograms with the same name are summed into new histograms.
+     * Sources are not modified, so merged histograms report everything recorded so far rather than the last interval.
+     */
+    public static Metrics merge(Metrics... items) {
+        Map<String, Counter> merged = new HashMap<>();
+        Map<String, Histogram> histograms = new HashMap<>();
+        for (Metrics metrics : items) {
+            for (Map.Entry<String, Counter> kv : metrics.items.entrySet()) {
+                merged.computeIfAbsent(kv.getKey(), k -> new Counter()).update(kv.getValue().get());
+            }
+            for (Map.Entry<String, Histogram> kv : metrics.histograms.entrySet()) {
+                histograms.computeIfAbsent(kv.getKey(), k -> new Histogram()).add(kv.getValue());
+            }
+        }
+        return new Metrics(merged, histograms);
     }
 
 }
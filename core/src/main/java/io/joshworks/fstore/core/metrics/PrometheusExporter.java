@@ -0,0 +1,184 @@
+package io.joshworks.fstore.core.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.joshworks.fstore.core.RuntimeIOException;
+import io.joshworks.fstore.core.util.FileUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Renders all metrics registered in {@link MetricRegistry} in the Prometheus text format (version 0.0.4),
+ * registration attributes become labels. Counters are exported as counters, or gauges if they have been set,
+ * histograms as summaries in seconds with 0.5, 0.99 and 0.999 quantiles over all recorded values.
+ * <p>
+ * Metrics can be served over http with {@link #serve(InetSocketAddress)} or written to a file with {@link #writeTo(Path)}.
+ */
+public class PrometheusExporter implements Closeable {
+
+    static final String PREFIX = "fstore_";
+    private static final String PATH = "/metrics";
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+
+    private final HttpServer server;
+
+    private PrometheusExporter(HttpServer server) {
+        this.server = server;
+    }
+
+    /**
+     * Starts a http server serving the metrics at /metrics, requests are handled by a single thread
+     */
+    public static PrometheusExporter serve(InetSocketAddress address) {
+        try {
+            HttpServer server = HttpServer.create(address, 0);
+            server.createContext(PATH, PrometheusExporter::handle);
+            server.start();
+            return new PrometheusExporter(server);
+        } catch (IOException e) {
+            throw RuntimeIOException.of("Failed to start metrics server on " + address, e);
+        }
+    }
+
+    public InetSocketAddress address() {
+        return server.getAddress();
+    }
+
+    /**
+     * Writes the metrics to the file, replacing it atomically
+     */
+    public static void writeTo(Path file) {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.writeString(tmp, scrape(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw RuntimeIOException.of("Failed to write metrics to " + tmp, e);
+        }
+        FileUtils.tryMoveAtomically(tmp, file);
+    }
+
+    public static String scrape() {
+        Map<String, Family> families = new TreeMap<>();
+        MetricRegistry.forEach((attributes, metrics) -> {
+            for (Map.Entry<String, Counter> kv : metrics.items.entrySet()) {
+                Counter counter = kv.getValue();
+                String name = PREFIX + sanitize(kv.getKey());
+                family(families, name, counter.isGauge() ? "gauge" : "counter")
+                        .sample(name, labels(attributes, null, null), counter.get());
+            }
+            for (Map.Entry<String, Histogram> kv : metrics.histograms.entrySet()) {
+                Histogram histogram = kv.getValue();
+                Histogram.Snapshot snapshot = histogram.snapshot();
+                String name = PREFIX + sanitize(kv.getKey()) + "_seconds";
+                Family family = family(families, name, "summary");
+                for (double quantile : QUANTILES) {
+                    String labels = labels(attributes, "quantile", String.valueOf(quantile));
+                    family.sample(name, labels, snapshot.percentile(quantile * 100) / NANOS_PER_SECOND);
+                }
+                String labels = labels(attributes, null, null);
+                family.sample(name + "_sum", labels, histogram.sum() / NANOS_PER_SECOND);
+                family.sample(name + "_count", labels, snapshot.count());
+            }
+        });
+
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Family> kv : families.entrySet()) {
+            sb.append("# TYPE ").append(kv.getKey()).append(' ').append(kv.getValue().type).append('\n');
+            sb.append(kv.getValue().samples);
+        }
+        return sb.toString();
+    }
+
+    private static Family family(Map<String, Family> families, String name, String type) {
+        //the first registration defines the type of a metric name
+        return families.computeIfAbsent(name, k -> new Family(type));
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static String labels(Map<String, String> attributes, String extraKey, String extraValue) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> kv : attributes.entrySet()) {
+            appendLabel(sb, kv.getKey(), kv.getValue());
+        }
+        if (extraKey != null) {
+            appendLabel(sb, extraKey, extraValue);
+        }
+        return sb.length() == 0 ? "" : "{" + sb + "}";
+    }
+
+    private static void appendLabel(StringBuilder sb, String key, String value) {
+        if (sb.length() > 0) {
+            sb.append(',');
+        }
+        sb.append(sanitize(key)).append("=\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> sb.append("\\\\");
+                case '"' -> sb.append("\\\"");
+                case '\n' -> sb.append("\\n");
+                default -> sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    static String sanitize(String name) {
+        StringBuilder sb = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || (i > 0 && c >= '0' && c <= '9');
+            sb.append(valid ? c : '_');
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private static class Family {
+        private final String type;
+        private final StringBuilder samples = new StringBuilder();
+
+        private Family(String type) {
+            this.type = type;
+        }
+
+        private void sample(String name, String labels, long value) {
+            samples.append(name).append(labels).append(' ').append(value).append('\n');
+        }
+
+        private void sample(String name, String labels, double value) {
+            samples.append(name).append(labels).append(' ').append(value).append('\n');
+        }
+    }
+
+}
@@ -0,0 +1,104 @@
+package io.joshworks.fstore.core.seda;
+
+/**
+ * AIMD controller for the concurrency and batch size of an adaptive stage.
+ * <p>
+ * Each processed batch is a sample of its execution time and of the time its oldest event waited in the queue.
+ * Only execution time is compared to the target latency: when it exceeds the target, handlers are slowing each other down
+ * (or batches are too large), so both concurrency and batch size are cut (multiplicative decrease), at most once per
+ * target latency window, since samples already in flight still reflect the previous values.
+ * Queue time is never a reason to back off, a backlog means there's not enough concurrency: while execution is under
+ * the target and events are queued, concurrency grows by one (additive increase), and batch size grows by one if the
+ * backlog is larger than what a single round of batches would drain.
+ */
+final class AdaptiveController {
+
+    private static final double BACKOFF = 0.75;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxBatchSize;
+    private final long targetLatency;
+
+    private int limit;
+    private int batchSize = 1;
+    private long lastLatency;
+    private long lastDecrease;
+    private long increases;
+    private long decreases;
+
+    AdaptiveController(int minLimit, int maxLimit, int maxBatchSize, long targetLatency) {
+        if (minLimit <= 0 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid concurrency bounds: " + minLimit + ", " + maxLimit);
+        }
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("maxBatchSize must be greater than zero");
+        }
+        if (targetLatency <= 0) {
+            throw new IllegalArgumentException("targetLatency must be greater than zero");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxBatchSize = maxBatchSize;
+        this.targetLatency = targetLatency;
+        this.limit = minLimit;
+        this.lastDecrease = -targetLatency;
+    }
+
+    /**
+     * @param executionTime batch execution time, in the same unit as the target latency
+     * @param queueTime     time the oldest event of the batch waited in the queue, only used for stats
+     * @param queueDepth    events waiting in the queue
+     * @param now           current time, in the same unit as the target latency
+     * @return true if the concurrency limit has increased
+     */
+    synchronized boolean onSample(long executionTime, long queueTime, int queueDepth, long now) {
+        lastLatency = queueTime + executionTime;
+        if (executionTime > targetLatency) {
+            if (now - lastDecrease >= targetLatency) {
+                lastDecrease = now;
+                limit = Math.max(minLimit, (int) (limit * BACKOFF));
+                batchSize = Math.max(1, (int) (batchSize * BACKOFF));
+                decreases++;
+            }
+            return false;
+        }
+        if (queueDepth == 0) {
+            return false;
+        }
+        boolean limitIncreased = false;
+        if (limit < maxLimit) {
+            limit++;
+            limitIncreased = true;
+        }
+        boolean batchIncreased = false;
+        if (batchSize < maxBatchSize && queueDepth > (long) limit * batchSize) {
+            batchSize++;
+            batchIncreased = true;
+        }
+        if (limitIncreased || batchIncreased) {
+            increases++;
+        }
+        return limitIncreased;
+    }
+
+    synchronized int limit() {
+        return limit;
+    }
+
+    synchronized int batchSize() {
+        return batchSize;
+    }
+
+    synchronized long lastLatency() {
+        return lastLatency;
+    }
+
+    synchronized long increases() {
+        return increases;
+    }
+
+    synchronized long decreases() {
+        return decreases;
+    }
+}
@@ -0,0 +1,256 @@
+package io.joshworks.fstore.core.seda;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Executor that drains tasks from a bounded queue in micro batches, with concurrency and batch size
+ * driven by an {@link AdaptiveController} from the measured batch execution time and queue depth.
+ * One worker thread is started per possible concurrency level, workers above the current limit stay idle.
+ * When the queue is full submitters either wait (blockWhenFull) or get an {@link EnqueueException}.
+ */
+class AdaptiveExecutor implements StageExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveExecutor.class);
+
+    private static final long POLL_TIMEOUT_MS = 100;
+
+    private final BlockingQueue<SedaTask> queue;
+    private final AdaptiveController controller;
+    private final Consumer<List<Runnable>> runner;
+    private final boolean blockWhenFull;
+    private final Thread[] workers;
+    private final Object limitChanged = new Object();
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong totalTime = new AtomicLong();
+    private final AtomicLong queueTime = new AtomicLong();
+
+    /**
+     * @param runner handles a batch of tasks, must not throw
+     */
+    AdaptiveExecutor(String name, AdaptiveController controller, int maxConcurrency, int queueSize, boolean blockWhenFull, Consumer<List<Runnable>> runner) {
+        this.queue = new LinkedBlockingQueue<>(queueSize);
+        this.controller = controller;
+        this.runner = runner;
+        this.blockWhenFull = blockWhenFull;
+        this.workers = new Thread[maxConcurrency];
+        for (int i = 0; i < maxConcurrency; i++) {
+            int idx = i;
+            workers[i] = new Thread(() -> work(idx), name + "-" + (i + 1));
+            workers[i].start();
+        }
+    }
+
+    @Override
+    public void submitTask(Runnable r) {
+        if (closed.get()) {
+            return;
+        }
+        SedaTask task = SedaTask.wrap(r);
+        inFlight.incrementAndGet();
+        if (blockWhenFull) {
+            try {
+                queue.put(task);
+            } catch (InterruptedException e) {
+                inFlight.decrementAndGet();
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        } else if (!queue.offer(task)) {
+            inFlight.decrementAndGet();
+            rejected.incrementAndGet();
+            throw new EnqueueException();
+        }
+        submitted.incrementAndGet();
+    }
+
+    private void work(int idx) {
+        List<SedaTask> batch = new ArrayList<>();
+        List<Runnable> tasks = new ArrayList<>();
+        while (!closed.get() || !queue.isEmpty()) {
+            try {
+                if (idx >= controller.limit()) {
+                    synchronized (limitChanged) {
+                        limitChanged.wait(POLL_TIMEOUT_MS);
+                    }
+                    continue;
+                }
+                SedaTask first = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, controller.batchSize() - 1);
+                runBatch(batch, tasks);
+            } catch (InterruptedException e) {
+                if (closed.get()) {
+                    return;
+                }
+            } catch (Exception e) {
+                logger.error("Failed handling batch", e);
+            } finally {
+                inFlight.addAndGet(-batch.size());
+                batch.clear();
+                tasks.clear();
+            }
+        }
+    }
+
+    private void runBatch(List<SedaTask> batch, List<Runnable> tasks) {
+        active.incrementAndGet();
+        try {
+            long now = System.currentTimeMillis();
+            long waited = 0;
+            for (SedaTask task : batch) {
+                waited += now - task.created();
+                tasks.add(task.delegate());
+            }
+            TimeWatch watch = TimeWatch.start();
+            runner.accept(tasks);
+            long elapsed = watch.elapsed();
+
+            completed.addAndGet(batch.size());
+            batches.incrementAndGet();
+            totalTime.addAndGet(elapsed);
+            queueTime.addAndGet(waited);
+
+            if (controller.onSample(elapsed, now - batch.get(0).created(), queue.size(), now + elapsed)) {
+                synchronized (limitChanged) {
+                    limitChanged.notifyAll();
+                }
+            }
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+
+    int concurrencyLimit() {
+        return controller.limit();
+    }
+
+    int batchSize() {
+        return controller.batchSize();
+    }
+
+    long lastLatency() {
+        return controller.lastLatency();
+    }
+
+    long limitIncreases() {
+        return controller.increases();
+    }
+
+    long limitDecreases() {
+        return controller.decreases();
+    }
+
+    int maxConcurrency() {
+        return workers.length;
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    int active() {
+        return active.get();
+    }
+
+    int queueSize() {
+        return queue.size();
+    }
+
+    int remainingQueueCapacity() {
+        return queue.remainingCapacity();
+    }
+
+    long submitted() {
+        return submitted.get();
+    }
+
+    long completed() {
+        return completed.get();
+    }
+
+    long rejected() {
+        return rejected.get();
+    }
+
+    long totalTime() {
+        return totalTime.get();
+    }
+
+    double averageBatchSize() {
+        long count = batches.get();
+        return count == 0 ? 0 : completed.get() / (double) count;
+    }
+
+    double averageExecutionTime() {
+        long tasks = completed.get();
+        return tasks == 0 ? 0 : totalTime.get() / (double) tasks;
+    }
+
+    double averageQueueTime() {
+        long tasks = completed.get();
+        return tasks == 0 ? 0 : queueTime.get() / (double) tasks;
+    }
+
+    @Override
+    public StageStats stats() {
+        return new StageStats(this, closed.get());
+    }
+
+    //workers exit once the queue is drained
+    @Override
+    public void shutdown() {
+        closed.set(true);
+        synchronized (limitChanged) {
+            limitChanged.notifyAll();
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        closed.set(true);
+        List<SedaTask> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        inFlight.addAndGet(-pending.size());
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        List<Runnable> tasks = new ArrayList<>();
+        for (SedaTask task : pending) {
+            tasks.add(task.delegate());
+        }
+        return tasks;
+    }
+
+    @Override
+    public void awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+        for (Thread worker : workers) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return;
+            }
+            worker.join(remaining);
+        }
+    }
+}
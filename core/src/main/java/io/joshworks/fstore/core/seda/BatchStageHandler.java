@@ -0,0 +1,19 @@
+package io.joshworks.fstore.core.seda;
+
+import java.util.List;
+
+/**
+ * Handler receiving micro batches of events, used by adaptive stages (see {@link Stage.Builder#adaptive}).
+ * Each event must be completed or forwarded individually, if the batch fails all of its events are completed exceptionally.
+ * On non adaptive stages each event is handled as a batch of one.
+ */
+@FunctionalInterface
+public interface BatchStageHandler<T> extends StageHandler<T> {
+
+    void onEvents(List<EventContext<T>> batch) throws Exception;
+
+    @Override
+    default void onEvent(EventContext<T> elem) throws Exception {
+        onEvents(List.of(elem));
+    }
+}
@@ -6,7 +6,7 @@ import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
-class BoundedExecutor {
+class BoundedExecutor implements StageExecutor {
     private final SedaThreadPoolExecutor executor;
     private final AtomicBoolean closed = new AtomicBoolean();
     private final Semaphore semaphore;
@@ -18,7 +18,8 @@ class BoundedExecutor {
         this.blockWhenFull = blockWhenFull;
     }
 
-    void submitTask(Runnable r) {
+    @Override
+    public void submitTask(Runnable r) {
         if (closed.get()) {
             return;
         }
@@ -61,20 +62,24 @@ class BoundedExecutor {
         }
     }
 
+    @Override
     public StageStats stats() {
         return new StageStats(executor, closed.get());
     }
 
+    @Override
     public void shutdown() {
         closed.set(true);
         executor.shutdown();
     }
 
+    @Override
     public List<Runnable> shutdownNow() {
         closed.set(true);
         return executor.shutdownNow();
     }
 
+    @Override
     public void awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
         executor.awaitTermination(timeout, unit);
     }
@@ -31,4 +31,8 @@ public class EventContext<T> {
     public void complete(Object value) {
         future.complete(value);
     }
+
+    void fail(Throwable cause) {
+        future.completeExceptionally(cause);
+    }
 }
@@ -124,7 +124,7 @@ public class SedaContext implements Closeable {
                 completed = true;
                 for (Stage stage : stages.values()) {
                     StageStats stats = stage.stats();
-                    boolean stageCompleted = stats.activeCount == 0 && stats.queueSize == 0;
+                    boolean stageCompleted = stats.inFlight == 0 && stats.queueSize == 0;
                     completed = completed && stageCompleted;
                 }
 
@@ -11,7 +11,7 @@ public class SedaTask implements Runnable {
         this.delegate = delegate;
     }
 
-    public static Runnable wrap(Runnable delegate) {
+    public static SedaTask wrap(Runnable delegate) {
         return new SedaTask(delegate);
     }
 
@@ -25,6 +25,10 @@ public class SedaTask implements Runnable {
         }
     }
 
+    Runnable delegate() {
+        return delegate;
+    }
+
     public long executionTime() {
         return executionTime;
     }
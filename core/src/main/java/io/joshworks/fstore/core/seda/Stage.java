@@ -4,6 +4,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
@@ -16,7 +17,7 @@ public class Stage<T> implements Closeable {
 
     private final Logger logger;
 
-    private final BoundedExecutor executor;
+    private final StageExecutor executor;
     private final StageHandler<T> handler;
     private final SedaContext sedaContext;
     private final String name;
@@ -31,6 +32,9 @@ public class Stage<T> implements Closeable {
           long keepAliveTime,
           TimeUnit unit,
           boolean blockWhenFull,
+          int threadPerTask,
+          long targetLatency,
+          int maxBatchSize,
           RejectedExecutionHandler rejectionHandler,
           SedaContext sedaContext,
           StageHandler<T> handler) {
@@ -38,8 +42,15 @@ public class Stage<T> implements Closeable {
         this.handler = handler;
         this.name = name;
         this.sedaContext = sedaContext;
-        SedaThreadPoolExecutor tp = SedaThreadPoolExecutor.create(name, corePoolSize, maximumPoolSize, keepAliveTime, unit, queueSize, rejectionHandler);
-        this.executor = new BoundedExecutor(tp, queueSize, blockWhenFull);
+        if (threadPerTask > 0) {
+            this.executor = new ThreadPerTaskExecutor(name, threadPerTask, blockWhenFull);
+        } else if (targetLatency > 0) {
+            AdaptiveController controller = new AdaptiveController(corePoolSize, maximumPoolSize, maxBatchSize, unit.toMillis(targetLatency));
+            this.executor = new AdaptiveExecutor(name, controller, maximumPoolSize, queueSize, blockWhenFull, this::handleBatch);
+        } else {
+            SedaThreadPoolExecutor tp = SedaThreadPoolExecutor.create(name, corePoolSize, maximumPoolSize, keepAliveTime, unit, queueSize, rejectionHandler);
+            this.executor = new BoundedExecutor(tp, queueSize, blockWhenFull);
+        }
     }
 
     void submit(T event, CompletableFuture<Object> future) {
@@ -48,25 +59,45 @@ public class Stage<T> implements Closeable {
         }
 
         String uuid = name + "_" + correlation.incrementAndGet();
-        executor.submitTask(() -> {
-            EventContext<T> context = new EventContext<>(uuid, event, sedaContext, future);
-            try {
-                handler.handle(context);
-
-            } catch (StageHandler.StageHandlerException e) {
-                Throwable cause = e.getCause();
-                if (cause instanceof EnqueueException) {
-                    logger.error("Failed to enqueue event: {}", event);
-                } else {
-                    logger.error("Failed handling event: " + event, e.getCause());
-                }
-                future.completeExceptionally(cause);
-
-            } catch (Exception e) {
-                logger.error("Failed handling event: " + event, e);
-                future.completeExceptionally(e);
+        executor.submitTask(new EventTask(new EventContext<>(uuid, event, sedaContext, future)));
+    }
+
+    private void handle(EventContext<T> context) {
+        try {
+            handler.handle(context);
+        } catch (Exception e) {
+            onFailure(context, e);
+        }
+    }
+
+    //batches drained by adaptive stages, handled one by one unless the handler accepts batches
+    @SuppressWarnings("unchecked")
+    private void handleBatch(List<Runnable> tasks) {
+        if (!(handler instanceof BatchStageHandler)) {
+            tasks.forEach(Runnable::run);
+            return;
+        }
+        List<EventContext<T>> batch = new ArrayList<>(tasks.size());
+        for (Runnable task : tasks) {
+            batch.add(((EventTask) task).context);
+        }
+        try {
+            ((BatchStageHandler<T>) handler).onEvents(batch);
+        } catch (Exception e) {
+            for (EventContext<T> context : batch) {
+                onFailure(context, e);
             }
-        });
+        }
+    }
+
+    private void onFailure(EventContext<T> context, Exception e) {
+        Throwable cause = e instanceof StageHandler.StageHandlerException ? e.getCause() : e;
+        if (cause instanceof EnqueueException) {
+            logger.error("Failed to enqueue event: {}", context.data);
+        } else {
+            logger.error("Failed handling event: " + context.data, cause);
+        }
+        context.fail(cause);
     }
 
     public StageStats stats() {
@@ -110,6 +141,19 @@ public class Stage<T> implements Closeable {
         return name;
     }
 
+    private final class EventTask implements Runnable {
+        private final EventContext<T> context;
+
+        private EventTask(EventContext<T> context) {
+            this.context = context;
+        }
+
+        @Override
+        public void run() {
+            handle(context);
+        }
+    }
+
     public static class Builder<T> {
 
         private int corePoolSize = 1;
@@ -118,6 +162,9 @@ public class Stage<T> implements Closeable {
         private long keepAliveTime = 30000;
         private RejectedExecutionHandler rejectionHandler;
         private boolean blockWhenFull;
+        private int threadPerTask;
+        private long targetLatency;
+        private int maxBatchSize = 64;
 
         public Builder() {
         }
@@ -162,6 +209,45 @@ public class Stage<T> implements Closeable {
             return this;
         }
 
+        /**
+         * Runs each event in its own thread instead of a thread pool, virtual threads when supported by the runtime.
+         * Suited for handlers doing blocking IO. Pool and queue sizes are ignored, at most maxInFlight events
+         * are handled concurrently, further submissions wait if blockWhenFull is set, otherwise an {@link EnqueueException} is thrown.
+         */
+        public Builder<T> threadPerTask(int maxInFlight) {
+            if (maxInFlight <= 0) {
+                throw new IllegalArgumentException("maxInFlight must be greater than zero");
+            }
+            this.threadPerTask = maxInFlight;
+            return this;
+        }
+
+        /**
+         * Drains events from the queue in micro batches, adjusting concurrency (between corePoolSize and maximumPoolSize)
+         * and batch size (up to maxBatchSize) to keep the batch execution time under the target while draining any backlog:
+         * concurrency is only cut when execution itself is slower than the target, queued events make it grow.
+         * Handlers implementing {@link BatchStageHandler} receive whole batches. When the queue is full further submissions
+         * wait if blockWhenFull is set, otherwise an {@link EnqueueException} is thrown.
+         * Latency is measured in milliseconds, targetLatency must be at least one millisecond.
+         */
+        public Builder<T> adaptive(long targetLatency, TimeUnit unit) {
+            //latency is sampled in milliseconds, anything lower would silently disable the adaptive stage
+            long millis = unit.toMillis(targetLatency);
+            if (millis <= 0) {
+                throw new IllegalArgumentException("targetLatency must be at least one millisecond: " + targetLatency + " " + unit);
+            }
+            this.targetLatency = millis;
+            return this;
+        }
+
+        public Builder<T> maxBatchSize(int maxBatchSize) {
+            if (maxBatchSize <= 0) {
+                throw new IllegalArgumentException("maxBatchSize must be greater than zero");
+            }
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
         public Builder<T> rejectionHandler(RejectedExecutionHandler rejectionHandler) {
             Objects.requireNonNull(rejectionHandler, "Rejection handler must be provided");
             this.rejectionHandler = rejectionHandler;
@@ -169,8 +255,11 @@ public class Stage<T> implements Closeable {
         }
 
         Stage<T> build(String name, StageHandler<T> handler, SedaContext sedaContext) {
+            if (threadPerTask > 0 && targetLatency > 0) {
+                throw new IllegalStateException("threadPerTask and adaptive stages cannot be combined");
+            }
             rejectionHandler = rejectionHandler == null ? new LoggingRejectionHandler(name) : rejectionHandler;
-            return new Stage<>(name, corePoolSize, maximumPoolSize, queueSize, keepAliveTime, TimeUnit.MILLISECONDS, blockWhenFull, rejectionHandler, sedaContext, handler);
+            return new Stage<>(name, corePoolSize, maximumPoolSize, queueSize, keepAliveTime, TimeUnit.MILLISECONDS, blockWhenFull, threadPerTask, targetLatency, maxBatchSize, rejectionHandler, sedaContext, handler);
         }
     }
 
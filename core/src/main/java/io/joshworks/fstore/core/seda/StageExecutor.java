@@ -0,0 +1,17 @@
+package io.joshworks.fstore.core.seda;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+interface StageExecutor {
+
+    void submitTask(Runnable r);
+
+    StageStats stats();
+
+    void shutdown();
+
+    List<Runnable> shutdownNow();
+
+    void awaitTermination(long timeout, TimeUnit unit) throws InterruptedException;
+}
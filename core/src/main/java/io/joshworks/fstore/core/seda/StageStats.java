@@ -16,6 +16,17 @@ public class StageStats {
     public final double averageQueueTime;
     public final long totalExecutionTime;
     private final long rejectedTasks;
+    public final boolean virtualThreads;
+    //tasks submitted and not yet completed, running or waiting in the queue
+    public final int inFlight;
+    public final int maxInFlight;
+    //adaptive controller decisions, fixed values for non adaptive stages
+    public final int concurrencyLimit;
+    public final int batchSize;
+    public final double averageBatchSize;
+    public final long lastLatency;
+    public final long limitIncreases;
+    public final long limitDecreases;
 
     StageStats(SedaThreadPoolExecutor threadPool, boolean closed) {
         this.activeCount = threadPool.getActiveCount();
@@ -31,6 +42,68 @@ public class StageStats {
         this.averageQueueTime = threadPool.averageQueueTime();
         this.totalExecutionTime = threadPool.totalTime();
         this.rejectedTasks = threadPool.rejectedTasks();
+        this.virtualThreads = false;
+        this.inFlight = activeCount + queueSize;
+        this.maxInFlight = maximumPoolSize + queueSize + remainingQueueCapacity;
+        this.concurrencyLimit = maximumPoolSize;
+        this.batchSize = 1;
+        this.averageBatchSize = 1;
+        this.lastLatency = 0;
+        this.limitIncreases = 0;
+        this.limitDecreases = 0;
+        this.closed = closed;
+    }
+
+    StageStats(ThreadPerTaskExecutor executor, boolean closed) {
+        this.inFlight = executor.inFlight();
+        this.maxInFlight = executor.maxInFlight();
+        this.virtualThreads = executor.virtualThreads();
+        this.activeCount = inFlight;
+        this.corePoolSize = 0;
+        this.largestPoolSize = executor.largestInFlight();
+        this.poolSize = inFlight;
+        this.maximumPoolSize = maxInFlight;
+        this.completedTaskCount = executor.completed();
+        this.taskCount = executor.submitted();
+        //no queue, submitters waiting for a permit
+        this.remainingQueueCapacity = executor.availablePermits();
+        this.queueSize = executor.waiting();
+        this.averageExecutionTime = executor.averageExecutionTime();
+        this.averageQueueTime = executor.averageQueueTime();
+        this.totalExecutionTime = executor.totalTime();
+        this.rejectedTasks = executor.rejected();
+        this.concurrencyLimit = maxInFlight;
+        this.batchSize = 1;
+        this.averageBatchSize = 1;
+        this.lastLatency = 0;
+        this.limitIncreases = 0;
+        this.limitDecreases = 0;
+        this.closed = closed;
+    }
+
+    StageStats(AdaptiveExecutor executor, boolean closed) {
+        this.activeCount = executor.active();
+        this.corePoolSize = 0;
+        this.largestPoolSize = executor.maxConcurrency();
+        this.poolSize = executor.maxConcurrency();
+        this.maximumPoolSize = executor.maxConcurrency();
+        this.completedTaskCount = executor.completed();
+        this.taskCount = executor.submitted();
+        this.remainingQueueCapacity = executor.remainingQueueCapacity();
+        this.queueSize = executor.queueSize();
+        this.averageExecutionTime = executor.averageExecutionTime();
+        this.averageQueueTime = executor.averageQueueTime();
+        this.totalExecutionTime = executor.totalTime();
+        this.rejectedTasks = executor.rejected();
+        this.virtualThreads = false;
+        this.inFlight = executor.inFlight();
+        this.maxInFlight = maximumPoolSize + queueSize + remainingQueueCapacity;
+        this.concurrencyLimit = executor.concurrencyLimit();
+        this.batchSize = executor.batchSize();
+        this.averageBatchSize = executor.averageBatchSize();
+        this.lastLatency = executor.lastLatency();
+        this.limitIncreases = executor.limitIncreases();
+        this.limitDecreases = executor.limitDecreases();
         this.closed = closed;
     }
 
@@ -47,6 +120,15 @@ public class StageStats {
                 ", remainingQueueCapacity=" + remainingQueueCapacity +
                 ", queueSize=" + queueSize +
                 ", rejectedTasks=" + rejectedTasks +
+                ", virtualThreads=" + virtualThreads +
+                ", inFlight=" + inFlight +
+                ", maxInFlight=" + maxInFlight +
+                ", concurrencyLimit=" + concurrencyLimit +
+                ", batchSize=" + batchSize +
+                ", averageBatchSize=" + String.format("%.2f", averageBatchSize) +
+                ", lastLatency=" + lastLatency +
+                ", limitIncreases=" + limitIncreases +
+                ", limitDecreases=" + limitDecreases +
                 ", averageExecutionTime=" + String.format("%.6f", averageExecutionTime) +
                 ", totalExecutionTime=" + totalExecutionTime +
                 ", averageQueueTime=" + averageQueueTime +
@@ -0,0 +1,200 @@
+package io.joshworks.fstore.core.seda;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs each task in its own thread, virtual threads when supported by the runtime (JDK 21+),
+ * otherwise daemon platform threads that are reused while idle.
+ * There's no task queue, concurrency is bounded by a semaphore: when no permits are available
+ * the submitter either waits for one (blockWhenFull) or gets an {@link EnqueueException}.
+ */
+class ThreadPerTaskExecutor implements StageExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ThreadPerTaskExecutor.class);
+
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+    private final Semaphore permits;
+    private final int maxInFlight;
+    private final boolean blockWhenFull;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger largestInFlight = new AtomicInteger();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong totalTime = new AtomicLong();
+    private final AtomicLong queueTime = new AtomicLong();
+
+    ThreadPerTaskExecutor(String name, int maxInFlight, boolean blockWhenFull) {
+        ExecutorService virtual = virtualThreadExecutor(name);
+        this.virtualThreads = virtual != null;
+        this.executor = virtualThreads ? virtual : platformThreadExecutor(name);
+        this.maxInFlight = maxInFlight;
+        this.permits = new Semaphore(maxInFlight);
+        this.blockWhenFull = blockWhenFull;
+    }
+
+    @Override
+    public void submitTask(Runnable r) {
+        if (closed.get()) {
+            return;
+        }
+        //created before waiting for a permit, so the wait counts as queue time
+        SedaTask task = SedaTask.wrap(r);
+        if (!permits.tryAcquire()) {
+            if (!blockWhenFull) {
+                rejected.incrementAndGet();
+                throw new EnqueueException();
+            }
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+        if (closed.get()) {
+            permits.release();
+            return;
+        }
+
+        int current = inFlight.incrementAndGet();
+        largestInFlight.accumulateAndGet(current, Math::max);
+        submitted.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    queueTime.addAndGet(task.queueTime());
+                    totalTime.addAndGet(task.executionTime());
+                    completed.incrementAndGet();
+                    done();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            done();
+        }
+    }
+
+    private void done() {
+        inFlight.decrementAndGet();
+        permits.release();
+    }
+
+    boolean virtualThreads() {
+        return virtualThreads;
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    int largestInFlight() {
+        return largestInFlight.get();
+    }
+
+    int maxInFlight() {
+        return maxInFlight;
+    }
+
+    int waiting() {
+        return permits.getQueueLength();
+    }
+
+    int availablePermits() {
+        return permits.availablePermits();
+    }
+
+    long submitted() {
+        return submitted.get();
+    }
+
+    long completed() {
+        return completed.get();
+    }
+
+    long rejected() {
+        return rejected.get();
+    }
+
+    long totalTime() {
+        return totalTime.get();
+    }
+
+    double averageExecutionTime() {
+        long tasks = completed.get();
+        return tasks == 0 ? 0 : totalTime.get() / (double) tasks;
+    }
+
+    double averageQueueTime() {
+        long tasks = completed.get();
+        return tasks == 0 ? 0 : queueTime.get() / (double) tasks;
+    }
+
+    @Override
+    public StageStats stats() {
+        return new StageStats(this, closed.get());
+    }
+
+    @Override
+    public void shutdown() {
+        closed.set(true);
+        executor.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        closed.set(true);
+        return executor.shutdownNow();
+    }
+
+    @Override
+    public void awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        executor.awaitTermination(timeout, unit);
+    }
+
+    //Thread.ofVirtual() is only available from JDK 21, looked up reflectively so this compiles on older releases
+    private static ExecutorService virtualThreadExecutor(String name) {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, name + "-", 1L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            Method newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) newExecutor.invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            logger.info("Virtual threads not available, using platform threads for stage {}", name);
+            return null;
+        }
+    }
+
+    private static ExecutorService platformThreadExecutor(String name) {
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        ThreadFactory factory = r -> {
+            Thread thread = new Thread(r);
+            thread.setName(name + "-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 30, TimeUnit.SECONDS, new SynchronousQueue<>(), factory);
+    }
+}
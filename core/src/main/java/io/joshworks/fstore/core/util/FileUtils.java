@@ -6,9 +6,11 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 
 public class FileUtils {
 
@@ -33,6 +35,31 @@ public class FileUtils {
         }
     }
 
+    /**
+     * Atomically replaces target with source, then fsyncs the target directory so the rename is durable.
+     *
+     * @throws RuntimeIOException if the file system does not support atomic moves or the move fails
+     */
+    public static void moveAtomically(Path source, Path target) {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeIOException("Failed to move " + source + " to " + target, e);
+        }
+        fsyncDirectory(target.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Flushes directory entries (created, renamed or deleted files) to disk
+     */
+    public static void fsyncDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            throw new RuntimeIOException("Failed to fsync " + dir, e);
+        }
+    }
+
     public static void tryCreate(File file) {
         boolean newFile = FileUtils.createIfNotExists(file);
         if (!newFile) {
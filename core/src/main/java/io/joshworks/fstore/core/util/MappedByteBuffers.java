@@ -49,13 +49,21 @@ public final class MappedByteBuffers {
     }
 
     public static void unmap(MappedByteBuffer buffer) {
+        free(buffer);
+    }
+
+    /**
+     * Releases the memory of a direct buffer (allocated or mapped) without waiting for it to be garbage collected.
+     * The buffer must not be a slice or duplicate, and must not be used afterwards.
+     */
+    public static void free(ByteBuffer buffer) {
         if (!buffer.isDirect())
             throw new IllegalArgumentException("Unmapping only works with direct buffers");
         if (UNMAP == null)
             throw UNMAP_NOT_SUPPORTED_EXCEPTION;
 
         try {
-            UNMAP.invokeExact((ByteBuffer) buffer);
+            UNMAP.invokeExact(buffer);
         } catch (Throwable throwable) {
             throw new RuntimeException("Unable to unmap the mapped buffer", throwable);
         }
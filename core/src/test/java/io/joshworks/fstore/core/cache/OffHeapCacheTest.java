@@ -0,0 +1,201 @@
+package io.joshworks.fstore.core.cache;
+
+import io.joshworks.fstore.core.Serializer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OffHeapCacheTest {
+
+    private static final int SLOT_SIZE = 64;
+    private OffHeapCache<Long, String> cache;
+
+    @Before
+    public void setUp() {
+        cache = new OffHeapCache<>(16 * 100 * SLOT_SIZE, SLOT_SIZE, new LongSerializer(), new StringSerializer());
+    }
+
+    @After
+    public void tearDown() {
+        cache.close();
+    }
+
+    @Test
+    public void add_get_remove() {
+        cache.add(1L, "a");
+        cache.add(2L, "b");
+        cache.add(1L, "c");
+
+        assertEquals("c", cache.get(1L));
+        assertEquals("b", cache.get(2L));
+        assertEquals(2, cache.size());
+
+        assertEquals("c", cache.remove(1L));
+        assertNull(cache.get(1L));
+        assertEquals("b", cache.get(2L));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void close_frees_direct_memory() {
+        int capacity = 16 * 1024 * SLOT_SIZE;
+        var other = new OffHeapCache<>(capacity, SLOT_SIZE, new LongSerializer(), new StringSerializer());
+        other.add(1L, "a");
+        long used = directMemoryUsed();
+
+        other.close();
+        //other buffers may be collected meanwhile, never allocated
+        assertTrue(used - directMemoryUsed() >= capacity);
+        assertNull(other.get(1L));
+        assertEquals(0, other.size());
+        other.close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void closed_cache_rejects_puts() {
+        cache.close();
+        cache.add(1L, "a");
+    }
+
+    private static long directMemoryUsed() {
+        return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(pool -> pool.getName().equals("direct"))
+                .mapToLong(BufferPoolMXBean::getMemoryUsed)
+                .sum();
+    }
+
+    @Test
+    public void entries_larger_than_slot_are_not_cached() {
+        cache.add(1L, "a");
+        cache.add(1L, "x".repeat(SLOT_SIZE));
+        assertNull(cache.get(1L));
+        assertEquals(1, cache.metrics().get("rejected"));
+    }
+
+    @Test
+    public void evicts_when_full() {
+        long capacity = cache.capacity();
+        for (long i = 0; i < capacity * 10; i++) {
+            cache.add(i, String.valueOf(i));
+        }
+        assertTrue(cache.size() <= capacity);
+        assertTrue(cache.metrics().get("evictions") > 0);
+        for (long i = 0; i < capacity * 10; i++) {
+            String value = cache.get(i);
+            if (value != null) {
+                assertEquals(String.valueOf(i), value);
+            }
+        }
+    }
+
+    @Test
+    public void referenced_entries_survive_clock_sweep() {
+        long capacity = cache.capacity();
+        for (long i = 0; i < capacity; i++) {
+            cache.add(i, String.valueOf(i));
+        }
+        //first sweep clears the referenced bits, then the hot key gets referenced again
+        for (long i = capacity; i < capacity + capacity / 2; i++) {
+            cache.add(i, String.valueOf(i));
+            cache.get(capacity - 1);
+        }
+        assertEquals(String.valueOf(capacity - 1), cache.get(capacity - 1));
+    }
+
+    @Test
+    public void table_is_next_power_of_two_of_twice_the_slots() {
+        assertEquals(2, OffHeapCache.tableSize(1));
+        assertEquals(8, OffHeapCache.tableSize(4));
+        assertEquals(16, OffHeapCache.tableSize(5));
+        assertEquals(16, OffHeapCache.tableSize(8));
+        assertEquals(32, OffHeapCache.tableSize(9));
+    }
+
+    @Test
+    public void remove_keeps_probe_chains() {
+        for (long i = 0; i < 1000; i++) {
+            cache.add(i, String.valueOf(i));
+        }
+        for (long i = 0; i < 1000; i += 2) {
+            cache.remove(i);
+        }
+        for (long i = 1; i < 1000; i += 2) {
+            String value = cache.get(i);
+            if (value != null) {
+                assertEquals(String.valueOf(i), value);
+            }
+        }
+        for (long i = 0; i < 1000; i += 2) {
+            assertNull(cache.get(i));
+        }
+    }
+
+    @Test
+    public void concurrent_access() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                tasks.add(executor.submit(() -> {
+                    for (int i = 0; i < 50_000; i++) {
+                        long key = ThreadLocalRandom.current().nextLong(5000);
+                        String value = cache.get(key);
+                        if (value == null) {
+                            cache.add(key, String.valueOf(key));
+                        } else {
+                            assertEquals(String.valueOf(key), value);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(cache.size() <= cache.capacity());
+    }
+
+    private static class LongSerializer implements Serializer<Long> {
+        @Override
+        public void writeTo(Long data, ByteBuffer dst) {
+            dst.putLong(data);
+        }
+
+        @Override
+        public Long fromBytes(ByteBuffer buffer) {
+            return buffer.getLong();
+        }
+    }
+
+    private static class StringSerializer implements Serializer<String> {
+        @Override
+        public void writeTo(String data, ByteBuffer dst) {
+            dst.put(data.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public String fromBytes(ByteBuffer buffer) {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+package io.joshworks.fstore.core.cache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TinyLfuCacheTest {
+
+    @Test
+    public void add_get_remove() {
+        var cache = new TinyLfuCache<Integer, String>(100, (k, v) -> 1, null, Runnable::run);
+        cache.add(1, "a");
+        cache.add(1, "b");
+        assertEquals("b", cache.get(1));
+        assertEquals(1, cache.size());
+        assertEquals("b", cache.remove(1));
+        assertNull(cache.get(1));
+        assertEquals(1, cache.metrics().get("hits"));
+        assertEquals(1, cache.metrics().get("misses"));
+    }
+
+    @Test
+    public void weight_is_bounded() {
+        var cache = new TinyLfuCache<Integer, byte[]>(10_000, (k, v) -> v.length, null, Runnable::run);
+        for (int i = 0; i < 1000; i++) {
+            cache.add(i, new byte[ThreadLocalRandom.current().nextInt(1, 500)]);
+        }
+        assertTrue(cache.weight() <= 10_000);
+        cache.add(-1, new byte[20_000]);
+        assertNull(cache.get(-1));
+    }
+
+    @Test
+    public void frequent_entries_survive_scan() {
+        var cache = new TinyLfuCache<Integer, Integer>(1000, (k, v) -> 1, null, Runnable::run);
+        for (int i = 0; i < 500; i++) {
+            cache.add(i, i);
+        }
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 500; i++) {
+                cache.get(i);
+            }
+        }
+        //one hit scan, 100x the capacity
+        for (int i = 1000; i < 100_000; i++) {
+            cache.add(i, i);
+        }
+
+        int retained = 0;
+        for (int i = 0; i < 500; i++) {
+            if (cache.get(i) != null) {
+                retained++;
+            }
+        }
+        assertTrue("Retained " + retained, retained >= 450);
+        assertEquals(1000, cache.size());
+    }
+
+    @Test
+    public void removal_listener_is_notified() {
+        List<RemovalListener.Cause> causes = new ArrayList<>();
+        var cache = new TinyLfuCache<Integer, Integer>(1, (k, v) -> 1, (k, v, cause) -> causes.add(cause), Runnable::run);
+        cache.add(1, 1);
+        cache.add(1, 2);
+        cache.add(2, 2);
+        cache.remove(cache.get(1) != null ? 1 : 2);
+
+        assertEquals(List.of(RemovalListener.Cause.REPLACED, RemovalListener.Cause.SIZE, RemovalListener.Cause.EXPLICIT), causes);
+        assertEquals(1, cache.metrics().get("evictions"));
+    }
+
+    @Test
+    public void concurrent_access() throws Exception {
+        Map<Integer, Integer> evicted = new ConcurrentHashMap<>();
+        var cache = new TinyLfuCache<Integer, Integer>(500, (k, v) -> 1, (k, v, cause) -> evicted.merge(k, 1, Integer::sum), Runnable::run);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                tasks.add(executor.submit(() -> {
+                    for (int i = 0; i < 100_000; i++) {
+                        int key = ThreadLocalRandom.current().nextInt(2000);
+                        Integer value = cache.get(key);
+                        if (value == null) {
+                            cache.add(key, key);
+                        } else {
+                            assertEquals(key, value.intValue());
+                        }
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(cache.size() <= 500);
+        assertEquals(cache.size(), cache.weight());
+    }
+
+}
@@ -0,0 +1,37 @@
+package io.joshworks.fstore.core.hash;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class Murmur3Test {
+
+    //hashes of whole arrays and buffers at position 0, persisted as part of stream hashes, must never change
+    private static final String[] VALUES = {"", "a", "ab", "abc", "abcd", "stream-1", "user-account-12345"};
+    private static final int[] HASHES = {-965378730, 1086686554, 398604456, -885266671, -873246740, -1381653291, -1786321971};
+
+    @Test
+    public void hash32_is_stable() {
+        for (int i = 0; i < VALUES.length; i++) {
+            byte[] data = VALUES[i].getBytes(StandardCharsets.UTF_8);
+            assertEquals(HASHES[i], Murmur3.hash32(data));
+            assertEquals(HASHES[i], Murmur3.hash32(ByteBuffer.wrap(data)));
+        }
+    }
+
+    @Test
+    public void hash32_with_offset_hashes_the_same_bytes() {
+        for (int i = 0; i < VALUES.length; i++) {
+            byte[] data = VALUES[i].getBytes(StandardCharsets.UTF_8);
+            byte[] padded = new byte[data.length + 5];
+            System.arraycopy(data, 0, padded, 3, data.length);
+
+            assertEquals(HASHES[i], Murmur3.hash32(padded, 3, data.length, Murmur3.DEFAULT_SEED));
+            assertEquals(HASHES[i], Murmur3.hash32(ByteBuffer.wrap(padded), 3, data.length));
+            assertEquals(HASHES[i], Murmur3.hash32(ByteBuffer.wrap(padded, 3, data.length)));
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package io.joshworks.fstore.core.io.buffers;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class BufferCompareTest {
+
+    private final Random random = new Random(123);
+
+    @Test
+    public void compare_and_mismatch_match_arrays() {
+        for (int i = 0; i < 10_000; i++) {
+            byte[] a = randomBytes();
+            byte[] b = random.nextBoolean() ? a.clone() : randomBytes();
+            if (b.length > 0 && random.nextBoolean()) {
+                b[random.nextInt(b.length)] ^= (byte) 0x80;
+            }
+            ByteBuffer bufA = offset(a, 3, true);
+            ByteBuffer bufB = offset(b, 5, false);
+
+            int expected = Integer.signum(Arrays.compareUnsigned(a, b));
+            assertEquals(expected, Integer.signum(BufferCompare.compare(bufA, 3, a.length, bufB, 5, b.length)));
+
+            int length = Math.min(a.length, b.length);
+            int expectedMismatch = Arrays.mismatch(a, 0, length, b, 0, length);
+            assertEquals(expectedMismatch, BufferCompare.mismatch(bufA, 3, bufB, 5, length));
+        }
+    }
+
+    @Test
+    public void binarySearch_bytes() {
+        ByteBuffer data = ByteBuffer.allocate(100 * 16);
+        for (int i = 0; i < 100; i++) {
+            data.putLong(i * 16, i * 2L).putLong(i * 16 + 8, -1);
+        }
+        ByteBuffer key = ByteBuffer.allocate(8);
+        assertEquals(21, BufferCompare.binarySearch(data, 0, 100, 16, key.putLong(0, 42), 0, 8));
+        assertEquals(-22, BufferCompare.binarySearch(data, 0, 100, 16, key.putLong(0, 41), 0, 8));
+        assertEquals(-101, BufferCompare.binarySearch(data, 0, 100, 16, key.putLong(0, 1000), 0, 8));
+    }
+
+    @Test
+    public void binarySearch_long_int() {
+        ByteBuffer data = ByteBuffer.allocate(4 + 100 * 20).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < 100; i++) {
+            data.putLong(4 + i * 20, i / 10 - 5).putInt(4 + i * 20 + 8, i % 10);
+        }
+        assertEquals(0, BufferCompare.binarySearch(data, 4, 100, 20, -5, 0));
+        assertEquals(57, BufferCompare.binarySearch(data, 4, 100, 20, 0, 7));
+        assertEquals(-61, BufferCompare.binarySearch(data, 4, 100, 20, 0, 10));
+        assertEquals(-1, BufferCompare.binarySearch(data, 4, 100, 20, -6, 0));
+    }
+
+    @Test
+    public void compareKey() {
+        ByteBuffer a = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer b = ByteBuffer.allocate(16);
+        for (int i = 0; i < 10_000; i++) {
+            long streamA = random.nextInt(5) - 2;
+            long streamB = random.nextInt(5) - 2;
+            int versionA = random.nextInt(5) - 2;
+            int versionB = random.nextInt(5) - 2;
+            a.putLong(2, streamA).putInt(10, versionA);
+            b.putLong(4, streamB).putInt(12, versionB);
+
+            int expected = streamA != streamB ? Long.compare(streamA, streamB) : Integer.compare(versionA, versionB);
+            assertEquals(Integer.signum(expected), Integer.signum(BufferCompare.compareKey(a, 2, b, 4)));
+        }
+    }
+
+    private byte[] randomBytes() {
+        byte[] bytes = new byte[random.nextInt(40)];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static ByteBuffer offset(byte[] data, int offset, boolean direct) {
+        ByteBuffer buffer = Buffers.allocate(offset + data.length, direct);
+        buffer.position(offset);
+        buffer.put(data);
+        return buffer.clear();
+    }
+
+}
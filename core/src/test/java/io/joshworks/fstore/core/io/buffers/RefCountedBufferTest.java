@@ -0,0 +1,71 @@
+package io.joshworks.fstore.core.io.buffers;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RefCountedBufferTest {
+
+    @Test
+    public void last_release_returns_buffer_to_pool() {
+        var pool = new SizeClassBufferPool(64, 1024, 4096, true);
+        RefCountedBuffer buffer = RefCountedBuffer.allocate(pool, 100);
+        ByteBuffer original = buffer.buffer();
+
+        buffer.retain();
+        assertFalse(buffer.release());
+        assertEquals(128, pool.metrics().get("inUseBytes"));
+        assertTrue(buffer.release());
+        assertEquals(0, pool.metrics().get("inUseBytes"));
+
+        assertSame(original, pool.allocate(100));
+    }
+
+    @Test
+    public void slices_share_the_reference_count() {
+        AtomicInteger deallocated = new AtomicInteger();
+        RefCountedBuffer buffer = RefCountedBuffer.wrap(ByteBuffer.allocate(16), b -> deallocated.incrementAndGet());
+        buffer.buffer().putLong(0, 1).putLong(8, 2);
+
+        RefCountedBuffer slice = buffer.retainedSlice(8, 8);
+        assertEquals(2, buffer.refCount());
+        assertEquals(2, slice.buffer().getLong(0));
+
+        buffer.release();
+        assertEquals(0, deallocated.get());
+        assertEquals(2, slice.buffer().getLong(0));
+
+        slice.release();
+        assertEquals(1, deallocated.get());
+        assertEquals(0, buffer.refCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void buffer_is_not_accessible_after_release() {
+        RefCountedBuffer buffer = RefCountedBuffer.wrap(ByteBuffer.allocate(16), b -> {});
+        RefCountedBuffer slice = buffer.slice(0, 8);
+        buffer.release();
+        slice.buffer();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void released_buffer_cannot_be_retained() {
+        RefCountedBuffer buffer = RefCountedBuffer.wrap(ByteBuffer.allocate(16), b -> {});
+        buffer.release();
+        buffer.retain();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void double_release_fails() {
+        RefCountedBuffer buffer = RefCountedBuffer.wrap(ByteBuffer.allocate(16), b -> {});
+        buffer.release();
+        buffer.release();
+    }
+
+}
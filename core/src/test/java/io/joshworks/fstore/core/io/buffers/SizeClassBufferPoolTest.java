@@ -0,0 +1,167 @@
+package io.joshworks.fstore.core.io.buffers;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SizeClassBufferPoolTest {
+
+    @Test
+    public void allocate_rounds_up_to_size_class() {
+        var pool = new SizeClassBufferPool(64, 4096, 1024 * 1024, false);
+        ByteBuffer buffer = pool.allocate(100);
+        assertEquals(128, buffer.capacity());
+        assertEquals(100, buffer.remaining());
+        assertEquals(64, pool.allocate(0).capacity());
+        assertEquals(4096, pool.allocate(4096).capacity());
+    }
+
+    @Test
+    public void freed_buffers_are_reused() {
+        var pool = new SizeClassBufferPool(64, 4096, 1024 * 1024, true);
+        ByteBuffer buffer = pool.allocate(1000);
+        buffer.putInt(123);
+        pool.free(buffer);
+
+        ByteBuffer reused = pool.allocate(600);
+        assertSame(buffer, reused);
+        assertEquals(0, reused.position());
+        assertEquals(600, reused.limit());
+        assertEquals(1024, pool.allocatedBytes());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void capacity_is_not_exceeded() {
+        var pool = new SizeClassBufferPool(64, 1024, 2048, false);
+        pool.allocate(1024);
+        pool.allocate(1024);
+        pool.allocate(64);
+    }
+
+    @Test
+    public void cached_buffers_are_released_when_capacity_is_reached() {
+        var pool = new SizeClassBufferPool(64, 1024, 2048, true);
+        List<ByteBuffer> small = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            small.add(pool.allocate(512));
+        }
+        small.forEach(pool::free);
+
+        pool.allocate(1024);
+        pool.allocate(1024);
+        assertEquals(2048, pool.allocatedBytes());
+    }
+
+    @Test
+    public void other_threads_cached_buffers_are_reclaimed() throws Exception {
+        var pool = new SizeClassBufferPool(64, 1024, 2048, false);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(() -> {
+                ByteBuffer a = pool.allocate(1024);
+                ByteBuffer b = pool.allocate(1024);
+                pool.free(a);
+                pool.free(b);
+            }).get();
+
+            try {
+                pool.allocate(512);
+                fail("Expected IllegalStateException");
+            } catch (IllegalStateException expected) {
+                //cached by the other thread
+            }
+            //flushed to the depot on the next operation of the other thread
+            executor.submit(() -> pool.free(pool.allocate(64))).get();
+            pool.allocate(512);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void foreign_buffer_cannot_be_freed() {
+        var pool = new SizeClassBufferPool(64, 1024, 2048, false);
+        pool.free(ByteBuffer.allocate(100));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void double_free_of_cached_buffer_fails() {
+        var pool = new SizeClassBufferPool(64, 1024, 4096, false);
+        ByteBuffer buffer = pool.allocate(10);
+        pool.free(buffer);
+        pool.free(buffer);
+    }
+
+    @Test
+    public void close_frees_cached_buffers() {
+        var pool = new SizeClassBufferPool(64, 1024, 64 * 1024, true);
+        List<ByteBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < SizeClassBufferPool.MAGAZINE_SIZE * 3; i++) {
+            buffers.add(pool.allocate(512));
+        }
+        buffers.forEach(pool::free);
+        assertEquals(buffers.size() * 512L, pool.allocatedBytes());
+
+        pool.close();
+        assertEquals(0, pool.allocatedBytes());
+    }
+
+    @Test
+    public void debug_reports_leaks_and_double_free() {
+        var pool = new SizeClassBufferPool(64, 1024, 4096, false, true);
+        ByteBuffer leaked = pool.allocate(10);
+        ByteBuffer freed = pool.allocate(10);
+        pool.free(freed);
+        assertEquals(1, pool.leaks().size());
+
+        try {
+            pool.free(freed);
+            fail("Expected double free to fail");
+        } catch (IllegalStateException expected) {
+            //expected
+        }
+        pool.free(leaked);
+        assertTrue(pool.leaks().isEmpty());
+    }
+
+    @Test
+    public void concurrent_allocations_share_buffers_across_threads() throws Exception {
+        var pool = new SizeClassBufferPool(64, 8192, 8 * 1024 * 1024, true);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                tasks.add(executor.submit(() -> {
+                    List<ByteBuffer> held = new ArrayList<>();
+                    for (int i = 0; i < 100_000; i++) {
+                        if (held.size() < 64 && ThreadLocalRandom.current().nextBoolean()) {
+                            held.add(pool.allocate(ThreadLocalRandom.current().nextInt(8192)));
+                        } else if (!held.isEmpty()) {
+                            pool.free(held.remove(held.size() - 1));
+                        }
+                    }
+                    held.forEach(pool::free);
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(0, pool.metrics().get("inUseBytes"));
+        assertTrue(pool.allocatedBytes() <= 8 * 1024 * 1024);
+    }
+
+}
@@ -0,0 +1,76 @@
+package io.joshworks.fstore.core.metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HistogramTest {
+
+    @Test
+    public void buckets_cover_the_whole_range() {
+        long prevUpper = -1;
+        for (int i = 0; i < Histogram.BUCKETS; i++) {
+            long upper = Histogram.upperBound(i);
+            assertTrue(upper > prevUpper);
+            assertEquals(i, Histogram.bucket(upper));
+            assertEquals(i, Histogram.bucket(prevUpper + 1));
+            prevUpper = upper;
+        }
+        assertEquals(Long.MAX_VALUE, prevUpper);
+    }
+
+    @Test
+    public void percentiles_are_within_bucket_error() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 100_000; i++) {
+            histogram.record(i * 1000L);
+        }
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(100_000, snapshot.count());
+        assertWithinError(50_000_000, snapshot.percentile(50));
+        assertWithinError(99_000_000, snapshot.percentile(99));
+        assertWithinError(99_900_000, snapshot.percentile(99.9));
+        assertEquals(100_000_000, snapshot.max());
+    }
+
+    @Test
+    public void interval_snapshot_only_has_values_since_previous_interval() {
+        Histogram histogram = new Histogram();
+        for (int i = 0; i < 1000; i++) {
+            histogram.record(ThreadLocalRandom.current().nextLong(1_000_000, 2_000_000));
+        }
+        assertEquals(1000, histogram.intervalSnapshot().count());
+
+        histogram.record(10);
+        Histogram.Snapshot interval = histogram.intervalSnapshot();
+        assertEquals(1, interval.count());
+        assertEquals(10, interval.percentile(99));
+        assertEquals(10, interval.max());
+
+        assertEquals(0, histogram.intervalSnapshot().count());
+        assertEquals(1001, histogram.snapshot().count());
+    }
+
+    @Test
+    public void values_export_histogram_percentiles() {
+        Metrics metrics = new Metrics();
+        metrics.update("writes");
+        metrics.histogram("append").record(20);
+
+        var values = metrics.values();
+        assertEquals(Long.valueOf(1), values.get("writes"));
+        assertEquals(Long.valueOf(1), values.get("append.count"));
+        assertEquals(Long.valueOf(20), values.get("append.p50"));
+        assertEquals(Long.valueOf(20), values.get("append.p999"));
+        assertEquals(Long.valueOf(20), values.get("append.max"));
+    }
+
+    private static void assertWithinError(long expected, long actual) {
+        double error = Math.abs(actual - expected) / (double) expected;
+        assertTrue("Expected " + expected + " got " + actual, error <= 1.0 / Histogram.SUB_BUCKETS);
+    }
+
+}
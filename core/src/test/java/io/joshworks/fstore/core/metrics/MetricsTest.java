@@ -0,0 +1,80 @@
+package io.joshworks.fstore.core.metrics;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class MetricsTest {
+
+    @Test
+    public void concurrent_updates_are_not_lost() throws InterruptedException {
+        Metrics metrics = new Metrics();
+        Counter counter = metrics.counter("writes");
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    counter.increment();
+                    metrics.update("bytes", 2);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(400_000, metrics.get("writes"));
+        assertEquals(800_000, metrics.get("bytes"));
+    }
+
+    @Test
+    public void remove_resets_and_keeps_handle() {
+        Metrics metrics = new Metrics();
+        Counter counter = metrics.counter("writes");
+        counter.update(10);
+
+        assertEquals(10, metrics.remove("writes"));
+        assertEquals(0, metrics.get("writes"));
+
+        counter.increment();
+        assertEquals(1, metrics.get("writes"));
+    }
+
+    @Test
+    public void merge_sums_counters() {
+        Metrics m1 = new Metrics();
+        m1.update("writes", 3);
+        m1.set("depth", 2);
+        Metrics m2 = new Metrics();
+        m2.update("writes", 4);
+
+        Metrics merged = Metrics.merge(m1, m2);
+        assertEquals(7, merged.get("writes"));
+        assertEquals(2, merged.get("depth"));
+        assertEquals(Long.valueOf(7), merged.values().get("writes"));
+    }
+
+    @Test
+    public void merge_sums_histograms() {
+        Metrics m1 = new Metrics();
+        m1.histogram("writeTime").record(10);
+        m1.histogram("writeTime").record(20);
+        Metrics m2 = new Metrics();
+        m2.histogram("writeTime").record(1000);
+
+        Metrics merged = Metrics.merge(m1, m2);
+        Histogram histogram = merged.histogram("writeTime");
+        assertEquals(3, histogram.count());
+        assertEquals(1030, histogram.sum());
+        assertEquals(Long.valueOf(3), merged.values().get("writeTime.count"));
+
+        //sources intervals are not advanced by the merged metrics
+        assertEquals(2, m1.histogram("writeTime").intervalSnapshot().count());
+        assertEquals(1, m2.histogram("writeTime").intervalSnapshot().count());
+    }
+
+}
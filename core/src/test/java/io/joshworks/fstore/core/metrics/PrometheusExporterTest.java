@@ -0,0 +1,76 @@
+package io.joshworks.fstore.core.metrics;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.ObjectName;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PrometheusExporterTest {
+
+    private final Metrics metrics = new Metrics();
+    private String key;
+
+    @Before
+    public void setUp() {
+        key = MetricRegistry.register(Map.of("type", "test", "name", ObjectName.quote("a\\b")), () -> metrics);
+    }
+
+    @After
+    public void tearDown() {
+        MetricRegistry.remove(key);
+    }
+
+    @Test
+    public void scrape() {
+        metrics.update("writes", 3);
+        metrics.set("segments", 2);
+        metrics.histogram("append").record(2_000_000_000L);
+
+        String text = PrometheusExporter.scrape();
+        assertTrue(text, text.contains("# TYPE fstore_writes counter\nfstore_writes{name=\"a\\\\b\",type=\"test\"} 3\n"));
+        assertTrue(text, text.contains("# TYPE fstore_segments gauge\n"));
+        assertTrue(text, text.contains("# TYPE fstore_append_seconds summary\n"));
+        assertTrue(text, text.contains("fstore_append_seconds{name=\"a\\\\b\",type=\"test\",quantile=\"0.99\"} 2.0"));
+        assertTrue(text, text.contains("fstore_append_seconds_sum{name=\"a\\\\b\",type=\"test\"} 2.0\n"));
+        assertTrue(text, text.contains("fstore_append_seconds_count{name=\"a\\\\b\",type=\"test\"} 1\n"));
+    }
+
+    @Test
+    public void serve() throws Exception {
+        metrics.update("writes", 5);
+        try (var exporter = PrometheusExporter.serve(new InetSocketAddress("localhost", 0))) {
+            URL url = new URL("http://localhost:" + exporter.address().getPort() + "/metrics");
+            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+            assertEquals(200, conn.getResponseCode());
+            try (InputStream in = conn.getInputStream()) {
+                String body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                assertTrue(body, body.contains("fstore_writes{name=\"a\\\\b\",type=\"test\"} 5\n"));
+            }
+        }
+    }
+
+    @Test
+    public void writeTo() throws Exception {
+        metrics.update("writes", 7);
+        Path file = Files.createTempFile("metrics", ".prom");
+        try {
+            PrometheusExporter.writeTo(file);
+            assertTrue(Files.readString(file).contains("fstore_writes{name=\"a\\\\b\",type=\"test\"} 7\n"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+}
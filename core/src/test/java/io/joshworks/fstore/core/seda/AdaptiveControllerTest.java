@@ -0,0 +1,131 @@
+package io.joshworks.fstore.core.seda;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveControllerTest {
+
+    private static final long TARGET = 100;
+
+    @Test
+    public void concurrency_increases_additively_while_under_target_with_backlog() {
+        AdaptiveController controller = new AdaptiveController(1, 4, 8, TARGET);
+        for (int i = 0; i < 10; i++) {
+            controller.onSample(10, 0, 1, i);
+        }
+        assertEquals(4, controller.limit());
+        assertEquals(1, controller.batchSize());
+    }
+
+    @Test
+    public void nothing_changes_without_backlog() {
+        AdaptiveController controller = new AdaptiveController(1, 4, 8, TARGET);
+        assertFalse(controller.onSample(10, 0, 0, 0));
+        assertEquals(1, controller.limit());
+        assertEquals(0, controller.increases());
+    }
+
+    @Test
+    public void batch_size_grows_when_backlog_exceeds_a_round_of_batches() {
+        AdaptiveController controller = new AdaptiveController(2, 2, 8, TARGET);
+        for (int i = 0; i < 20; i++) {
+            controller.onSample(10, 0, 1000, i);
+        }
+        assertEquals(8, controller.batchSize());
+    }
+
+    @Test
+    public void latency_above_target_decreases_multiplicatively_once_per_window() {
+        AdaptiveController controller = new AdaptiveController(1, 16, 8, TARGET);
+        for (int i = 0; i < 20; i++) {
+            controller.onSample(10, 0, 1000, i);
+        }
+        assertEquals(16, controller.limit());
+        assertEquals(8, controller.batchSize());
+
+        assertFalse(controller.onSample(500, 0, 1000, 1000));
+        assertEquals(12, controller.limit());
+        assertEquals(6, controller.batchSize());
+
+        //same window, samples still reflect the previous limit
+        controller.onSample(500, 0, 1000, 1050);
+        assertEquals(12, controller.limit());
+
+        controller.onSample(500, 0, 1000, 1100);
+        assertEquals(9, controller.limit());
+        assertEquals(4, controller.batchSize());
+        assertEquals(2, controller.decreases());
+        assertEquals(500, controller.lastLatency());
+    }
+
+    @Test
+    public void queue_time_alone_does_not_decrease() {
+        AdaptiveController controller = new AdaptiveController(1, 4, 8, TARGET);
+        assertTrue(controller.onSample(10, 5000, 100, 0));
+        assertEquals(2, controller.limit());
+        assertEquals(0, controller.decreases());
+        assertEquals(5010, controller.lastLatency());
+    }
+
+    //burst followed by steady load, 10ms per event, times in ms
+    @Test
+    public void recovers_after_burst() {
+        int min = 1;
+        int max = 8;
+        long target = 50;
+        long eventTime = 10;
+        AdaptiveController controller = new AdaptiveController(min, max, 64, target);
+
+        ArrayDeque<Long> queue = new ArrayDeque<>();
+        for (int i = 0; i < 600; i++) {
+            queue.add(0L);
+        }
+        long[] busyUntil = new long[max];
+        long[] batchStart = new long[max];
+        int[] batchSize = new int[max];
+        long[] oldest = new long[max];
+        long maxQueueAfterBurst = 0;
+        for (long now = 0; now < 10_000; now++) {
+            if (now % 5 < 2) { //400 events/s
+                queue.add(now);
+            }
+            for (int w = 0; w < max; w++) {
+                if (batchSize[w] > 0 && busyUntil[w] == now) {
+                    controller.onSample(now - batchStart[w], batchStart[w] - oldest[w], queue.size(), now);
+                    batchSize[w] = 0;
+                }
+                if (batchSize[w] == 0 && w < controller.limit() && !queue.isEmpty()) {
+                    oldest[w] = queue.peek();
+                    while (!queue.isEmpty() && batchSize[w] < controller.batchSize()) {
+                        queue.poll();
+                        batchSize[w]++;
+                    }
+                    batchStart[w] = now;
+                    busyUntil[w] = now + batchSize[w] * eventTime;
+                }
+            }
+            if (now > 5_000) {
+                maxQueueAfterBurst = Math.max(maxQueueAfterBurst, queue.size());
+            }
+        }
+        assertTrue("Backlog not drained: " + maxQueueAfterBurst, maxQueueAfterBurst < 10);
+        assertTrue(controller.increases() > 0);
+    }
+
+    @Test
+    public void limit_never_goes_below_minimum() {
+        AdaptiveController controller = new AdaptiveController(2, 4, 8, TARGET);
+        for (int i = 0; i < 10; i++) {
+            controller.onSample(500, 0, 10, i * TARGET);
+        }
+        assertEquals(2, controller.limit());
+        assertEquals(1, controller.batchSize());
+        assertTrue(controller.onSample(10, 0, 10, 2000));
+        assertEquals(3, controller.limit());
+    }
+}
@@ -0,0 +1,117 @@
+package io.joshworks.fstore.core.seda;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AdaptiveStageTest {
+
+    private SedaContext context;
+
+    @Before
+    public void setUp() {
+        context = new SedaContext("test");
+    }
+
+    @After
+    public void tearDown() {
+        context.close();
+    }
+
+    @Test
+    public void backlog_is_handled_in_batches() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger largestBatch = new AtomicInteger();
+        BatchStageHandler<Integer> handler = batch -> {
+            release.await();
+            largestBatch.accumulateAndGet(batch.size(), Math::max);
+            for (EventContext<Integer> ctx : batch) {
+                ctx.complete(ctx.data);
+            }
+        };
+        context.addStage("batch", handler, new Stage.Builder<>()
+                .maximumPoolSize(2)
+                .maxBatchSize(16)
+                .adaptive(1, TimeUnit.SECONDS));
+
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            futures.add(context.submit("batch", i));
+        }
+        release.countDown();
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals(Integer.valueOf(i), futures.get(i).get(5, TimeUnit.SECONDS));
+        }
+
+        //futures complete before the batch is accounted
+        long deadline = System.currentTimeMillis() + 5000;
+        while (context.stats().get("batch").inFlight > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        StageStats stats = context.stats().get("batch");
+        assertEquals(500, stats.completedTaskCount);
+        assertEquals(0, stats.inFlight);
+        assertEquals(2, stats.concurrencyLimit);
+        assertTrue(stats.limitIncreases > 0);
+        assertTrue(largestBatch.get() > 1);
+    }
+
+    @Test
+    public void failed_batch_fails_all_events() throws Exception {
+        BatchStageHandler<Integer> handler = batch -> {
+            throw new IllegalStateException("failed");
+        };
+        context.addStage("batch", handler, new Stage.Builder<>().adaptive(1, TimeUnit.SECONDS));
+
+        CompletableFuture<Object> future = context.submit("batch", 1);
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("Expected failure");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void full_queue_rejects() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        StageHandler<Integer> handler = ctx -> {
+            started.countDown();
+            release.await();
+            ctx.complete(ctx.data);
+        };
+        context.addStage("single", handler, new Stage.Builder<>().queueSize(1).adaptive(1, TimeUnit.SECONDS));
+
+        CompletableFuture<Object> first = context.submit("single", 1);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Object> second = context.submit("single", 2);
+        try {
+            context.submit("single", 3);
+            fail("Expected EnqueueException");
+        } catch (EnqueueException expected) {
+            //queue full
+        } finally {
+            release.countDown();
+        }
+        assertEquals(1, first.get(5, TimeUnit.SECONDS));
+        assertEquals(2, second.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sub_millisecond_target_latency_is_rejected() {
+        new Stage.Builder<Integer>().adaptive(500, TimeUnit.MICROSECONDS);
+    }
+}
@@ -0,0 +1,93 @@
+package io.joshworks.fstore.core.seda;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ThreadPerTaskStageTest {
+
+    private SedaContext context;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Before
+    public void setUp() {
+        context = new SedaContext("test");
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        context.close();
+    }
+
+    @Test
+    public void in_flight_is_bounded_and_excess_is_rejected() throws Exception {
+        CountDownLatch started = new CountDownLatch(2);
+        context.addStage("io", blockingHandler(started), new Stage.Builder<>().threadPerTask(2));
+
+        CompletableFuture<Object> first = context.submit("io", 1);
+        CompletableFuture<Object> second = context.submit("io", 2);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        StageStats stats = context.stats().get("io");
+        assertEquals(2, stats.inFlight);
+        assertEquals(2, stats.maxInFlight);
+
+        try {
+            context.submit("io", 3);
+            fail("Expected EnqueueException");
+        } catch (EnqueueException expected) {
+            //no permits left
+        }
+
+        release.countDown();
+        assertEquals(1, first.get(5, TimeUnit.SECONDS));
+        assertEquals(2, second.get(5, TimeUnit.SECONDS));
+        //futures complete before the task is accounted
+        waitFor(() -> context.stats().get("io").inFlight == 0);
+        assertEquals(2, context.stats().get("io").completedTaskCount);
+    }
+
+    @Test
+    public void blocked_submitter_waits_for_permit() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        context.addStage("io", blockingHandler(started), new Stage.Builder<>().threadPerTask(1).blockWhenFull());
+
+        CompletableFuture<Object> first = context.submit("io", 1);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<CompletableFuture<Object>> second = CompletableFuture.supplyAsync(() -> context.submit("io", 2));
+        waitFor(() -> context.stats().get("io").queueSize == 1);
+
+        release.countDown();
+        assertEquals(1, first.get(5, TimeUnit.SECONDS));
+        assertEquals(2, second.get(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS));
+    }
+
+    private StageHandler<Integer> blockingHandler(CountDownLatch started) {
+        return ctx -> {
+            started.countDown();
+            release.await();
+            ctx.complete(ctx.data);
+        };
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Timed out");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -84,6 +84,59 @@ public class Event {
         return Buffers.toString(data, offset, evTypeLen);
     }
 
+    /**
+     * Bit of the event type in a 64 bit type set, see {@link StreamBlock#types(ByteBuffer)}
+     */
+    public static long typeBit(ByteBuffer data) {
+        return typeBit(typeHash(data));
+    }
+
+    static long typeBit(byte[] eventType) {
+        return typeBit(typeHash(eventType));
+    }
+
+    private static long typeBit(int hash) {
+        return 1L << ((hash ^ (hash >>> 16)) & (Long.SIZE - 1));
+    }
+
+    /**
+     * Hash of the event type bytes, not unique, use {@link #isType(ByteBuffer, byte[])} to confirm a match
+     */
+    public static int typeHash(ByteBuffer data) {
+        int evTypeLen = eventTypeLen(data);
+        int offset = data.position() + EVENT_TYPE_OFFSET;
+        int hash = 1;
+        for (int i = 0; i < evTypeLen; i++) {
+            hash = 31 * hash + data.get(offset + i);
+        }
+        return hash;
+    }
+
+    public static int typeHash(byte[] eventType) {
+        int hash = 1;
+        for (byte b : eventType) {
+            hash = 31 * hash + b;
+        }
+        return hash;
+    }
+
+    /**
+     * Compares the event type with the given UTF-8 bytes without decoding it
+     */
+    public static boolean isType(ByteBuffer data, byte[] eventType) {
+        int evTypeLen = eventTypeLen(data);
+        if (evTypeLen != eventType.length) {
+            return false;
+        }
+        int offset = data.position() + EVENT_TYPE_OFFSET;
+        for (int i = 0; i < evTypeLen; i++) {
+            if (data.get(offset + i) != eventType[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public static String dataString(ByteBuffer data) {
         return new String(data(data), StandardCharsets.UTF_8);
     }
@@ -104,6 +157,10 @@ public class Event {
     }
 
     //WRITES
+    public static void writeStream(ByteBuffer data, long stream) {
+        data.putLong(data.position() + STREAM_OFFSET, stream);
+    }
+
     public static void writeVersion(ByteBuffer data, int version) {
         data.putInt(data.position() + VERSION_OFFSET, version);
     }
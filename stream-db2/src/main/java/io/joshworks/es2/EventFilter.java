@@ -0,0 +1,82 @@
+package io.joshworks.es2;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Event type and / or timestamp filter for stream reads.
+ * Event types are matched against the raw event bytes, no decoding is required.
+ */
+public class EventFilter {
+
+    private static final EventFilter ANY = new EventFilter(new byte[0][], -1L, Long.MIN_VALUE, Long.MAX_VALUE);
+
+    private final byte[][] types;
+    private final long typeBits;
+    private final long fromTimestamp;
+    private final long toTimestamp;
+
+    private EventFilter(byte[][] types, long typeBits, long fromTimestamp, long toTimestamp) {
+        this.types = types;
+        this.typeBits = typeBits;
+        this.fromTimestamp = fromTimestamp;
+        this.toTimestamp = toTimestamp;
+    }
+
+    public static EventFilter any() {
+        return ANY;
+    }
+
+    public static EventFilter ofTypes(String... eventTypes) {
+        return ANY.types(eventTypes);
+    }
+
+    public EventFilter types(String... eventTypes) {
+        if (eventTypes.length == 0) {
+            return new EventFilter(new byte[0][], -1L, fromTimestamp, toTimestamp);
+        }
+        byte[][] typeBytes = new byte[eventTypes.length][];
+        long bits = 0;
+        for (int i = 0; i < eventTypes.length; i++) {
+            typeBytes[i] = eventTypes[i].getBytes(StandardCharsets.UTF_8);
+            bits |= Event.typeBit(typeBytes[i]);
+        }
+        return new EventFilter(typeBytes, bits, fromTimestamp, toTimestamp);
+    }
+
+    /**
+     * @param fromTimestamp inclusive
+     * @param toTimestamp   exclusive
+     */
+    public EventFilter between(long fromTimestamp, long toTimestamp) {
+        if (fromTimestamp > toTimestamp) {
+            throw new IllegalArgumentException("Invalid timestamp range");
+        }
+        return new EventFilter(types, typeBits, fromTimestamp, toTimestamp);
+    }
+
+    /**
+     * @param blockTypes the {@link StreamBlock#types(ByteBuffer)} of a block
+     * @return false if the block is guaranteed not to have any matching event type
+     */
+    public boolean mayContain(long blockTypes) {
+        return (typeBits & blockTypes) != 0;
+    }
+
+    public boolean test(ByteBuffer event) {
+        long timestamp = Event.timestamp(event);
+        if (timestamp < fromTimestamp || timestamp >= toTimestamp) {
+            return false;
+        }
+        if (types.length == 0) {
+            return true;
+        }
+        for (byte[] type : types) {
+            if (Event.isType(event, type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -1,37 +1,143 @@
 package io.joshworks.es2;
 
+import io.joshworks.es2.catalog.StreamCatalog;
+import io.joshworks.es2.directory.DirectorySnapshot;
+import io.joshworks.es2.index.TypeIndexEntry;
+import io.joshworks.es2.index.TypeIndexes;
+import io.joshworks.es2.log.Sequence;
 import io.joshworks.es2.log.TLog;
 import io.joshworks.es2.sink.Sink;
+import io.joshworks.es2.sstable.BlockCodec;
+import io.joshworks.es2.sstable.CompressionPolicy;
 import io.joshworks.es2.sstable.SSTables;
+import io.joshworks.fstore.core.io.buffers.Buffers;
+import io.joshworks.fstore.core.metrics.Counter;
+import io.joshworks.fstore.core.metrics.Histogram;
+import io.joshworks.fstore.core.metrics.MetricRegistry;
+import io.joshworks.fstore.core.metrics.Metrics;
+import io.joshworks.fstore.core.util.FileUtils;
+import io.joshworks.fstore.core.util.Memory;
 import io.joshworks.fstore.core.util.Size;
 import io.joshworks.fstore.core.util.Threads;
 
+import javax.management.ObjectName;
 import java.io.Closeable;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.LongStream;
 
 public class EventStore implements Closeable {
 
+    private static final int LOCK_STRIPES = 1024;
+
+    //stored blocks can be slightly bigger than a page when compression expands the data
+    private static final int MAX_BLOCK_SIZE = Memory.PAGE_SIZE * 2;
+
+    private static final ThreadLocal<ByteBuffer> blockBuffer = ThreadLocal.withInitial(() -> Buffers.allocate(MAX_BLOCK_SIZE, false));
+    private static final ThreadLocal<ByteBuffer> eventsBuffer = ThreadLocal.withInitial(() -> Buffers.allocate(MAX_BLOCK_SIZE, false));
+    private static final ThreadLocal<ByteBuffer> filteredBuffer = ThreadLocal.withInitial(() -> Buffers.allocate(Memory.PAGE_SIZE, false));
+
     private final MemTable memTable;
     private final SSTables sstables;
+    private final TypeIndexes typeIndexes;
     private final TLog tlog;
+    private final StreamCatalog catalog;
+    private final Path root;
     private final ExecutorService worker;
     private final DirLock dirLock;
+    private final StreamLocks streamLocks = new StreamLocks(LOCK_STRIPES);
+    private final Lock writeLock = new ReentrantLock();
+    private final Sequence sequence;
+    private final Metrics metrics = new Metrics();
+    private final Histogram appendTime = metrics.histogram("append");
+    private final Histogram readTime = metrics.histogram("read");
+    private final Histogram flushTime = metrics.histogram("flush");
+    private final Histogram compactionTime = metrics.histogram("compaction");
+    private final Counter appended = metrics.counter("appended");
+    private final Counter appendedBytes = metrics.counter("appendedBytes");
+    private final String metricsKey;
 
     public EventStore(Path root, ExecutorService worker) {
+        this(root, worker, false);
+    }
+
+    /**
+     * @param typeIndex whether to keep a secondary index of events by type across all streams, see {@link #readType(String, long, int, Sink)}
+     */
+    public EventStore(Path root, ExecutorService worker, boolean typeIndex) {
+        this(root, worker, typeIndex, new CompressionPolicy());
+    }
+
+    /**
+     * @param compression SSTable block compression, {@link BlockCodec#DICTIONARY} levels train dictionaries from flushed events
+     */
+    public EventStore(Path root, ExecutorService worker, boolean typeIndex, CompressionPolicy compression) {
+        this(root, worker, typeIndex, compression, new Sequence());
+    }
+
+    //sequence is shared by all shards of a ShardedEventStore
+    EventStore(Path root, ExecutorService worker, boolean typeIndex, CompressionPolicy compression, Sequence sequence) {
+        this.root = root;
         this.dirLock = new DirLock(root.toFile());
         this.worker = worker;
-        this.sstables = new SSTables(root, worker);
-        this.tlog = new TLog(root, worker);
+        this.sequence = sequence;
+        this.sstables = new SSTables(root, worker, compression);
+        this.typeIndexes = typeIndex ? new TypeIndexes(root, worker) : null;
+        this.tlog = new TLog(root, worker, sequence);
+        this.catalog = new StreamCatalog(root, worker);
         this.memTable = new MemTable(Size.MB.ofInt(10), true);
+        this.metrics.register("fsync", tlog.fsyncTime());
+        this.metricsKey = MetricRegistry.register(Map.of("type", "eventStore", "name", ObjectName.quote(root.toString())), () -> metrics);
+        this.sequence.advance(SequenceCheckpoint.read(root));
         this.loadMemTable();
     }
 
+    //replays events not flushed to SSTables yet, events already flushed before the log was rolled are skipped
     private void loadMemTable() {
+        tlog.restore(event -> {
+            if (Event.version(event) <= version(Event.stream(event))) {
+                return;
+            }
+            if (!memTable.add(event)) {
+                throw new IllegalStateException("Log head exceeds the memtable capacity");
+            }
+        });
+    }
+
+    /**
+     * Stream name registry, resolves stream names to hashes (detecting collisions) and hashes back to names
+     */
+    public StreamCatalog catalog() {
+        return catalog;
+    }
+
+    /**
+     * Hash of a stream appended by name, see {@link #append(String, ByteBuffer)}.
+     * The {@link StreamHasher} hash if the name was never registered.
+     */
+    public long hash(String stream) {
+        return catalog.hash(stream).orElseGet(() -> StreamHasher.hash(stream));
+    }
 
+    /**
+     * Latency histograms in nanoseconds: append, read, flush, compaction and fsync, and appended events / bytes
+     * counters, also exported via JMX
+     */
+    public Metrics metrics() {
+        return metrics;
     }
 
     public int version(long stream) {
@@ -43,32 +149,427 @@ public class EventStore implements Closeable {
     }
 
     public int read(long stream, int startVersion, Sink sink) {
-        int read = memTable.get(stream, startVersion, sink);
-        if (read > 0 || read == Event.VERSION_TOO_HIGH) {
-            return read;
+        long start = System.nanoTime();
+        try {
+            int read = memTable.get(stream, startVersion, sink);
+            if (read > 0 || read == Event.VERSION_TOO_HIGH) {
+                return read;
+            }
+            return sstables.get(stream, startVersion, sink);
+        } finally {
+            readTime.recordSince(start);
         }
-        return sstables.get(stream, startVersion, sink);
     }
 
+    /**
+     * Reads the block starting at startVersion for each of the given streams, blocks are written to the sink.
+     * Streams are looked up in hash order so that each SSTable index is walked only once.
+     *
+     * @return the result for each stream, in the same order of the given streams, with the same values as {@link #read(long, int, Sink)}
+     */
+    public int[] read(long[] streams, int startVersion, Sink sink) {
+        long[] sorted = LongStream.of(streams).sorted().distinct().toArray();
+        int[] sortedResults = new int[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            int read = memTable.get(sorted[i], startVersion, sink);
+            //same as read(long, int, Sink), anything else falls through to the SSTables
+            sortedResults[i] = read > 0 || read == Event.VERSION_TOO_HIGH ? read : Event.NO_VERSION;
+        }
+        sstables.get(sorted, startVersion, sink, sortedResults);
+
+        int[] results = new int[streams.length];
+        for (int i = 0; i < streams.length; i++) {
+            results[i] = sortedResults[Arrays.binarySearch(sorted, streams[i])];
+        }
+        return results;
+    }
+
+    /**
+     * Reads events starting at startVersion that match the given filter, matching events are written to the sink as a
+     * single uncompressed block. Blocks are skipped without decompressing when their {@link StreamBlock#types(ByteBuffer)}
+     * don't contain any of the filter types.
+     * Reading stops when the output block is full or there are no more events in the stream, a matching event bigger
+     * than the output block is returned alone.
+     * <p>
+     * The output block is {@link StreamBlock#sparse(ByteBuffer)}: versions are not contiguous, START_VERSION is the
+     * version of the first match and ENTRIES the number of matches, each event version must be read from the event.
+     *
+     * @return the version to continue reading from, or the same negative values of {@link #read(long, int, Sink)}
+     * when there are no events at startVersion. Nothing is written to the sink if no events matched.
+     */
+    public int read(long stream, int startVersion, EventFilter filter, Sink sink) {
+        ByteBuffer block = blockBuffer.get();
+        ByteBuffer events = eventsBuffer.get();
+        ByteBuffer out = filteredBuffer.get();
+        var blockSink = new Sink.Buffer(block);
+
+        out.clear().position(StreamBlock.HEADER_BYTES);
+        int matchStart = -1;
+        int matches = 0;
+        long types = 0;
+
+        int version = startVersion;
+        boolean full = false;
+        while (!full) {
+            block.clear();
+            int res = read(stream, version, blockSink);
+            if (res < 0) {
+                if (version == startVersion) {
+                    return res;
+                }
+                break;
+            }
+            block.flip();
+
+            int blockEnd = StreamBlock.startVersion(block) + StreamBlock.entries(block);
+            if (!filter.mayContain(StreamBlock.types(block))) {
+                version = blockEnd;
+                continue;
+            }
+
+            events.clear();
+            StreamBlock.decompress(block, events, sstables::codec);
+            events.flip();
+            while (events.hasRemaining()) {
+                int eventSize = Event.sizeOf(events);
+                int eventVersion = Event.version(events);
+                ByteBuffer event = events.slice(events.position(), eventSize);
+                Buffers.offsetPosition(events, eventSize);
+                if (eventVersion < version || !filter.test(event)) {
+                    continue;
+                }
+                if (out.remaining() < eventSize) {
+                    if (matches > 0) {
+                        full = true;
+                        blockEnd = eventVersion;
+                        break;
+                    }
+                    //first match bigger than the output block, returned on its own so the read always moves forward
+                    out = Buffers.allocate(StreamBlock.HEADER_BYTES + eventSize, false);
+                    out.position(StreamBlock.HEADER_BYTES);
+                }
+                matchStart = matches == 0 ? eventVersion : matchStart;
+                types |= Event.typeBit(event);
+                out.put(event);
+                matches++;
+            }
+            version = blockEnd;
+        }
+
+        if (matches > 0) {
+            out.flip();
+            int size = out.remaining() - StreamBlock.HEADER_BYTES;
+            StreamBlock.writeHeader(out, stream, matchStart, matches, size, types, BlockCodec.NONE, true);
+            sink.write(out);
+        }
+        return version;
+    }
+
+    /**
+     * Reads events of the given type across all streams, in sequence order, starting at fromSequence (inclusive).
+     * Events are written to the sink individually, as they are stored, not as a {@link StreamBlock}.
+     * Requires the type index to be enabled.
+     *
+     * @return the sequence to continue reading from
+     */
+    public long readType(String eventType, long fromSequence, int maxEvents, Sink sink) {
+        if (typeIndexes == null) {
+            throw new IllegalStateException("Type index is not enabled");
+        }
+        byte[] type = eventType.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer block = blockBuffer.get();
+        ByteBuffer events = eventsBuffer.get();
+        var blockSink = new Sink.Buffer(block);
+        block.clear().flip();
+
+        long next = fromSequence;
+        int read = 0;
+        int hash = Event.typeHash(type);
+        //entries can be skipped (hash collisions), keep paging until enough matches or the index is exhausted
+        boolean exhausted = false;
+        while (read < maxEvents && !exhausted) {
+            int pageSize = maxEvents - read;
+            List<TypeIndexEntry> entries = typeIndexes.find(hash, next, pageSize);
+            exhausted = entries.size() < pageSize;
+            for (TypeIndexEntry entry : entries) {
+                next = entry.sequence() + 1;
+                //consecutive entries are often in the same block
+                if (!blockContains(block, entry.stream(), entry.version())) {
+                    block.clear();
+                    if (read(entry.stream(), entry.version(), blockSink) < 0) {
+                        block.clear().flip();
+                        continue;
+                    }
+                    block.flip();
+                    events.clear();
+                    StreamBlock.decompress(block, events, sstables::codec);
+                    events.flip();
+                }
+                for (int pos = 0; pos < events.limit(); pos += events.getInt(pos)) {
+                    ByteBuffer event = events.slice(pos, events.getInt(pos));
+                    if (Event.version(event) == entry.version()) {
+                        if (Event.isType(event, type)) { //type hashes are not unique
+                            sink.write(event);
+                            read++;
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+        if (read < maxEvents) {
+            next = memTable.readType(type, next, maxEvents - read, sink);
+        }
+        return next;
+    }
+
+    private static boolean blockContains(ByteBuffer block, long stream, int version) {
+        if (!block.hasRemaining()) {
+            return false;
+        }
+        int startVersion = StreamBlock.startVersion(block);
+        return StreamBlock.stream(block) == stream && version >= startVersion && version < startVersion + StreamBlock.entries(block);
+    }
+
+    /**
+     * Thread safe, appends to the same stream are linearizable, version check runs in parallel for different streams.
+     * The log and memtable writes are shared by all streams and are serialized.
+     */
     public void append(ByteBuffer event) {
-        int eventVersion = Event.version(event);
+        long start = System.nanoTime();
         long stream = Event.stream(event);
+        Lock streamLock = streamLocks.get(stream);
+        streamLock.lock();
+        try {
+            int eventVersion = Event.version(event);
+            int currVersion = version(stream);
+            int nextVersion = currVersion + 1;
+            if (eventVersion != -1 && eventVersion != nextVersion) {
+                throw new RuntimeException("Version mismatch");
+            }
+
+            Event.writeVersion(event, nextVersion);
+            write(event);
+        } finally {
+            streamLock.unlock();
+            appendTime.recordSince(start);
+        }
+    }
+
+    /**
+     * Same as {@link #append(ByteBuffer)}, the stream name is registered in the {@link #catalog()} on first append
+     * and the event stream hash is overwritten with the registered hash. It differs from the {@link StreamHasher} hash
+     * only when another name already had it, so colliding streams are kept apart. Streams must then be read with
+     * {@link #hash(String)}. Appends by hash only ({@link #append(ByteBuffer)}) skip the catalog.
+     *
+     * @return the stream hash
+     */
+    public long append(String stream, ByteBuffer event) {
+        long hash = catalog.register(stream);
+        Event.writeStream(event, hash);
+        append(event);
+        return hash;
+    }
+
+    /**
+     * Same as {@link #appendAll(long, int, List)}, registering the stream name as {@link #append(String, ByteBuffer)}
+     *
+     * @return the stream hash
+     */
+    public long appendAll(String stream, int expectedVersion, List<ByteBuffer> events) {
+        long hash = catalog.register(stream);
+        for (ByteBuffer event : events) {
+            Event.writeStream(event, hash);
+        }
+        appendAll(hash, expectedVersion, events);
+        return hash;
+    }
 
-        int currVersion = version(stream);
-        int nextVersion = currVersion + 1;
-        if (eventVersion != -1 && eventVersion != nextVersion) {
-            throw new RuntimeException("Version mismatch");
+    /**
+     * Appends all events to the stream atomically, events get contiguous versions starting at expectedVersion.
+     * Events are written to the log as a single group, either all or none of them are recovered.
+     *
+     * @param expectedVersion the version of the first event, same as the event version in {@link #append(ByteBuffer)},
+     *                        or {@link Event#NO_VERSION} to skip the version check
+     */
+    public void appendAll(long stream, int expectedVersion, List<ByteBuffer> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        int groupSize = 0;
+        for (ByteBuffer event : events) {
+            if (Event.stream(event) != stream) {
+                throw new IllegalArgumentException("All events must belong to the same stream");
+            }
+            groupSize += event.remaining();
+        }
+        if (groupSize > memTable.capacity()) {
+            throw new IllegalArgumentException("Events exceed the maximum batch size of " + memTable.capacity() + " bytes");
+        }
+
+        long start = System.nanoTime();
+        Lock streamLock = streamLocks.get(stream);
+        streamLock.lock();
+        try {
+            int nextVersion = version(stream) + 1;
+            if (expectedVersion != Event.NO_VERSION && expectedVersion != nextVersion) {
+                throw new RuntimeException("Version mismatch");
+            }
+            for (ByteBuffer event : events) {
+                Event.writeVersion(event, nextVersion++);
+            }
+            writeAll(events);
+            appended.update(events.size());
+            appendedBytes.update(groupSize);
+        } finally {
+            streamLock.unlock();
+            appendTime.recordSince(start);
         }
+    }
 
-        Event.writeVersion(event, nextVersion);
+    //the memtable is flushed before logging when full, so the log head only holds events of the current memtable
+    private void writeAll(List<ByteBuffer> events) {
+        int size = 0;
+        for (ByteBuffer event : events) {
+            size += event.remaining();
+        }
+        writeLock.lock();
+        try {
+            if (memTable.remaining() < size) {
+                flush();
+            }
+            long first = tlog.appendAll(events);
+            try {
+                memTable.addAll(events);
+            } finally {
+                sequence.complete(first);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
 
-        tlog.append(event);
-        event.flip();
-        if (!memTable.add(event)) {
-            memTable.flush(sstables);
-            tlog.roll();
+    private void write(ByteBuffer event) {
+        writeLock.lock();
+        try {
+            if (memTable.remaining() < event.remaining()) {
+                flush();
+            }
+            long seq = tlog.append(event);
+            try {
+                event.flip();
+                appended.increment();
+                appendedBytes.update(event.remaining());
+                memTable.add(event);
+            } finally {
+                sequence.complete(seq);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    //sequences of flushed events are only kept in the log head until it rolls, checkpointed before that
+    private void flush() {
+        long start = System.nanoTime();
+        SequenceCheckpoint.write(root, sequence.next());
+        memTable.flush(sstables, typeIndexes);
+        flushTime.recordSince(start);
+        tlog.roll();
+    }
+
+    /**
+     * Bulk loads events straight into SSTables, one table per input built in parallel, bypassing the log and memtable.
+     * Each input must be sorted by stream hash and version, all events of a stream must be in the same input,
+     * and streams must not exist yet. Versions are checked the same way as {@link #append(ByteBuffer)},
+     * sequences are assigned from the store sequence. Tables only become visible once all of them are built.
+     * Streams being loaded must not be appended to concurrently.
+     */
+    public void load(List<Iterator<ByteBuffer>> inputs, Executor executor) {
+        if (typeIndexes != null) {
+            throw new IllegalStateException("Bulk load is not supported with the type index enabled");
+        }
+        List<Iterator<ByteBuffer>> validated = new ArrayList<>();
+        for (Iterator<ByteBuffer> input : inputs) {
+            validated.add(new LoadIterator(input));
+        }
+        //loaded events are never logged, checkpointed before the tables become visible
+        sstables.load(validated, executor, () -> SequenceCheckpoint.write(root, sequence.next()));
+    }
+
+    /**
+     * Creates a consistent snapshot of the store in target (created if needed, must be empty), without copying data:
+     * SSTables, type index, stream catalog and sealed log segments are hard linked, the log head is copied up to its current position.
+     * Writes are blocked only while the segments are captured, linking runs concurrently with writes and compactions.
+     * Linked files share the store file locks, the target must be copied elsewhere (or the store stopped) before
+     * being opened as a regular store. See {@link Snapshot} for incremental backups.
+     */
+    public Snapshot snapshot(Path target) {
+        FileUtils.createDir(target.toFile());
+        List<DirectorySnapshot<?>> captured = new ArrayList<>();
+        long seq;
+        writeLock.lock();
+        try {
+            captured.add(sstables.snapshot());
+            if (typeIndexes != null) {
+                captured.add(typeIndexes.snapshot());
+            }
+            captured.add(tlog.snapshot());
+            captured.add(catalog.snapshot());
+            seq = sequence.next();
+        } finally {
+            writeLock.unlock();
+        }
+
+        Map<String, Long> files = new HashMap<>();
+        try {
+            for (DirectorySnapshot<?> dirSnapshot : captured) {
+                files.putAll(dirSnapshot.linkTo(target.toFile()));
+            }
+        } finally {
+            captured.forEach(DirectorySnapshot::close);
+        }
+        var snapshot = new Snapshot(seq, files);
+        snapshot.write(target);
+        return snapshot;
+    }
+
+    private final class LoadIterator implements Iterator<ByteBuffer> {
+
+        private final Iterator<ByteBuffer> delegate;
+        private long stream;
+        private int nextVersion = -1;
+
+        private LoadIterator(Iterator<ByteBuffer> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return delegate.hasNext();
+        }
 
-            memTable.add(event);
+        @Override
+        public ByteBuffer next() {
+            ByteBuffer event = delegate.next();
+            long eventStream = Event.stream(event);
+            if (nextVersion == -1 || eventStream != stream) {
+                if (nextVersion != -1 && eventStream < stream) {
+                    throw new IllegalArgumentException("Events must be sorted by stream");
+                }
+                if (version(eventStream) != Event.NO_VERSION) {
+                    throw new IllegalStateException("Stream " + eventStream + " already exists");
+                }
+                stream = eventStream;
+                nextVersion = 0;
+            }
+            int eventVersion = Event.version(event);
+            if (eventVersion != Event.NO_VERSION && eventVersion != nextVersion) {
+                throw new RuntimeException("Version mismatch");
+            }
+            Event.writeVersion(event, nextVersion++);
+            Event.writeSequence(event, sequence.assign());
+            return event;
         }
     }
 
@@ -77,11 +578,22 @@ public class EventStore implements Closeable {
         try {
             Threads.awaitTermination(worker, Long.MAX_VALUE, TimeUnit.MILLISECONDS, () -> System.out.println("Awaiting termination..."));
         } finally {
+            MetricRegistry.remove(metricsKey);
+            tlog.close();
+            sstables.close();
+            if (typeIndexes != null) {
+                typeIndexes.close();
+            }
+            catalog.close();
             dirLock.close();
         }
     }
 
     public CompletableFuture<Void> compact() {
-        return sstables.compact();
+        long start = System.nanoTime();
+        CompletableFuture<Void> compaction = typeIndexes == null
+                ? CompletableFuture.allOf(sstables.compact(), catalog.compact())
+                : CompletableFuture.allOf(sstables.compact(), typeIndexes.compact(), catalog.compact());
+        return compaction.whenComplete((r, e) -> compactionTime.recordSince(start));
     }
 }
@@ -0,0 +1,297 @@
+package io.joshworks.es2;
+
+import io.joshworks.fstore.core.io.IOUtils;
+import io.joshworks.fstore.core.io.buffers.Buffers;
+import io.joshworks.fstore.core.iterators.CloseableIterator;
+import io.joshworks.fstore.core.iterators.Iterators;
+import io.joshworks.fstore.core.iterators.PeekingIterator;
+import io.joshworks.fstore.core.util.Memory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * External merge sort of events by stream and version, for inputs that don't fit in memory, e.g. unsorted imports
+ * before {@link EventStore#load(List, java.util.concurrent.Executor)}.
+ * Events are copied into off-heap run buffers, full runs are sorted using primitive key arrays (events are not moved)
+ * and spilled to temporary files in the given pool, runs are then k-way merged.
+ * The sort is stable: events with the same stream and version (e.g. {@link Event#NO_VERSION}) keep their input order,
+ * ties are broken by run offset within a run, and by run order in the merge.
+ * Memory is bounded to (maxPendingRuns + 1) run buffers, adding blocks when all buffers are waiting to be spilled.
+ * Not thread safe, events must be added from a single thread.
+ */
+public class ExternalSort implements Closeable {
+
+    private static final String RUN_PREFIX = "run-";
+    private static final String RUN_EXT = "sort";
+    private static final int IO_BUFFER_SIZE = Memory.PAGE_SIZE * 16;
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private final File folder;
+    private final int runSize;
+    private final int maxBuffers;
+    private final ForkJoinPool pool;
+    private final BlockingQueue<ByteBuffer> buffers;
+    private final List<SegmentChannel> runs = new ArrayList<>();
+    private final List<ForkJoinTask<?>> spills = new ArrayList<>();
+    private int allocated;
+    private ByteBuffer current;
+
+    /**
+     * @param runSize        size in bytes of each in memory run, also the maximum event size
+     * @param maxPendingRuns maximum number of full runs waiting to be sorted and spilled
+     */
+    public ExternalSort(Path folder, int runSize, int maxPendingRuns, ForkJoinPool pool) {
+        if (runSize <= Event.HEADER_BYTES) {
+            throw new IllegalArgumentException("Run size must be greater than " + Event.HEADER_BYTES);
+        }
+        if (maxPendingRuns <= 0) {
+            throw new IllegalArgumentException("Max pending runs must be greater than zero");
+        }
+        this.folder = folder.toFile();
+        this.runSize = runSize;
+        this.maxBuffers = maxPendingRuns + 1;
+        this.pool = pool;
+        this.buffers = new ArrayBlockingQueue<>(maxBuffers);
+        this.current = nextBuffer();
+    }
+
+    public void add(ByteBuffer event) {
+        int size = Event.sizeOf(event);
+        if (size > runSize) {
+            throw new IllegalArgumentException("Event size " + size + " is greater than run size " + runSize);
+        }
+        if (current.remaining() < size) {
+            spill(current);
+            current = nextBuffer();
+        }
+        Buffers.copy(event, event.position(), size, current);
+    }
+
+    /**
+     * Spills any pending data and merges all runs.
+     * Returned events are only valid until the next call to the iterator, and until this sorter is closed.
+     */
+    public CloseableIterator<ByteBuffer> sorted() {
+        if (current.position() > 0) {
+            spill(current);
+            current = nextBuffer();
+        }
+        for (ForkJoinTask<?> spill : spills) {
+            spill.join();
+        }
+        spills.clear();
+
+        List<PeekingIterator<ByteBuffer>> iterators = new ArrayList<>();
+        for (SegmentChannel run : runs) {
+            iterators.add(Iterators.peekingIterator(Iterators.wrap(new LengthPrefixedIterator(run, IO_BUFFER_SIZE))));
+        }
+        return new RunMerge(iterators);
+    }
+
+    public int runs() {
+        return runs.size();
+    }
+
+    private static int compare(ByteBuffer ev1, ByteBuffer ev2) {
+        int c = Long.compare(Event.stream(ev1), Event.stream(ev2));
+        return c != 0 ? c : Integer.compare(Event.version(ev1), Event.version(ev2));
+    }
+
+    private ByteBuffer nextBuffer() {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+        if (allocated < maxBuffers) {
+            allocated++;
+            return Buffers.allocate(runSize, true);
+        }
+        try {
+            return buffers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for run buffer", e);
+        }
+    }
+
+    private void spill(ByteBuffer buffer) {
+        buffer.flip();
+        var file = new File(folder, RUN_PREFIX + runs.size() + "." + RUN_EXT);
+        var channel = SegmentChannel.create(file);
+        runs.add(channel);
+        spills.add(pool.submit(() -> {
+            try {
+                writeRun(buffer, channel);
+            } finally {
+                buffer.clear();
+                buffers.offer(buffer);
+            }
+        }));
+    }
+
+    private static void writeRun(ByteBuffer run, SegmentChannel channel) {
+        int count = 0;
+        for (int pos = 0; pos < run.limit(); pos += run.getInt(pos)) {
+            count++;
+        }
+        long[] streams = new long[count];
+        int[] versions = new int[count];
+        int[] offsets = new int[count];
+        for (int i = 0, pos = 0; i < count; i++) {
+            run.position(pos);
+            streams[i] = Event.stream(run);
+            versions[i] = Event.version(run);
+            offsets[i] = pos;
+            pos += Event.sizeOf(run);
+        }
+        sort(streams, versions, offsets, 0, count - 1);
+
+        ByteBuffer out = Buffers.allocate(IO_BUFFER_SIZE, true);
+        for (int i = 0; i < count; i++) {
+            int size = run.getInt(offsets[i]);
+            if (out.remaining() < size) {
+                out.flip();
+                channel.append(out);
+                out.clear();
+            }
+            if (size > out.capacity()) { //bigger than the write buffer, write it directly
+                channel.append(run.slice(offsets[i], size));
+                continue;
+            }
+            Buffers.copy(run, offsets[i], size, out);
+        }
+        out.flip();
+        channel.append(out);
+    }
+
+    //quick sort on the key arrays, all three arrays are swapped together
+    //offsets grow with input order and are unique, used as tiebreaker they make the sort stable
+    private static void sort(long[] streams, int[] versions, int[] offsets, int lo, int hi) {
+        while (hi - lo >= INSERTION_SORT_THRESHOLD) {
+            int mid = (lo + hi) >>> 1;
+            long pivotStream = streams[mid];
+            int pivotVersion = versions[mid];
+            int pivotOffset = offsets[mid];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (compare(streams[i], versions[i], offsets[i], pivotStream, pivotVersion, pivotOffset) < 0) {
+                    i++;
+                }
+                while (compare(streams[j], versions[j], offsets[j], pivotStream, pivotVersion, pivotOffset) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(streams, versions, offsets, i++, j--);
+                }
+            }
+            //recurse on the smaller side to bound the stack depth
+            if (j - lo < hi - i) {
+                sort(streams, versions, offsets, lo, j);
+                lo = i;
+            } else {
+                sort(streams, versions, offsets, i, hi);
+                hi = j;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            for (int j = i; j > lo && compare(streams[j - 1], versions[j - 1], offsets[j - 1], streams[j], versions[j], offsets[j]) > 0; j--) {
+                swap(streams, versions, offsets, j, j - 1);
+            }
+        }
+    }
+
+    private static int compare(long stream1, int version1, int offset1, long stream2, int version2, int offset2) {
+        int c = Long.compare(stream1, stream2);
+        if (c != 0) {
+            return c;
+        }
+        c = Integer.compare(version1, version2);
+        return c != 0 ? c : Integer.compare(offset1, offset2);
+    }
+
+    private static void swap(long[] streams, int[] versions, int[] offsets, int i, int j) {
+        long stream = streams[i];
+        streams[i] = streams[j];
+        streams[j] = stream;
+        int version = versions[i];
+        versions[i] = versions[j];
+        versions[j] = version;
+        int offset = offsets[i];
+        offsets[i] = offsets[j];
+        offsets[j] = offset;
+    }
+
+    //k-way merge of the sorted runs, equal events are returned in run order
+    private static final class RunMerge implements CloseableIterator<ByteBuffer> {
+
+        private final List<PeekingIterator<ByteBuffer>> runs;
+        private final PriorityQueue<Integer> heads;
+        //run of the last returned event, only advanced on the next call so the returned event stays valid
+        private int last = -1;
+
+        private RunMerge(List<PeekingIterator<ByteBuffer>> runs) {
+            this.runs = runs;
+            this.heads = new PriorityQueue<>(Math.max(1, runs.size()), (r1, r2) -> {
+                int c = ExternalSort.compare(runs.get(r1).peek(), runs.get(r2).peek());
+                return c != 0 ? c : Integer.compare(r1, r2);
+            });
+            for (int i = 0; i < runs.size(); i++) {
+                if (runs.get(i).hasNext()) {
+                    heads.add(i);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (last >= 0) {
+                if (runs.get(last).hasNext()) {
+                    heads.add(last);
+                }
+                last = -1;
+            }
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public ByteBuffer next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = heads.poll();
+            return runs.get(last).next();
+        }
+
+        @Override
+        public void close() {
+            runs.forEach(IOUtils::closeQuietly);
+        }
+    }
+
+    /**
+     * Deletes all run files
+     */
+    @Override
+    public void close() {
+        for (ForkJoinTask<?> spill : spills) {
+            spill.quietlyJoin();
+        }
+        for (SegmentChannel run : runs) {
+            run.delete();
+        }
+        runs.clear();
+    }
+
+}
@@ -10,13 +10,21 @@ public class LengthPrefixedIterator implements Iterator<ByteBuffer> {
 
     private static final int LEN_LEN = Integer.BYTES;
 
-    private ByteBuffer readBuffer = Buffers.allocate(512, false);
+    private static final int DEFAULT_BUFFER_SIZE = 512;
+
+    private ByteBuffer readBuffer;
     private ByteBuffer recSlice = Buffers.EMPTY;
     private final SegmentChannel channel;
     private long offset;
 
     public LengthPrefixedIterator(SegmentChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    //bigger buffers reduce the number of reads for sequential scans of small records
+    public LengthPrefixedIterator(SegmentChannel channel, int bufferSize) {
         this.channel = channel;
+        this.readBuffer = Buffers.allocate(bufferSize, false);
         this.readBuffer.position(readBuffer.limit());
     }
 
@@ -1,5 +1,6 @@
 package io.joshworks.es2;
 
+import io.joshworks.es2.index.TypeIndexes;
 import io.joshworks.es2.sink.Sink;
 import io.joshworks.es2.sstable.BlockCodec;
 import io.joshworks.es2.sstable.SSTables;
@@ -10,6 +11,7 @@ import io.joshworks.fstore.core.util.Memory;
 import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Queue;
@@ -37,25 +39,66 @@ public class MemTable {
         this.data = Buffers.allocate(maxSize, direct);
     }
 
+    //write lock so readers never see a partially written event
     public boolean add(ByteBuffer event) {
         assert event.remaining() > 0;
-        if (data.remaining() < event.remaining()) {
-            return false;
-        }
+        Lock lock = rwLock.writeLock();
+        lock.lock();
+        try {
+            if (data.remaining() < event.remaining()) {
+                return false;
+            }
 
-        EventEntry entry = cached.isEmpty() ? new EventEntry() : cached.poll();
+            EventEntry entry = cached.isEmpty() ? new EventEntry() : cached.poll();
+
+            long stream = Event.stream(event);
+            int version = Event.version(event);
+
+            entry.offset = data.position();
+            entry.length = event.remaining();
+            entry.version = version;
+            entry.typeBit = Event.typeBit(event);
+
+            data.put(event);
+            table.computeIfAbsent(stream, k -> new StreamEvents(stream, version)).add(entry);
+            entries.incrementAndGet();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
 
-        long stream = Event.stream(event);
-        int version = Event.version(event);
+    /**
+     * Adds all events or none, returns false if there's not enough space for all of them.
+     * Readers see either all events or none.
+     */
+    public boolean addAll(List<ByteBuffer> events) {
+        int size = 0;
+        for (ByteBuffer event : events) {
+            size += event.remaining();
+        }
+        Lock lock = rwLock.writeLock();
+        lock.lock();
+        try {
+            if (data.remaining() < size) {
+                return false;
+            }
+            for (ByteBuffer event : events) {
+                add(event);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
 
-        entry.offset = data.position();
-        entry.length = event.remaining();
-        entry.version = version;
+    public int capacity() {
+        return data.capacity();
+    }
 
-        data.put(event);
-        table.computeIfAbsent(stream, k -> new StreamEvents(stream, version)).add(entry);
-        entries.incrementAndGet();
-        return true;
+    //free space in bytes
+    public int remaining() {
+        return data.remaining();
     }
 
     public int get(long stream, int version, Sink sink) {
@@ -81,10 +124,46 @@ public class MemTable {
         return events.version();
     }
 
+    /**
+     * Writes events of the given type in sequence order (same as insertion order), events are written as they are.
+     *
+     * @return the sequence after the last event written, or fromSequence if none
+     */
+    public long readType(byte[] eventType, long fromSequence, int maxEvents, Sink sink) {
+        Lock lock = rwLock.readLock();
+        lock.lock();
+        try {
+            long next = fromSequence;
+            int read = 0;
+            int end = data.position();
+            for (int pos = 0; pos < end && read < maxEvents; ) {
+                ByteBuffer event = data.slice(pos, data.getInt(pos));
+                pos += event.remaining();
+                if (Event.sequence(event) >= fromSequence && Event.isType(event, eventType)) {
+                    next = Event.sequence(event) + 1;
+                    sink.write(event);
+                    read++;
+                }
+            }
+            return next;
+        } finally {
+            lock.unlock();
+        }
+    }
+
     public void flush(SSTables sstables) {
+        flush(sstables, null);
+    }
+
+    //typeIndexes is optional, written first: replay on open skips events already in the SSTables,
+    //so a crash between the two flushes would otherwise lose the type entries for good.
+    //A crash after the type index flush only replays (and indexes again) events already indexed, duplicates are dropped on read
+    public void flush(SSTables sstables, TypeIndexes typeIndexes) {
         TimeWatch watch = TimeWatch.start();
-        MemTableFLushIterator it = new MemTableFLushIterator();
-        sstables.flush(it);
+        if (typeIndexes != null) {
+            typeIndexes.flush(new MemTableFLushIterator());
+        }
+        sstables.flush(new MemTableFLushIterator());
         System.out.println("Flushed " + entries() + " entries (" +  size() + " bytes) in " + watch.elapsed() + "ms");
         clear();
     }
@@ -153,20 +232,27 @@ public class MemTable {
 
             int size = 0;
             int entryCount = 0;
+            long types = 0;
             for (EventEntry entry : entries) {
                 if (entry.version < fromVersion) {
                     continue;
                 }
                 if (buff.remaining() < entry.length) {
-                    break;
+                    if (entryCount > 0) {
+                        break;
+                    }
+                    //first event bigger than the read buffer, returned on its own
+                    buff = Buffers.allocate(StreamBlock.HEADER_BYTES + entry.length, false);
+                    buff.position(StreamBlock.HEADER_BYTES);
                 }
                 size += Buffers.copy(data, entry.offset, entry.length, buff);
+                types |= entry.typeBit;
                 entryCount++;
             }
             assert size > 0;
 
             buff.flip();//write header does not modify buffer's position so it's safe
-            StreamBlock.writeHeader(buff, stream, fromVersion, entryCount, size, BlockCodec.NONE);
+            StreamBlock.writeHeader(buff, stream, fromVersion, entryCount, size, types, BlockCodec.NONE);
             return sink.write(buff);
         }
     }
@@ -175,6 +261,7 @@ public class MemTable {
         private int offset;
         private int length;
         private int version;
+        private long typeBit;
     }
 
     private class MemTableFLushIterator implements Iterator<ByteBuffer> {
@@ -3,6 +3,8 @@ package io.joshworks.es2;
 import io.joshworks.fstore.core.RuntimeIOException;
 import io.joshworks.fstore.core.io.Channels;
 import io.joshworks.fstore.core.io.buffers.Buffers;
+import io.joshworks.fstore.core.io.buffers.RefCountedBuffer;
+import io.joshworks.fstore.core.io.buffers.SizeClassBufferPool;
 import io.joshworks.fstore.core.util.FileUtils;
 import io.joshworks.fstore.core.util.MappedByteBuffers;
 
@@ -19,6 +21,7 @@ import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 
 public class SegmentChannel implements Closeable, SegmentFile {
@@ -83,6 +86,22 @@ public class SegmentChannel implements Closeable, SegmentFile {
         return Channels.read(channel, position, dst);
     }
 
+    /**
+     * Reads up to size bytes into a buffer from the pool, ready to be read.
+     * The returned buffer can be shared without copying, it goes back to the pool once all references are released.
+     */
+    public RefCountedBuffer read(long position, int size, SizeClassBufferPool pool) {
+        RefCountedBuffer buffer = RefCountedBuffer.allocate(pool, size);
+        try {
+            Channels.read(channel, position, buffer.buffer());
+            buffer.buffer().flip();
+            return buffer;
+        } catch (RuntimeException e) {
+            buffer.release();
+            throw e;
+        }
+    }
+
     public long position() {
         return writePosition.get();
     }
@@ -174,6 +193,11 @@ public class SegmentChannel implements Closeable, SegmentFile {
         return handle.getName().split("\\.")[0];
     }
 
+    @Override
+    public List<File> files() {
+        return List.of(handle);
+    }
+
     @Override
     public synchronized void close() {
         try {
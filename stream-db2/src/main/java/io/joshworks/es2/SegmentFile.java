@@ -1,6 +1,8 @@
 package io.joshworks.es2;
 
 import java.io.Closeable;
+import java.io.File;
+import java.util.List;
 
 public interface SegmentFile extends Closeable, Comparable<SegmentFile> {
 
@@ -11,6 +13,11 @@ public interface SegmentFile extends Closeable, Comparable<SegmentFile> {
 
     String name();
 
+    /**
+     * Files backing this segment, they must not change once the segment is added to a directory
+     */
+    List<File> files();
+
     @Override
     default int compareTo(SegmentFile o) {
         return name().compareTo(o.name()) * -1;
@@ -0,0 +1,64 @@
+package io.joshworks.es2;
+
+import io.joshworks.fstore.core.RuntimeIOException;
+import io.joshworks.fstore.core.util.FileUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Persisted lower bound of the next store sequence, written before events leave the log (flush) or bypass it (bulk load),
+ * so sequences are never reused after a restart even when the log head is empty.
+ * Events still in the log head are replayed on open and can advance the sequence further.
+ */
+class SequenceCheckpoint {
+
+    static final String FILE = "SEQUENCE";
+    private static final String TMP = FILE + ".tmp";
+
+    private SequenceCheckpoint() {
+
+    }
+
+    /**
+     * @return the checkpointed next sequence, or the one in the snapshot {@link Snapshot#MANIFEST} when opening
+     * a restored snapshot, zero if neither exists
+     */
+    static long read(Path root) {
+        long next = 0;
+        Path file = root.resolve(FILE);
+        if (Files.exists(file)) {
+            try {
+                ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+                if (data.remaining() != Long.BYTES) {
+                    throw new IllegalStateException("Invalid sequence checkpoint, expected " + Long.BYTES + " bytes, got " + data.remaining());
+                }
+                next = data.getLong();
+            } catch (IOException e) {
+                throw new RuntimeIOException("Failed to read sequence checkpoint", e);
+            }
+        }
+        if (Files.exists(root.resolve(Snapshot.MANIFEST))) {
+            next = Math.max(next, Snapshot.read(root).sequence());
+        }
+        return next;
+    }
+
+    static void write(Path root, long next) {
+        Path tmp = root.resolve(TMP);
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer data = ByteBuffer.allocate(Long.BYTES).putLong(next).flip();
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            throw new RuntimeIOException("Failed to write sequence checkpoint", e);
+        }
+        FileUtils.moveAtomically(tmp, root.resolve(FILE));
+    }
+}
@@ -0,0 +1,182 @@
+package io.joshworks.es2;
+
+import io.joshworks.es2.log.Sequence;
+import io.joshworks.es2.sink.Sink;
+import io.joshworks.es2.sstable.CompressionPolicy;
+import io.joshworks.fstore.core.util.FileUtils;
+import io.joshworks.fstore.core.util.Threads;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hash partitioned {@link EventStore}, streams are routed to one of N independent shards under root.
+ * Each shard has its own TLog, MemTable, SSTables and a single writer thread, so writes to different shards don't contend.
+ * Sequences are global, all shards share the same sequence, but are only ordered within a shard.
+ * Shards commit independently, so merged reads only return events below the lowest pending sequence of all shards.
+ * Streams are routed and addressed by hash only, names are not registered in the shard catalogs
+ * (a probed hash of a colliding name could belong to another shard).
+ */
+public class ShardedEventStore implements Closeable {
+
+    private static final String SHARD_PREFIX = "shard-";
+
+    private final EventStore[] shards;
+    private final ExecutorService[] writers;
+    private final Sequence sequence = new Sequence();
+
+    public ShardedEventStore(Path root, int shards) {
+        this(root, shards, false);
+    }
+
+    public ShardedEventStore(Path root, int shards, boolean typeIndex) {
+        this(root, shards, typeIndex, new CompressionPolicy());
+    }
+
+    /**
+     * @param compression SSTable block compression of every shard, see {@link EventStore#EventStore(Path, ExecutorService, boolean, CompressionPolicy)}
+     */
+    public ShardedEventStore(Path root, int shards, boolean typeIndex, CompressionPolicy compression) {
+        if (shards <= 0) {
+            throw new IllegalArgumentException("Shards must be greater than zero");
+        }
+        this.shards = new EventStore[shards];
+        this.writers = new ExecutorService[shards];
+        FileUtils.createDir(root.toFile());
+        for (int i = 0; i < shards; i++) {
+            Path shardRoot = root.resolve(SHARD_PREFIX + i);
+            FileUtils.createDir(shardRoot.toFile());
+            ExecutorService worker = Executors.newSingleThreadExecutor(Threads.namedThreadFactory(SHARD_PREFIX + i + "-worker"));
+            this.shards[i] = new EventStore(shardRoot, worker, typeIndex, compression, sequence);
+            this.writers[i] = Executors.newSingleThreadExecutor(Threads.namedThreadFactory(SHARD_PREFIX + i + "-writer"));
+        }
+    }
+
+    public int shards() {
+        return shards.length;
+    }
+
+    Sequence sequence() {
+        return sequence;
+    }
+
+    int shard(long stream) {
+        return Math.floorMod(stream, shards.length);
+    }
+
+    /**
+     * Appends the event in the shard writer thread.
+     * The event buffer must not be modified until the returned future completes.
+     */
+    public CompletableFuture<Void> append(ByteBuffer event) {
+        int shard = shard(Event.stream(event));
+        return CompletableFuture.runAsync(() -> shards[shard].append(event), writers[shard]);
+    }
+
+    /**
+     * Same as {@link EventStore#appendAll(long, int, List)}, in the shard writer thread
+     */
+    public CompletableFuture<Void> appendAll(long stream, int expectedVersion, List<ByteBuffer> events) {
+        int shard = shard(stream);
+        return CompletableFuture.runAsync(() -> shards[shard].appendAll(stream, expectedVersion, events), writers[shard]);
+    }
+
+    public int version(long stream) {
+        return shards[shard(stream)].version(stream);
+    }
+
+    public int read(long stream, int startVersion, Sink sink) {
+        return shards[shard(stream)].read(stream, startVersion, sink);
+    }
+
+    public int read(long stream, int startVersion, EventFilter filter, Sink sink) {
+        return shards[shard(stream)].read(stream, startVersion, filter, sink);
+    }
+
+    /**
+     * Same as {@link EventStore#read(long[], int, Sink)}, streams are grouped by shard
+     */
+    public int[] read(long[] streams, int startVersion, Sink sink) {
+        int[] results = new int[streams.length];
+        int[][] positions = new int[shards.length][];
+        int[] counts = new int[shards.length];
+        for (long stream : streams) {
+            counts[shard(stream)]++;
+        }
+        for (int s = 0; s < shards.length; s++) {
+            positions[s] = new int[counts[s]];
+            counts[s] = 0;
+        }
+        for (int i = 0; i < streams.length; i++) {
+            int s = shard(streams[i]);
+            positions[s][counts[s]++] = i;
+        }
+
+        for (int s = 0; s < shards.length; s++) {
+            if (positions[s].length == 0) {
+                continue;
+            }
+            long[] shardStreams = Arrays.stream(positions[s]).mapToLong(i -> streams[i]).toArray();
+            int[] shardResults = shards[s].read(shardStreams, startVersion, sink);
+            for (int i = 0; i < shardResults.length; i++) {
+                results[positions[s][i]] = shardResults[i];
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Merged view of {@link EventStore#readType(String, long, int, Sink)} across all shards, in sequence order.
+     * Events at or after the lowest sequence still being written by any shard are not returned, so a lower
+     * sequence committed later by another shard is never skipped by the returned cursor.
+     */
+    public long readType(String eventType, long fromSequence, int maxEvents, Sink sink) {
+        //read before the shards, everything below it is already visible
+        long committed = sequence.committed();
+        List<ByteBuffer> events = new ArrayList<>();
+        for (EventStore shard : shards) {
+            var shardSink = new Sink.Memory();
+            shard.readType(eventType, fromSequence, maxEvents, shardSink);
+            ByteBuffer data = ByteBuffer.wrap(shardSink.data());
+            while (data.hasRemaining()) {
+                int size = Event.sizeOf(data);
+                if (Event.sequence(data) < committed) {
+                    events.add(data.slice(data.position(), size));
+                }
+                data.position(data.position() + size);
+            }
+        }
+        events.sort((e1, e2) -> Long.compare(Event.sequence(e1), Event.sequence(e2)));
+
+        long next = fromSequence;
+        for (int i = 0; i < events.size() && i < maxEvents; i++) {
+            ByteBuffer event = events.get(i);
+            next = Event.sequence(event) + 1;
+            sink.write(event);
+        }
+        return next;
+    }
+
+    public CompletableFuture<Void> compact() {
+        return CompletableFuture.allOf(Arrays.stream(shards).map(EventStore::compact).toArray(CompletableFuture[]::new));
+    }
+
+    @Override
+    public void close() {
+        for (ExecutorService writer : writers) {
+            Threads.awaitTermination(writer, Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+        for (EventStore shard : shards) {
+            shard.close();
+        }
+    }
+
+}
@@ -0,0 +1,100 @@
+package io.joshworks.es2;
+
+import io.joshworks.es2.directory.SegmentDirectory;
+import io.joshworks.fstore.core.RuntimeIOException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Manifest of a store snapshot created by {@link EventStore#snapshot(Path)}: the store sequence at the time of the
+ * snapshot and every file in the snapshot directory with its length, except the manifest itself.
+ * Segment and dictionary files are immutable and the log head only grows, files with the same name and length in two
+ * snapshots have the same content. Directory metadata files are rewritten in place and can keep their length,
+ * so {@link #diff(Snapshot)} always includes them.
+ */
+public class Snapshot {
+
+    static final String MANIFEST = "MANIFEST";
+    private static final String SEQUENCE = "sequence";
+    private static final String SEPARATOR = " ";
+    private static final String METADATA_SUFFIX = "." + SegmentDirectory.METADATA;
+
+    private final long sequence;
+    private final Map<String, Long> files;
+
+    Snapshot(long sequence, Map<String, Long> files) {
+        this.sequence = sequence;
+        this.files = Collections.unmodifiableMap(new TreeMap<>(files));
+    }
+
+    public static Snapshot read(Path dir) {
+        try {
+            List<String> lines = Files.readAllLines(dir.resolve(MANIFEST), StandardCharsets.UTF_8);
+            long sequence = -1;
+            Map<String, Long> files = new TreeMap<>();
+            for (String line : lines) {
+                String[] parts = line.split(SEPARATOR);
+                if (parts.length != 2) {
+                    throw new IllegalStateException("Invalid manifest entry: " + line);
+                }
+                if (SEQUENCE.equals(parts[0])) {
+                    sequence = Long.parseLong(parts[1]);
+                } else {
+                    files.put(parts[0], Long.parseLong(parts[1]));
+                }
+            }
+            return new Snapshot(sequence, files);
+        } catch (IOException e) {
+            throw new RuntimeIOException("Failed to read snapshot manifest", e);
+        }
+    }
+
+    void write(Path dir) {
+        List<String> lines = new ArrayList<>();
+        lines.add(SEQUENCE + SEPARATOR + sequence);
+        files.forEach((name, length) -> lines.add(name + SEPARATOR + length));
+        try {
+            Files.write(dir.resolve(MANIFEST), lines, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeIOException("Failed to write snapshot manifest", e);
+        }
+    }
+
+    /**
+     * Next sequence of the store when the snapshot was taken, all events with a lower sequence are in the snapshot
+     */
+    public long sequence() {
+        return sequence;
+    }
+
+    /**
+     * File names and lengths, in name order
+     */
+    public Map<String, Long> files() {
+        return files;
+    }
+
+    /**
+     * Files an incremental backup needs to copy on top of the previous snapshot to restore this one:
+     * files that are not in the previous one or have a different length, all metadata files and the {@link #MANIFEST}
+     */
+    public List<String> diff(Snapshot previous) {
+        List<String> changed = new ArrayList<>();
+        files.forEach((name, length) -> {
+            if (name.endsWith(METADATA_SUFFIX) || !length.equals(previous.files.get(name))) {
+                changed.add(name);
+            }
+        });
+        changed.add(MANIFEST);
+        return changed;
+    }
+
+}
@@ -1,12 +1,13 @@
 package io.joshworks.es2;
 
-import io.joshworks.es2.index.IndexKey;
 import io.joshworks.es2.sstable.BlockCodec;
 import io.joshworks.fstore.core.codec.Codec;
+import io.joshworks.fstore.core.io.buffers.BufferCompare;
 import io.joshworks.fstore.core.io.buffers.Buffers;
 import io.joshworks.fstore.core.util.ByteBufferChecksum;
 
 import java.nio.ByteBuffer;
+import java.util.function.IntFunction;
 
 /**
  * <pre>
@@ -18,10 +19,13 @@ import java.nio.ByteBuffer;
  * CHECKSUM (4 BYTES)
  * UNCOMPRESSED_SIZE (4 BYTES)
  * CODEC (1 BYTES)
+ * TYPES (8 BYTES)
  *
  * DATA [{@link Event}] (N BYTES)
  *
  * </pre>
+ * The high bits of CODEC are format flags: blocks written before TYPES was added have no flags set and a
+ * header of {@link #V0_HEADER_BYTES}, they are still readable and are treated as possibly containing any type.
  */
 public class StreamBlock {
 
@@ -32,8 +36,15 @@ public class StreamBlock {
                     Integer.BYTES + // ENTRIES
                     Integer.BYTES +// CHECKSUM
                     Integer.BYTES +// UNCOMPRESSED_SIZE
-                    Byte.BYTES;// CHECKSUM
+                    Byte.BYTES + // CODEC
+                    Long.BYTES; // TYPES
 
+    public static final int V0_HEADER_BYTES = HEADER_BYTES - Long.BYTES;
+
+    //CODEC flags
+    private static final int TYPES_FLAG = 0x80;
+    private static final int SPARSE_FLAG = 0x40;
+    private static final int CODEC_MASK = 0x3F;
 
     static final int SIZE_OFFSET = 0;
     static final int STREAM_OFFSET = SIZE_OFFSET + Integer.BYTES;
@@ -42,6 +53,7 @@ public class StreamBlock {
     static final int CHECKSUM_OFFSET = ENTRIES_OFFSET + Integer.BYTES;
     static final int UNCOMPRESSED_SIZE_OFFSET = CHECKSUM_OFFSET + Integer.BYTES;
     static final int CODEC_OFFSET = UNCOMPRESSED_SIZE_OFFSET + Integer.BYTES;
+    static final int TYPES_OFFSET = CODEC_OFFSET + Byte.BYTES;
 
 
     public static int sizeOf(ByteBuffer rec) {
@@ -69,56 +81,95 @@ public class StreamBlock {
     }
 
     public static byte codec(ByteBuffer rec) {
-        return rec.get(rec.position() + CODEC_OFFSET);
+        return (byte) (flags(rec) & CODEC_MASK);
+    }
+
+    /**
+     * Set of {@link Event#typeBit(ByteBuffer)} of all events in this block,
+     * a missing bit means no event of that type is present
+     */
+    public static long types(ByteBuffer rec) {
+        if ((flags(rec) & TYPES_FLAG) == 0) {
+            return -1L;
+        }
+        return rec.getLong(rec.position() + TYPES_OFFSET);
+    }
+
+    /**
+     * True if event versions are not contiguous (e.g. filtered reads), START_VERSION is then the version of the
+     * first event only and each event version must be read from the event itself
+     */
+    public static boolean sparse(ByteBuffer rec) {
+        return (flags(rec) & SPARSE_FLAG) != 0;
+    }
+
+    //offset of the block data
+    public static int headerSize(ByteBuffer rec) {
+        return (flags(rec) & TYPES_FLAG) == 0 ? V0_HEADER_BYTES : HEADER_BYTES;
+    }
+
+    private static int flags(ByteBuffer rec) {
+        return rec.get(rec.position() + CODEC_OFFSET) & 0xFF;
     }
 
     public static boolean isValid(ByteBuffer chunk) {
+        if (chunk.remaining() < V0_HEADER_BYTES) {
+            return false;
+        }
         int recSize = sizeOf(chunk);
-        if (chunk.remaining() < HEADER_BYTES || chunk.remaining() < recSize) {
+        if (chunk.remaining() < headerSize(chunk) || chunk.remaining() < recSize) {
             return false;
         }
         int checksum = checksum(chunk);
-        int computed = computeChecksum(chunk, recSize);
+        int computed = computeChecksum(chunk, headerSize(chunk), recSize);
         return computed == checksum;
     }
 
+    //stream and start version are adjacent, same order as IndexKey.compare
     public static int compare(ByteBuffer blockA, ByteBuffer blockB) {
-        var streamA = stream(blockA);
-        var versionA = startVersion(blockA);
-
-        var streamB = stream(blockB);
-        var versionB = startVersion(blockB);
-
-        return IndexKey.compare(streamA, versionA, streamB, versionB);
+        return BufferCompare.compareKey(blockA, blockA.position() + STREAM_OFFSET, blockB, blockB.position() + STREAM_OFFSET);
     }
 
     //expects compressed data already present,starting at position HEADER_BYTES, fills header fields,
     //limit must the end of the compressed data.
     //position must be zero
-    public static void writeHeader(ByteBuffer chunkData, long stream, int startVersion, int entries, int uncompressedSize, BlockCodec codec) {
+    public static void writeHeader(ByteBuffer chunkData, long stream, int startVersion, int entries, int uncompressedSize, long types, BlockCodec codec) {
+        writeHeader(chunkData, stream, startVersion, entries, uncompressedSize, types, codec, false);
+    }
+
+    //same as above, sparse blocks have non contiguous versions, see sparse(ByteBuffer)
+    public static void writeHeader(ByteBuffer chunkData, long stream, int startVersion, int entries, int uncompressedSize, long types, BlockCodec codec, boolean sparse) {
         assert chunkData.position() == 0;
 
         chunkData.putInt(SIZE_OFFSET, chunkData.remaining()); //RECORD_SIZE (HEADER + compressed data)
         chunkData.putLong(STREAM_OFFSET, stream); //STREAM_HASH
         chunkData.putInt(START_VERSION_OFFSET, startVersion); //START_VERSION
         chunkData.putInt(ENTRIES_OFFSET, entries); //ENTRIES
-        chunkData.putInt(CHECKSUM_OFFSET, computeChecksum(chunkData, chunkData.remaining())); //CHECKSUM
+        chunkData.putInt(CHECKSUM_OFFSET, computeChecksum(chunkData, HEADER_BYTES, chunkData.remaining())); //CHECKSUM
         chunkData.putInt(UNCOMPRESSED_SIZE_OFFSET, uncompressedSize); //UNCOMPRESSED_SIZE
-        chunkData.put(CODEC_OFFSET, codec.id); //CODEC
+        chunkData.put(CODEC_OFFSET, (byte) (codec.id | TYPES_FLAG | (sparse ? SPARSE_FLAG : 0))); //CODEC
+        chunkData.putLong(TYPES_OFFSET, types); //TYPES
+    }
+
+    private static int computeChecksum(ByteBuffer chunkData, int headerSize, int recSize) {
+        return ByteBufferChecksum.crc32(chunkData, headerSize, recSize - headerSize);
     }
 
-    private static int computeChecksum(ByteBuffer chunkData, int recSize) {
-        return ByteBufferChecksum.crc32(chunkData, HEADER_BYTES, recSize - HEADER_BYTES);
+    //decompresses the block events into dst, dst limit is set to the end of the uncompressed data
+    public static int decompress(ByteBuffer chunkData, ByteBuffer dst) {
+        return decompress(chunkData, dst, id -> BlockCodec.from((byte) id));
     }
 
-    private static int decompress(ByteBuffer chunkData, ByteBuffer dst) {
+    //same as decompress(ByteBuffer, ByteBuffer), codecs are resolved by id with the given function (e.g. SSTables#codec)
+    public static int decompress(ByteBuffer chunkData, ByteBuffer dst, IntFunction<Codec> codecs) {
         int uncompressedSize = uncompressedSize(chunkData);
         if (dst.remaining() < uncompressedSize) {
             throw new RuntimeException("Unable to decompress block: Not enough dst buffer data");
         }
         Buffers.offsetLimit(dst, uncompressedSize);
-        Codec codec = BlockCodec.from(codec(chunkData));
-        codec.decompress(chunkData.slice(HEADER_BYTES, uncompressedSize), dst);
+        Codec codec = codecs.apply(codec(chunkData));
+        int headerSize = headerSize(chunkData);
+        codec.decompress(chunkData.slice(chunkData.position() + headerSize, sizeOf(chunkData) - headerSize), dst);
         return uncompressedSize;
     }
 
@@ -129,7 +180,9 @@ public class StreamBlock {
                 "ENTRIES=" + entries(data) + ", " +
                 "CHECKSUM=" + checksum(data) + ", " +
                 "UNCOMPRESSED_SIZE=" + uncompressedSize(data) + ", " +
-                "CODEC=" + codec(data);
+                "CODEC=" + codec(data) + ", " +
+                "TYPES=" + Long.toBinaryString(types(data)) + ", " +
+                "SPARSE=" + sparse(data);
     }
 
 }
@@ -3,9 +3,14 @@ package io.joshworks.es2;
 import io.joshworks.fstore.core.hash.Hash;
 import io.joshworks.fstore.core.hash.Murmur3Hash;
 import io.joshworks.fstore.core.hash.XXHash;
+import io.joshworks.fstore.core.io.buffers.Buffers;
 
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
 
+/**
+ * 64 bit stream hash: XXHash32 of the UTF-8 stream name in the high bits, Murmur3 32 in the low bits.
+ * Hashes are persisted, all entry points must produce the same hash for the same name.
+ */
 public class StreamHasher {
 
     private static final Hash highHasher = new XXHash();
@@ -13,12 +18,83 @@ public class StreamHasher {
 
     private static final long MASK = (1L << Integer.SIZE) - 1;
 
+    //direct mapped cache of recently hashed names, racy but entries are immutable
+    private static final int CACHE_SIZE = 1024;
+    private static final CacheEntry[] cache = new CacheEntry[CACHE_SIZE];
+
+    private static final ThreadLocal<ByteBuffer> encodeBuffer = ThreadLocal.withInitial(() -> Buffers.allocate(256, false));
+
     public static long hash(String stream) {
-        byte[] data = stream.getBytes(StandardCharsets.UTF_8);
-        long high = ((long) highHasher.hash32(data)) << Integer.SIZE;
-        int low = lowHasher.hash32(data);
+        int idx = stream.hashCode() & (CACHE_SIZE - 1);
+        CacheEntry entry = cache[idx];
+        if (entry != null && entry.stream.equals(stream)) {
+            return entry.hash;
+        }
+        long hash = hash((CharSequence) stream);
+        cache[idx] = new CacheEntry(stream, hash);
+        return hash;
+    }
+
+    /**
+     * Name is UTF-8 encoded into a thread local buffer, no intermediate arrays are created.
+     * Not cached, as the sequence may be mutable.
+     */
+    public static long hash(CharSequence stream) {
+        ByteBuffer encoded = encode(stream);
+        return hash(encoded, 0, encoded.limit());
+    }
+
+    /**
+     * Hash of a UTF-8 encoded stream name, e.g. a slice of a request frame. Buffer position is not changed.
+     */
+    public static long hash(ByteBuffer data, int offset, int length) {
+        long high = ((long) highHasher.hash32(data, offset, length)) << Integer.SIZE;
+        int low = lowHasher.hash32(data, offset, length);
 
         return high | (MASK & low);
     }
 
+    //same output as String.getBytes(UTF_8), malformed surrogates are replaced by '?'
+    private static ByteBuffer encode(CharSequence chars) {
+        int len = chars.length();
+        ByteBuffer buffer = encodeBuffer.get();
+        if (buffer.capacity() < len * 3) {
+            buffer = Buffers.allocate(len * 3, false);
+            encodeBuffer.set(buffer);
+        }
+        buffer.clear();
+        for (int i = 0; i < len; i++) {
+            char c = chars.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (!Character.isSurrogate(c)) {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(chars.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, chars.charAt(++i));
+                buffer.put((byte) (0xF0 | (cp >> 18)));
+                buffer.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (cp & 0x3F)));
+            } else {
+                buffer.put((byte) '?');
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static final class CacheEntry {
+        private final String stream;
+        private final long hash;
+
+        private CacheEntry(String stream, long hash) {
+            this.stream = stream;
+            this.hash = hash;
+        }
+    }
+
 }
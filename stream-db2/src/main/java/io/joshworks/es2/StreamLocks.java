@@ -0,0 +1,31 @@
+package io.joshworks.es2;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed set of locks shared by all streams, a stream always maps to the same lock.
+ * Different streams may share a lock, never the other way around.
+ */
+class StreamLocks {
+
+    private final ReentrantLock[] locks;
+    private final int mask;
+
+    StreamLocks(int stripes) {
+        if (stripes <= 0 || Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("Stripes must be a power of two");
+        }
+        this.locks = new ReentrantLock[stripes];
+        this.mask = stripes - 1;
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    ReentrantLock get(long stream) {
+        //stream hashes are already well distributed, just fold the high bits in
+        int h = (int) (stream ^ (stream >>> 32));
+        return locks[h & mask];
+    }
+
+}
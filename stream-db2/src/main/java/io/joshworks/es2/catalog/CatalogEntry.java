@@ -0,0 +1,65 @@
+package io.joshworks.es2.catalog;
+
+import io.joshworks.fstore.core.io.buffers.Buffers;
+import io.joshworks.fstore.core.util.ByteBufferChecksum;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Registered stream, stored in the catalog log and segments as:
+ * <pre>
+ * RECORD_SIZE (4 BYTES)
+ * CHECKSUM (4 BYTES) - crc32 of everything after it
+ * HASH (8 BYTES)
+ * CREATED (8 BYTES)
+ * NAME (N BYTES) - UTF-8
+ * </pre>
+ */
+public record CatalogEntry(long hash, String name, long created) {
+
+    static final int HEADER_BYTES = Integer.BYTES + Integer.BYTES + Long.BYTES + Long.BYTES;
+    private static final int CHECKSUM_OFFSET = Integer.BYTES;
+    private static final int HASH_OFFSET = CHECKSUM_OFFSET + Integer.BYTES;
+
+    ByteBuffer serialize() {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int size = HEADER_BYTES + nameBytes.length;
+        ByteBuffer buffer = Buffers.allocate(size, false);
+        buffer.putInt(size);
+        buffer.putInt(0);
+        buffer.putLong(hash);
+        buffer.putLong(created);
+        buffer.put(nameBytes);
+        buffer.putInt(CHECKSUM_OFFSET, ByteBufferChecksum.crc32(buffer, HASH_OFFSET, size - HASH_OFFSET));
+        return buffer.flip();
+    }
+
+    static int sizeOf(ByteBuffer record) {
+        return record.getInt(record.position());
+    }
+
+    /**
+     * @return the entry at the buffer position, or null if the record is incomplete or corrupted
+     */
+    static CatalogEntry from(ByteBuffer record) {
+        int pos = record.position();
+        if (record.remaining() < HEADER_BYTES) {
+            return null;
+        }
+        int size = record.getInt(pos);
+        if (size < HEADER_BYTES || size > record.remaining()) {
+            return null;
+        }
+        int checksum = record.getInt(pos + CHECKSUM_OFFSET);
+        if (checksum != ByteBufferChecksum.crc32(record, pos + HASH_OFFSET, size - HASH_OFFSET)) {
+            return null;
+        }
+        long hash = record.getLong(pos + HASH_OFFSET);
+        long created = record.getLong(pos + HASH_OFFSET + Long.BYTES);
+        byte[] name = new byte[size - HEADER_BYTES];
+        record.get(pos + HEADER_BYTES, name);
+        return new CatalogEntry(hash, new String(name, StandardCharsets.UTF_8), created);
+    }
+
+}
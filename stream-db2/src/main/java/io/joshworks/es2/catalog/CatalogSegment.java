@@ -0,0 +1,243 @@
+package io.joshworks.es2.catalog;
+
+import io.joshworks.es2.SegmentChannel;
+import io.joshworks.es2.SegmentFile;
+import io.joshworks.es2.index.BPTreeIndexSegment;
+import io.joshworks.es2.index.IndexEntry;
+import io.joshworks.es2.index.IndexFunction;
+import io.joshworks.es2.index.IndexWriter;
+import io.joshworks.es2.writer.BufferedWriter;
+import io.joshworks.fstore.core.RuntimeIOException;
+import io.joshworks.fstore.core.io.buffers.Buffers;
+import io.joshworks.fstore.core.util.Memory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable catalog segment, entries are stored in name order followed by a table with the offset of each entry:
+ * <pre>
+ * ENTRIES [{@link CatalogEntry}] - name order
+ * OFFSETS [8 BYTES] - position of each entry
+ * ENTRY_COUNT (4 BYTES)
+ * OFFSETS_POS (8 BYTES)
+ * </pre>
+ * The hash lookup is a separate {@link BPTreeIndexSegment}, keyed by (HASH, 0) pointing to the entry ordinal.
+ * Only the offset table and the index are mapped, names are read on demand.
+ */
+class CatalogSegment implements SegmentFile {
+
+    private static final String INDEX_EXT = "cix";
+    private static final int FOOTER_BYTES = Integer.BYTES + Long.BYTES;
+    private static final int WRITE_BUFFER_SIZE = Memory.PAGE_SIZE * 16;
+    private static final ThreadLocal<ByteBuffer> readBuffer = ThreadLocal.withInitial(() -> Buffers.allocate(CatalogEntry.HEADER_BYTES + StreamCatalog.MAX_NAME_BYTES, false));
+
+    private final File dataFile;
+    private final SegmentChannel data;
+    private final SegmentChannel.MappedReadRegion offsets;
+    private final BPTreeIndexSegment index;
+    private final int entries;
+
+    /**
+     * Hash lookup reference, ordinal is the entry position in name order
+     */
+    record HashRef(long hash, int ordinal, int recordSize) {
+    }
+
+    private CatalogSegment(File dataFile, SegmentChannel data, SegmentChannel.MappedReadRegion offsets, BPTreeIndexSegment index, int entries) {
+        this.dataFile = dataFile;
+        this.data = data;
+        this.offsets = offsets;
+        this.index = index;
+        this.entries = entries;
+    }
+
+    static CatalogSegment open(File dataFile) {
+        var data = SegmentChannel.open(dataFile);
+        ByteBuffer footer = Buffers.allocate(FOOTER_BYTES, false);
+        data.read(footer, data.size() - FOOTER_BYTES);
+        footer.flip();
+        int entries = footer.getInt();
+        long offsetsPos = footer.getLong();
+        var offsets = data.map(offsetsPos, entries * Long.BYTES);
+        return new CatalogSegment(dataFile, data, offsets, BPTreeIndexSegment.open(indexFile(dataFile)), entries);
+    }
+
+    /**
+     * Entries must be sorted by name
+     */
+    static CatalogSegment create(File dataFile, List<CatalogEntry> entries) {
+        writeData(dataFile, entries.iterator());
+        HashRef[] refs = new HashRef[entries.size()];
+        for (int i = 0; i < refs.length; i++) {
+            CatalogEntry entry = entries.get(i);
+            refs[i] = new HashRef(entry.hash(), i, CatalogEntry.HEADER_BYTES + entry.name().getBytes(StandardCharsets.UTF_8).length);
+        }
+        Arrays.sort(refs, (r1, r2) -> Long.compare(r1.hash, r2.hash));
+        writeIndex(dataFile, Arrays.asList(refs).iterator());
+        return open(dataFile);
+    }
+
+    /**
+     * Entries must be sorted by name
+     *
+     * @return the number of entries written
+     */
+    static int writeData(File dataFile, Iterator<CatalogEntry> entries) {
+        try (var channel = SegmentChannel.create(dataFile)) {
+            ByteBuffer buffer = Buffers.allocate(WRITE_BUFFER_SIZE, false);
+            long[] positions = new long[1024];
+            int count = 0;
+            while (entries.hasNext()) {
+                if (count == positions.length) {
+                    positions = Arrays.copyOf(positions, count * 2);
+                }
+                positions[count++] = BufferedWriter.write(channel, entries.next().serialize(), buffer);
+            }
+            BufferedWriter.flush(channel, buffer);
+
+            long offsetsPos = channel.position();
+            for (int i = 0; i < count; i++) {
+                if (buffer.remaining() < Long.BYTES) {
+                    BufferedWriter.flush(channel, buffer);
+                }
+                buffer.putLong(positions[i]);
+            }
+            if (buffer.remaining() < FOOTER_BYTES) {
+                BufferedWriter.flush(channel, buffer);
+            }
+            buffer.putInt(count);
+            buffer.putLong(offsetsPos);
+            BufferedWriter.flush(channel, buffer);
+            channel.truncate();
+            return count;
+        }
+    }
+
+    /**
+     * References must be sorted by hash
+     */
+    static void writeIndex(File dataFile, Iterator<HashRef> refs) {
+        try (var writer = new IndexWriter(SegmentChannel.create(indexFile(dataFile)))) {
+            while (refs.hasNext()) {
+                HashRef ref = refs.next();
+                writer.add(ref.hash, 0, ref.recordSize, 0, ref.ordinal);
+            }
+            writer.complete();
+        }
+    }
+
+    CatalogEntry get(long hash) {
+        IndexEntry ie = index.find(hash, 0, IndexFunction.EQUALS);
+        return ie == null ? null : read((int) ie.logAddress());
+    }
+
+    CatalogEntry read(int ordinal) {
+        long position = offsets.getLong(ordinal * Long.BYTES);
+        ByteBuffer buffer = readBuffer.get().clear();
+        data.read(buffer, position);
+        return CatalogEntry.from(buffer.flip());
+    }
+
+    int entries() {
+        return entries;
+    }
+
+    /**
+     * Entries in name order, starting at the first name equal or greater than the given one
+     */
+    Iterator<CatalogEntry> iterator(String fromName) {
+        int lo = 0;
+        int hi = entries;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (read(mid).name().compareTo(fromName) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        int start = lo;
+        return new Iterator<>() {
+            private int ordinal = start;
+
+            @Override
+            public boolean hasNext() {
+                return ordinal < entries;
+            }
+
+            @Override
+            public CatalogEntry next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return read(ordinal++);
+            }
+        };
+    }
+
+    /**
+     * All hash references, in hash order
+     */
+    Iterator<HashRef> hashRefs() {
+        Iterator<IndexEntry> it = index.iterator(Long.MIN_VALUE, 0);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public HashRef next() {
+                IndexEntry ie = it.next();
+                return new HashRef(ie.stream(), (int) ie.logAddress(), ie.recordSize());
+            }
+        };
+    }
+
+    static File indexFile(File dataFile) {
+        Path parent = dataFile.toPath().getParent();
+        return parent.resolve(dataFile.getName().split("\\.")[0] + "." + INDEX_EXT).toFile();
+    }
+
+    @Override
+    public void close() {
+        offsets.close();
+        index.close();
+        data.close();
+    }
+
+    @Override
+    public void delete() {
+        close();
+        try {
+            Files.deleteIfExists(dataFile.toPath());
+            Files.deleteIfExists(indexFile(dataFile).toPath());
+        } catch (IOException e) {
+            throw new RuntimeIOException("Failed to delete " + dataFile.getName(), e);
+        }
+    }
+
+    @Override
+    public String name() {
+        return dataFile.getName().split("\\.")[0];
+    }
+
+    @Override
+    public List<File> files() {
+        return List.of(dataFile, indexFile(dataFile));
+    }
+
+    @Override
+    public String toString() {
+        return dataFile.getName();
+    }
+}
@@ -0,0 +1,345 @@
+package io.joshworks.es2.catalog;
+
+import io.joshworks.es2.LengthPrefixedIterator;
+import io.joshworks.es2.SegmentChannel;
+import io.joshworks.es2.StreamHasher;
+import io.joshworks.es2.directory.Compaction;
+import io.joshworks.es2.directory.DirectorySnapshot;
+import io.joshworks.es2.directory.MergeHandle;
+import io.joshworks.es2.directory.SegmentDirectory;
+import io.joshworks.fstore.core.cache.Cache;
+import io.joshworks.fstore.core.iterators.CloseableIterator;
+import io.joshworks.fstore.core.iterators.Iterators;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.OptionalLong;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+import java.util.regex.Pattern;
+
+/**
+ * Registry of stream names, maps the 64 bit stream hash back to its name and detects hash collisions.
+ * A name whose hash is already taken by another name gets an alternative hash by probing, so the hash of a
+ * registered name must always be resolved with {@link #hash(String)} instead of {@link StreamHasher}.
+ * <p>
+ * Recent registrations are kept in memory and in a write ahead log, then flushed to immutable {@link CatalogSegment}s
+ * with names in sorted order (for prefix listing) and a B+tree index by hash. Segments are compacted like SSTables.
+ * Resolved names are cached, a registered name never changes its hash.
+ * Lookups are thread safe, registrations are serialized.
+ */
+public class StreamCatalog implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(StreamCatalog.class);
+
+    static final int MAX_NAME_BYTES = 4096;
+
+    private static final String EXT = "cat";
+    private static final String WAL = "catalog.wal";
+    private static final int DEFAULT_FLUSH_THRESHOLD = 50_000;
+    private static final int NAME_CACHE_SIZE = 100_000;
+    //Weyl sequence increment, spreads alternative hashes
+    private static final long PROBE_STEP = 0x9E3779B97F4A7C15L;
+
+    private final SegmentDirectory<CatalogSegment> segments;
+    private final ToLongFunction<String> hasher;
+    private final int flushThreshold;
+    private final SegmentChannel wal;
+    private final Map<Long, CatalogEntry> memHashes = new ConcurrentHashMap<>();
+    private final NavigableMap<String, CatalogEntry> memNames = new ConcurrentSkipListMap<>();
+    //name -> hash, avoids probing the segments on every append by name
+    private final Cache<String, Long> resolved = Cache.tinyLfu(NAME_CACHE_SIZE);
+    private long collisions;
+
+    public StreamCatalog(Path folder, ExecutorService executor) {
+        this(folder, executor, StreamHasher::hash, DEFAULT_FLUSH_THRESHOLD);
+    }
+
+    StreamCatalog(Path folder, ExecutorService executor, ToLongFunction<String> hasher, int flushThreshold) {
+        this.hasher = hasher;
+        this.flushThreshold = flushThreshold;
+        this.segments = new SegmentDirectory<>(folder.toFile(), CatalogSegment::open, EXT, executor, new CatalogCompaction());
+        this.segments.loadSegments();
+
+        File walFile = new File(folder.toFile(), WAL);
+        this.wal = walFile.exists() ? SegmentChannel.open(walFile) : SegmentChannel.create(walFile);
+        restore();
+    }
+
+    private void restore() {
+        long pos = 0;
+        var it = new LengthPrefixedIterator(wal);
+        while (it.hasNext()) {
+            CatalogEntry entry = CatalogEntry.from(it.next());
+            if (entry == null) {
+                break;
+            }
+            //may have been flushed already before the log was cleared
+            if (get(entry.hash()) == null) {
+                addToMemory(entry);
+            }
+            pos = it.position();
+        }
+        if (pos != wal.size()) {
+            log.warn("Invalid data found in stream catalog log, truncating");
+            wal.position(pos);
+            wal.truncate();
+        }
+    }
+
+    /**
+     * Registers the stream name if not registered yet, already registered names are resolved without locking
+     *
+     * @return the stream hash, the {@link StreamHasher} hash unless it collided with another name
+     */
+    public long register(String name) {
+        OptionalLong registered = hash(name);
+        if (registered.isPresent()) {
+            return registered.getAsLong();
+        }
+        return registerNew(name);
+    }
+
+    private synchronized long registerNew(String name) {
+        if (name.getBytes(StandardCharsets.UTF_8).length > MAX_NAME_BYTES) {
+            throw new IllegalArgumentException("Stream name must not exceed " + MAX_NAME_BYTES + " bytes");
+        }
+        long primary = hasher.applyAsLong(name);
+        for (int attempt = 0; ; attempt++) {
+            long hash = probe(primary, attempt);
+            CatalogEntry entry = get(hash);
+            if (entry == null) {
+                add(new CatalogEntry(hash, name, System.currentTimeMillis()));
+                resolved.add(name, hash);
+                return hash;
+            }
+            if (entry.name().equals(name)) {
+                resolved.add(name, hash);
+                return hash;
+            }
+            collisions++;
+            log.warn("Stream hash collision between '{}' and '{}'", name, entry.name());
+        }
+    }
+
+    /**
+     * @return the hash of a registered stream, empty if not registered
+     */
+    public OptionalLong hash(String name) {
+        Long cached = resolved.get(name);
+        if (cached != null) {
+            return OptionalLong.of(cached);
+        }
+        long primary = hasher.applyAsLong(name);
+        for (int attempt = 0; ; attempt++) {
+            long hash = probe(primary, attempt);
+            CatalogEntry entry = get(hash);
+            if (entry == null) {
+                return OptionalLong.empty();
+            }
+            if (entry.name().equals(name)) {
+                resolved.add(name, hash);
+                return OptionalLong.of(hash);
+            }
+        }
+    }
+
+    /**
+     * @return the name of the stream with the given hash, or null if not registered
+     */
+    public String name(long hash) {
+        CatalogEntry entry = get(hash);
+        return entry == null ? null : entry.name();
+    }
+
+    public CatalogEntry get(long hash) {
+        CatalogEntry entry = memHashes.get(hash);
+        if (entry != null) {
+            return entry;
+        }
+        try (var view = segments.view()) {
+            for (CatalogSegment segment : view) {
+                entry = segment.get(hash);
+                if (entry != null) {
+                    return entry;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stream names starting with prefix, in name order
+     */
+    public List<String> list(String prefix, int limit) {
+        return list(prefix, name -> name.startsWith(prefix), true, limit);
+    }
+
+    /**
+     * Stream names matching the pattern, in name order. Scans all names.
+     */
+    public List<String> list(Pattern pattern, int limit) {
+        return list("", name -> pattern.matcher(name).matches(), false, limit);
+    }
+
+    //stopOnMismatch: names are sorted, once a name doesn't match none of the following will
+    private List<String> list(String from, Predicate<String> filter, boolean stopOnMismatch, int limit) {
+        List<String> found = new ArrayList<>();
+        try (var view = segments.view()) {
+            List<CloseableIterator<CatalogEntry>> iterators = new ArrayList<>();
+            iterators.add(Iterators.wrap(memNames.tailMap(from).values().iterator()));
+            for (CatalogSegment segment : view) {
+                iterators.add(Iterators.wrap(segment.iterator(from)));
+            }
+            var merged = Iterators.merging(iterators, Comparator.comparing(CatalogEntry::name));
+            String prev = null;
+            while (merged.hasNext() && found.size() < limit) {
+                String name = merged.next().name();
+                if (name.equals(prev)) { //being flushed, both in memory and in a segment
+                    continue;
+                }
+                prev = name;
+                if (filter.test(name)) {
+                    found.add(name);
+                } else if (stopOnMismatch) {
+                    break;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Number of collisions found while registering streams since the catalog was opened
+     */
+    public synchronized long collisions() {
+        return collisions;
+    }
+
+    private static long probe(long hash, int attempt) {
+        return hash + attempt * PROBE_STEP;
+    }
+
+    private void add(CatalogEntry entry) {
+        wal.append(entry.serialize());
+        addToMemory(entry);
+        if (memHashes.size() >= flushThreshold) {
+            flush();
+        }
+    }
+
+    private void addToMemory(CatalogEntry entry) {
+        memHashes.put(entry.hash(), entry);
+        memNames.put(entry.name(), entry);
+    }
+
+    public synchronized void flush() {
+        if (memNames.isEmpty()) {
+            return;
+        }
+        var segment = CatalogSegment.create(segments.newHead(), new ArrayList<>(memNames.values()));
+        segments.append(segment);
+        memHashes.clear();
+        memNames.clear();
+        wal.position(0);
+        wal.truncate();
+    }
+
+    /**
+     * Flushes pending registrations and captures the current segments, see {@link SegmentDirectory#snapshot()}
+     */
+    public synchronized DirectorySnapshot<?> snapshot() {
+        flush();
+        return segments.snapshot();
+    }
+
+    public CompletableFuture<Void> compact() {
+        return segments.compact(2, 2);
+    }
+
+    @Override
+    public synchronized void close() {
+        wal.close();
+        segments.close();
+    }
+
+    private static class CatalogCompaction implements Compaction<CatalogSegment> {
+
+        @Override
+        public void compact(MergeHandle<CatalogSegment> handle) {
+            List<CatalogSegment> sources = handle.sources();
+            //new ordinal of each source entry, names are unique across segments
+            int[][] ordinals = new int[sources.size()][];
+            for (int i = 0; i < sources.size(); i++) {
+                ordinals[i] = new int[sources.get(i).entries()];
+            }
+            CatalogSegment.writeData(handle.replacement(), new NameMergeIterator(sources, ordinals));
+
+            List<CloseableIterator<CatalogSegment.HashRef>> refs = new ArrayList<>();
+            for (int i = 0; i < sources.size(); i++) {
+                int[] remap = ordinals[i];
+                Iterator<CatalogSegment.HashRef> it = sources.get(i).hashRefs();
+                refs.add(Iterators.mapping(Iterators.wrap(it), ref -> new CatalogSegment.HashRef(ref.hash(), remap[ref.ordinal()], ref.recordSize())));
+            }
+            CatalogSegment.writeIndex(handle.replacement(), Iterators.merging(refs, Comparator.comparingLong(CatalogSegment.HashRef::hash)));
+        }
+    }
+
+    private static class NameMergeIterator implements Iterator<CatalogEntry> {
+
+        private final PriorityQueue<Cursor> queue = new PriorityQueue<>(Comparator.comparing(c -> c.entry.name()));
+        private final List<CatalogSegment> sources;
+        private final int[][] ordinals;
+        private int next;
+
+        private NameMergeIterator(List<CatalogSegment> sources, int[][] ordinals) {
+            this.sources = sources;
+            this.ordinals = ordinals;
+            for (int i = 0; i < sources.size(); i++) {
+                if (sources.get(i).entries() > 0) {
+                    queue.add(new Cursor(i, 0, sources.get(i).read(0)));
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public CatalogEntry next() {
+            Cursor cursor = queue.poll();
+            if (cursor == null) {
+                throw new NoSuchElementException();
+            }
+            ordinals[cursor.source][cursor.ordinal] = next++;
+            CatalogSegment source = sources.get(cursor.source);
+            int nextOrdinal = cursor.ordinal + 1;
+            if (nextOrdinal < source.entries()) {
+                queue.add(new Cursor(cursor.source, nextOrdinal, source.read(nextOrdinal)));
+            }
+            return cursor.entry;
+        }
+
+        private record Cursor(int source, int ordinal, CatalogEntry entry) {
+        }
+    }
+
+}
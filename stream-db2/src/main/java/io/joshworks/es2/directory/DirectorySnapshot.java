@@ -0,0 +1,94 @@
+package io.joshworks.es2.directory;
+
+import io.joshworks.es2.SegmentFile;
+import io.joshworks.fstore.core.RuntimeIOException;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Segments of a {@link SegmentDirectory} captured at a point in time, plus files that are still being written
+ * (e.g. the log head) with their length at that time, and other immutable files the segments depend on (e.g. dictionaries).
+ * The captured view keeps the segments from being deleted until this snapshot is closed.
+ */
+public class DirectorySnapshot<T extends SegmentFile> implements Closeable {
+
+    private final View<T> view;
+    private final String metadataName;
+    private final Map<File, Long> partial;
+    private final List<File> extra;
+
+    DirectorySnapshot(View<T> view, String metadataName, Map<File, Long> partial, List<File> extra) {
+        this.view = view;
+        this.metadataName = metadataName;
+        this.partial = partial;
+        this.extra = extra;
+    }
+
+    /**
+     * Hard links all segment and extra files into target, partial files are copied up to their captured length.
+     * A new metadata file with all segments is written to target, so it can be opened as a regular directory.
+     *
+     * @return the name and length of each file created in target
+     */
+    public Map<String, Long> linkTo(File target) {
+        Map<String, Long> files = new LinkedHashMap<>();
+        try {
+            List<T> segments = new ArrayList<>();
+            for (T segment : view) {
+                for (File file : segment.files()) {
+                    Path link = Files.createLink(target.toPath().resolve(file.getName()), file.toPath());
+                    files.put(file.getName(), Files.size(link));
+                }
+                segments.add(segment);
+            }
+            for (File file : extra) {
+                Path link = Files.createLink(target.toPath().resolve(file.getName()), file.toPath());
+                files.put(file.getName(), Files.size(link));
+            }
+            for (Map.Entry<File, Long> entry : partial.entrySet()) {
+                copy(entry.getKey(), new File(target, entry.getKey().getName()), entry.getValue());
+                files.put(entry.getKey().getName(), entry.getValue());
+            }
+
+            File metadataFile = new File(target, metadataName);
+            var metadata = new Metadata(metadataFile);
+            try {
+                if (!segments.isEmpty()) {
+                    metadata.append(Metadata.add(segments));
+                }
+            } finally {
+                metadata.close();
+            }
+            files.put(metadataName, metadataFile.length());
+            return files;
+        } catch (IOException e) {
+            throw new RuntimeIOException("Failed to create snapshot in " + target, e);
+        }
+    }
+
+    private static void copy(File src, File dst, long length) throws IOException {
+        try (var in = FileChannel.open(src.toPath(), StandardOpenOption.READ);
+             var out = FileChannel.open(dst.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long copied = 0;
+            while (copied < length) {
+                copied += in.transferTo(copied, length - copied, out);
+            }
+            out.force(true);
+        }
+    }
+
+    @Override
+    public void close() {
+        view.close();
+    }
+}
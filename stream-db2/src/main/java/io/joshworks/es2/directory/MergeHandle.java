@@ -21,6 +21,10 @@ public class MergeHandle<T extends SegmentFile> {
         return replacement;
     }
 
+    public int level() {
+        return DirectoryUtils.segmentId(replacement).level();
+    }
+
     public List<T> sources() {
         return new ArrayList<>(sources);
     }
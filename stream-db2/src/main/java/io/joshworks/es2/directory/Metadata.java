@@ -5,6 +5,7 @@ import io.joshworks.es2.SegmentChannel;
 import io.joshworks.es2.SegmentFile;
 import io.joshworks.fstore.core.io.buffers.Buffers;
 import io.joshworks.fstore.core.util.ByteBufferChecksum;
+import io.joshworks.fstore.core.util.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -15,6 +16,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Stream;
 
 import static io.joshworks.es2.SegmentChannel.create;
@@ -24,10 +26,17 @@ import static io.joshworks.fstore.core.iterators.Iterators.closeableIterator;
 import static io.joshworks.fstore.core.iterators.Iterators.stream;
 import static java.nio.file.Files.exists;
 
+/**
+ * Append only log of segment changes, replayed on startup to restore the current set of segments.
+ * Every {@link #CHECKPOINT_INTERVAL} records, the current state is written as a single checkpoint record to a new file
+ * that atomically replaces the log, so only events after the last checkpoint are ever replayed.
+ */
 public class Metadata {
 
     private static final Logger log = LoggerFactory.getLogger(Metadata.class);
 
+    static final int CHECKPOINT_INTERVAL = 1000;
+
     private static final int EVENT_SIZE =
             Integer.BYTES + //op
                     Integer.BYTES + //level
@@ -39,9 +48,14 @@ public class Metadata {
                     Long.BYTES; //timestamp
 
 
-    private final SegmentChannel channel;
+    private final File file;
+    private final Set<SegmentId> state = new HashSet<>();
+    private SegmentChannel channel;
+    //records since last checkpoint
+    private int records;
 
     public Metadata(File file) {
+        this.file = file;
         channel = exists(file.toPath()) ? open(file) : create(file);
         long pos = restore();
         channel.position(pos);
@@ -51,9 +65,52 @@ public class Metadata {
         }
     }
 
+    /**
+     * Events are validated against the current state before being written
+     */
     public void append(List<FileEvent> events) {
+        Set<SegmentId> updated = apply(new HashSet<>(state), events);
         channel.append(serialize(events));
         channel.force(false);
+        state.clear();
+        state.addAll(updated);
+
+        if (++records >= CHECKPOINT_INTERVAL) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Replaces the log with a single record containing the current state: a CHECKPOINT followed by an ADD per segment.
+     * The new log is written to a temporary file and atomically renamed over the current one, failing if the file
+     * system can't rename atomically.
+     */
+    public void checkpoint() {
+        List<FileEvent> events = new ArrayList<>();
+        events.add(new FileEvent(Op.CHECKPOINT, new SegmentId(0, state.size())));
+        for (SegmentId segmentId : state) {
+            events.add(new FileEvent(Op.ADD, segmentId));
+        }
+
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        FileUtils.deleteIfExists(tmp);
+        SegmentChannel tmpChannel = create(tmp);
+        try {
+            tmpChannel.append(serialize(events));
+            tmpChannel.truncate();
+            tmpChannel.force(true);
+        } finally {
+            tmpChannel.close();
+        }
+
+        //the log is either the old one or the checkpoint, never a partial copy, reopened even if the move fails
+        channel.close();
+        try {
+            FileUtils.moveAtomically(tmp.toPath(), file.toPath());
+            records = 0;
+        } finally {
+            channel = open(file);
+        }
     }
 
     private ByteBuffer serialize(List<FileEvent> events) {
@@ -107,24 +164,27 @@ public class Metadata {
     }
 
     HashSet<SegmentId> state() {
-        return read()
-                .reduce(new HashSet<>(), (list, curr) -> {
-                    switch (curr.op) {
-                        case ADD:
-                            if (!list.add(curr.segmentId)) {
-                                throw new RuntimeException("Invalid event state");
-                            }
-                            break;
-                        case DELETE:
-                            if (!list.remove(curr.segmentId)) {
-                                throw new RuntimeException("Invalid event state");
-                            }
+        return new HashSet<>(state);
+    }
+
+    private static Set<SegmentId> apply(Set<SegmentId> state, List<FileEvent> events) {
+        for (FileEvent event : events) {
+            switch (event.op) {
+                case CHECKPOINT:
+                    state.clear();
+                    break;
+                case ADD:
+                    if (!state.add(event.segmentId)) {
+                        throw new RuntimeException("Invalid event state");
                     }
-                    return list;
-                }, (l1, l2) -> {
-                    l1.addAll(l2);
-                    return l1;
-                });
+                    break;
+                case DELETE:
+                    if (!state.remove(event.segmentId)) {
+                        throw new RuntimeException("Invalid event state");
+                    }
+            }
+        }
+        return state;
     }
 
     Stream<FileEvent> read() {
@@ -138,9 +198,12 @@ public class Metadata {
         var it = new LengthPrefixedIterator(channel);
         while (it.hasNext()) {
             ByteBuffer item = it.next();
-            if (deserialize(item).isEmpty()) {
+            List<FileEvent> events = deserialize(item);
+            if (events.isEmpty()) {
                 break;
             }
+            apply(state, events);
+            records = events.get(0).op == Op.CHECKPOINT ? 0 : records + 1;
             pos = it.position();
         }
         return pos;
@@ -150,6 +213,14 @@ public class Metadata {
         return List.of(new FileEvent(Op.ADD, segmentId(segment)));
     }
 
+    static <T extends SegmentFile> List<FileEvent> add(List<T> segments) {
+        List<FileEvent> events = new ArrayList<>();
+        for (T segment : segments) {
+            events.add(new FileEvent(Op.ADD, segmentId(segment)));
+        }
+        return events;
+    }
+
     static <T extends SegmentFile> List<FileEvent> merge(T out, List<T> sources) {
         List<FileEvent> events = delete(sources);
         events.add(new FileEvent(Op.ADD, segmentId(out)));
@@ -173,7 +244,8 @@ public class Metadata {
 
     public enum Op {
         ADD(1),
-        DELETE(2);
+        DELETE(2),
+        CHECKPOINT(3);
 
         private final int i;
 
@@ -184,6 +256,7 @@ public class Metadata {
         private static Op from(int v) {
             if (v == ADD.i) return ADD;
             if (v == DELETE.i) return DELETE;
+            if (v == CHECKPOINT.i) return CHECKPOINT;
             throw new RuntimeException("Invalid enum value: " + v);
         }
 
@@ -13,12 +13,14 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static io.joshworks.es2.directory.DirectoryUtils.deleteAllWithExtension;
 import static io.joshworks.es2.directory.DirectoryUtils.initDirectory;
@@ -42,6 +44,8 @@ public class SegmentDirectory<T extends SegmentFile> implements Closeable {
 
     private final AtomicReference<View<T>> viewRef = new AtomicReference<>(new View<>());
     private final Set<MergeHandle<T>> compacting = new HashSet<>();
+    //files handed out by newFiles that are not yet registered
+    private final Set<File> reserved = new HashSet<>();
 
     private final File root;
     private final Metadata metadata;
@@ -97,6 +101,62 @@ public class SegmentDirectory<T extends SegmentFile> implements Closeable {
         swapView(newView);
     }
 
+    /**
+     * Reserves new segment files at the given level, files have the temporary extension
+     * until they are registered with {@link #appendAll(List)}, or released with {@link #release(List)}
+     */
+    public synchronized List<File> newFiles(int level, int count) {
+        var view = this.viewRef.get();
+        long idx = nextIdx(view, level);
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            files.add(createFile(level, idx + i, tmpExtension));
+        }
+        reserved.addAll(files);
+        return files;
+    }
+
+    public synchronized void release(List<File> files) {
+        reserved.removeAll(files);
+    }
+
+    /**
+     * Registers files reserved with {@link #newFiles(int, int)}, all segments are added in a single metadata record
+     */
+    public synchronized void appendAll(List<File> files) {
+        if (!reserved.containsAll(files)) {
+            throw new IllegalArgumentException("Files were not reserved by this directory");
+        }
+        try {
+            List<T> segments = new ArrayList<>();
+            for (File file : files) {
+                String newFileName = file.getName().replaceAll("\\." + tmpExtension, "." + extension);
+                var segmentFile = Files.move(file.toPath(), root.toPath().resolve(newFileName)).toFile();
+                segments.add(supplier.apply(segmentFile));
+            }
+            metadata.append(Metadata.add(segments));
+
+            var view = this.viewRef.get();
+            for (T segment : segments) {
+                view = view.add(segment);
+            }
+            swapView(view);
+        } catch (IOException e) {
+            throw new RuntimeIOException("Failed to register segments", e);
+        } finally {
+            reserved.removeAll(files);
+        }
+    }
+
+    /**
+     * Highest level with segments, zero if empty
+     */
+    public int maxLevel() {
+        try (var view = view()) {
+            return (int) maxLevel(view);
+        }
+    }
+
     private void swapView(View<T> view) {
         viewRef.getAndSet(view).close();
     }
@@ -123,6 +183,9 @@ public class SegmentDirectory<T extends SegmentFile> implements Closeable {
     //TODO move parameters to constructor
     public synchronized CompletableFuture<Void> compact(int minItems, int maxItems) {
         var view = this.viewRef.get();
+        if (view.size() == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
 
         List<CompletableFuture<Void>> tasks = new ArrayList<>();
         for (var level = 0; level <= maxLevel(view); level++) {
@@ -247,8 +310,7 @@ public class SegmentDirectory<T extends SegmentFile> implements Closeable {
     private long nextIdx(View<T> view, int level) {
         //do not change, other methods are iterating the view stream, it needs to be closed
         List<T> levelSegments = levelSegments(view, level);
-        long mergingMax = compacting.stream()
-                .map(MergeHandle::replacement)
+        long mergingMax = Stream.concat(compacting.stream().map(MergeHandle::replacement), reserved.stream())
                 .map(DirectoryUtils::segmentId)
                 .filter(segId -> segId.level() == level)
                 .mapToLong(SegmentId::idx)
@@ -274,9 +336,36 @@ public class SegmentDirectory<T extends SegmentFile> implements Closeable {
         return viewRef.get().acquire();
     }
 
+    public DirectorySnapshot<T> snapshot() {
+        return snapshot(Map.of());
+    }
+
+    /**
+     * Captures the current segments, must be closed once the snapshot files are linked
+     *
+     * @param partial files still being written and their length to be copied
+     */
+    public DirectorySnapshot<T> snapshot(Map<File, Long> partial) {
+        return snapshot(partial, List.of());
+    }
+
+    /**
+     * Same as {@link #snapshot(Map)}
+     *
+     * @param extra immutable files outside the segments that are also required to open the directory
+     */
+    public DirectorySnapshot<T> snapshot(Map<File, Long> partial, List<File> extra) {
+        return new DirectorySnapshot<>(view(), extension + "." + METADATA, partial, extra);
+    }
+
     @Override
     public synchronized void close() {
-        this.viewRef.getAndSet(new View<>()).close();
+        try (var view = this.viewRef.getAndSet(new View<>())) {
+            for (T segment : view) {
+                segment.close();
+            }
+        }
+        metadata.close();
     }
 
     public void delete() {
@@ -7,6 +7,9 @@ import io.joshworks.fstore.core.util.Memory;
 import java.io.File;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.ObjIntConsumer;
 
 
 public class BPTreeIndexSegment {
@@ -58,6 +61,115 @@ public class BPTreeIndexSegment {
         }
     }
 
+    /**
+     * Finds the entries for many streams (same version), streams must be sorted.
+     * Descents are shared: consecutive keys only climb up the tree until the node that covers them,
+     * so neighbouring keys falling into the same leaf don't require any new block load.
+     * The consumer receives the index of the stream in the array and the found entry, or null if none.
+     */
+    public void find(long[] streams, int version, IndexFunction fn, ObjIntConsumer<IndexEntry> consumer) {
+        int top = root.level();
+        Block[] path = new Block[top + 1];
+        //exclusive upper key of each node in the path, unbounded if no entry follows it in the parent
+        long[] upperStream = new long[top + 1];
+        int[] upperVersion = new int[top + 1];
+        boolean[] bounded = new boolean[top + 1];
+        boolean valid = false;
+
+        for (int k = 0; k < streams.length; k++) {
+            long stream = streams[k];
+            assert k == 0 || streams[k - 1] <= stream : "Streams must be sorted";
+
+            int level = top;
+            if (valid) {
+                level = 0;
+                while (level < top && bounded[level] && IndexKey.compare(stream, version, upperStream[level], upperVersion[level]) >= 0) {
+                    level++;
+                }
+            }
+
+            Block block = level == top ? root : path[level];
+            IndexEntry found = null;
+            valid = true;
+            for (; level >= 0; level--) {
+                path[level] = block;
+                if (level > 0) { //internal node use floor
+                    int i = block.find(stream, version, IndexFunction.FLOOR);
+                    if (i == -1) {
+                        valid = false;
+                        break;
+                    }
+                    boolean last = i + 1 >= block.blockEntries();
+                    bounded[level - 1] = !last || bounded[level];
+                    upperStream[level - 1] = last ? upperStream[level] : block.stream(i + 1);
+                    upperVersion[level - 1] = last ? upperVersion[level] : block.version(i + 1);
+                    block = loadBlock(block.blockIndex(i));
+                } else { //leaf node
+                    int i = block.find(stream, version, fn);
+                    found = i == -1 ? null : block.toIndexEntry(i);
+                }
+            }
+            consumer.accept(found, k);
+        }
+    }
+
+    /**
+     * Iterates leaf entries in key order, starting at the first entry equal or greater than the given key.
+     * Leaf blocks are written in key order, internal nodes found in between are skipped.
+     */
+    public Iterator<IndexEntry> iterator(long stream, int version) {
+        Block block = root;
+        int blockIdx = numBlocks() - 1;
+        while (block.level() > 0) {
+            int i = block.find(stream, version, IndexFunction.FLOOR);
+            //key is smaller than any entry, first block is always a leaf
+            blockIdx = i == -1 ? 0 : block.blockIndex(i);
+            block = loadBlock(blockIdx);
+        }
+        int startIdx = block.find(stream, version, IndexFunction.CEILING);
+        return new LeafIterator(blockIdx, block, startIdx);
+    }
+
+    private final class LeafIterator implements Iterator<IndexEntry> {
+
+        private int blockIdx;
+        private Block block;
+        private int entryIdx;
+
+        private LeafIterator(int blockIdx, Block block, int entryIdx) {
+            this.blockIdx = blockIdx;
+            this.block = block;
+            this.entryIdx = entryIdx;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (block != null && entryIdx >= block.blockEntries()) {
+                block = nextLeaf();
+                entryIdx = 0;
+            }
+            return block != null;
+        }
+
+        @Override
+        public IndexEntry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return block.toIndexEntry(entryIdx++);
+        }
+
+        private Block nextLeaf() {
+            while (++blockIdx < numBlocks()) {
+                Block next = loadBlock(blockIdx);
+                if (next.level() == 0) {
+                    return next;
+                }
+            }
+            return null;
+        }
+    }
+
     private Block loadBlock(int idx) {
         if (idx < 0 || idx >= numBlocks()) {
             throw new IndexOutOfBoundsException(idx);
@@ -1,6 +1,7 @@
 package io.joshworks.es2.index;
 
 import io.joshworks.es2.SegmentChannel;
+import io.joshworks.fstore.core.io.buffers.BufferCompare;
 import io.joshworks.fstore.core.io.buffers.Buffers;
 
 import java.nio.ByteBuffer;
@@ -161,10 +162,9 @@ class Block {
     }
 
     int find(long stream, int version, IndexFunction fn) {
-        int dataSize = dataSize();
         int entrySize = level() == 0 ? LEAF_ENTRY_BYTES : INTERNAL_ENTRY_BYTES;
 
-        int idx = binarySearch(HEADER, dataSize, entrySize, stream, version);
+        int idx = BufferCompare.binarySearch(data, HEADER, blockEntries(), entrySize, stream, version);
         return fn.apply(idx);
     }
 
@@ -219,32 +219,6 @@ class Block {
     }
 
 
-    private int binarySearch(int chunkStart, int chunkLength, int entrySize, long stream, int version) {
-        int low = 0;
-        int high = blockEntries() - 1;
-
-        while (low <= high) {
-            int mid = (low + high) >>> 1;
-            int readPos = chunkStart + (mid * entrySize);
-            assert readPos >= chunkStart && readPos <= chunkStart + chunkLength : "Index out of bounds: " + readPos;
-            int cmp = compare(readPos, data, stream, version);
-            if (cmp < 0)
-                low = mid + 1;
-            else if (cmp > 0)
-                high = mid - 1;
-            else
-                return mid;
-        }
-        return -(low + 1);
-    }
-
-    private int compare(int bufferPos, ByteBuffer buffer, long keyStream, int keyVersion) {
-        long stream = buffer.getLong(bufferPos);
-        int version = buffer.getInt(bufferPos + Long.BYTES);
-
-        return IndexKey.compare(stream, version, keyStream, keyVersion);
-    }
-
     void clear() {
         data.clear();
         data.position(HEADER);
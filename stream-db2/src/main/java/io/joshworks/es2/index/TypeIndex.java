@@ -0,0 +1,120 @@
+package io.joshworks.es2.index;
+
+import io.joshworks.es2.SegmentChannel;
+import io.joshworks.es2.SegmentFile;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Single segment of the event type secondary index, see {@link TypeIndexEntry}
+ */
+public class TypeIndex implements SegmentFile {
+
+    private final File file;
+    private final BPTreeIndexSegment index;
+
+    private TypeIndex(File file, BPTreeIndexSegment index) {
+        this.file = file;
+        this.index = index;
+    }
+
+    public static TypeIndex open(File file) {
+        return new TypeIndex(file, BPTreeIndexSegment.open(file));
+    }
+
+    /**
+     * Entries must be sorted by {@link TypeIndexEntry#compare(TypeIndexEntry, TypeIndexEntry)}
+     */
+    public static TypeIndex create(File file, Iterator<TypeIndexEntry> entries) {
+        write(file, entries);
+        return open(file);
+    }
+
+    static void write(File file, Iterator<TypeIndexEntry> entries) {
+        try (var channel = SegmentChannel.create(file); var writer = new IndexWriter(channel)) {
+            while (entries.hasNext()) {
+                entries.next().writeTo(writer);
+            }
+            writer.complete();
+        }
+    }
+
+    /**
+     * Entries of the given type hash with sequence equal or greater than fromSequence, in sequence order
+     */
+    public Iterator<TypeIndexEntry> iterator(int typeHash, long fromSequence) {
+        var it = index.iterator(TypeIndexEntry.keyHigh(typeHash, fromSequence), TypeIndexEntry.keyLow(fromSequence));
+        return new Iterator<>() {
+            private TypeIndexEntry next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null && it.hasNext()) {
+                    var entry = TypeIndexEntry.from(it.next());
+                    next = entry.typeHash() == typeHash ? entry : null;
+                }
+                return next != null;
+            }
+
+            @Override
+            public TypeIndexEntry next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                var entry = next;
+                next = null;
+                return entry;
+            }
+        };
+    }
+
+    /**
+     * All entries in key order
+     */
+    public Iterator<TypeIndexEntry> iterator() {
+        var it = index.iterator(Long.MIN_VALUE, Integer.MIN_VALUE);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public TypeIndexEntry next() {
+                return TypeIndexEntry.from(it.next());
+            }
+        };
+    }
+
+    public int entries() {
+        return index.entries();
+    }
+
+    @Override
+    public void close() {
+        index.close();
+    }
+
+    @Override
+    public void delete() {
+        index.delete();
+    }
+
+    @Override
+    public String name() {
+        return file.getName().split("\\.")[0];
+    }
+
+    @Override
+    public List<File> files() {
+        return List.of(file);
+    }
+
+    @Override
+    public String toString() {
+        return file.getName();
+    }
+}
@@ -0,0 +1,41 @@
+package io.joshworks.es2.index;
+
+/**
+ * Event type index entry, keyed by (TYPE_HASH, SEQUENCE), points to the event (STREAM, VERSION).
+ * <p>
+ * Stored as a regular {@link Block} leaf entry, the key is split into the STREAM (8 BYTES) and VERSION (4 BYTES)
+ * fields preserving the key order:
+ * <pre>
+ * STREAM: TYPE_HASH (32 BITS) | SEQUENCE (HIGH 32 BITS)
+ * VERSION: SEQUENCE (LOW 31 BITS)
+ * RECORD_ENTRIES: EVENT_VERSION
+ * LOG_POS: EVENT_STREAM
+ * </pre>
+ */
+public record TypeIndexEntry(int typeHash, long sequence, long stream, int version) {
+
+    private static final long LOW_MASK = Integer.MAX_VALUE;
+
+    static long keyHigh(int typeHash, long sequence) {
+        return ((long) typeHash << Integer.SIZE) | (sequence >>> 31);
+    }
+
+    static int keyLow(long sequence) {
+        return (int) (sequence & LOW_MASK);
+    }
+
+    static TypeIndexEntry from(IndexEntry ie) {
+        int typeHash = (int) (ie.stream() >>> Integer.SIZE);
+        long sequence = ((ie.stream() & 0xFFFFFFFFL) << 31) | ie.version();
+        return new TypeIndexEntry(typeHash, sequence, ie.logAddress(), ie.entries());
+    }
+
+    void writeTo(IndexWriter writer) {
+        writer.add(keyHigh(typeHash, sequence), keyLow(sequence), 0, version, stream);
+    }
+
+    public static int compare(TypeIndexEntry e1, TypeIndexEntry e2) {
+        return IndexKey.compare(keyHigh(e1.typeHash, e1.sequence), keyLow(e1.sequence), keyHigh(e2.typeHash, e2.sequence), keyLow(e2.sequence));
+    }
+
+}
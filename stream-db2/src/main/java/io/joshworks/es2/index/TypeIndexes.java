@@ -0,0 +1,108 @@
+package io.joshworks.es2.index;
+
+import io.joshworks.es2.Event;
+import io.joshworks.es2.directory.Compaction;
+import io.joshworks.es2.directory.DirectorySnapshot;
+import io.joshworks.es2.directory.MergeHandle;
+import io.joshworks.es2.directory.SegmentDirectory;
+import io.joshworks.fstore.core.iterators.CloseableIterator;
+import io.joshworks.fstore.core.iterators.Iterators;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+
+/**
+ * Secondary index of events by type across all streams, in sequence order.
+ * Built from the same events flushed to the SSTables and compacted separately.
+ */
+public class TypeIndexes {
+
+    private static final String EXT = "tix";
+    private final SegmentDirectory<TypeIndex> segments;
+
+    public TypeIndexes(Path folder, ExecutorService executor) {
+        this.segments = new SegmentDirectory<>(folder.toFile(), TypeIndex::open, EXT, executor, new TypeIndexCompaction());
+        segments.loadSegments();
+    }
+
+    public void flush(Iterator<ByteBuffer> events) {
+        List<TypeIndexEntry> entries = new ArrayList<>();
+        while (events.hasNext()) {
+            ByteBuffer event = events.next();
+            entries.add(new TypeIndexEntry(Event.typeHash(event), Event.sequence(event), Event.stream(event), Event.version(event)));
+        }
+        if (entries.isEmpty()) {
+            return;
+        }
+        entries.sort(TypeIndexEntry::compare);
+        segments.append(TypeIndex.create(segments.newHead(), entries.iterator()));
+    }
+
+    /**
+     * Entries of the given type hash, in sequence order, starting at fromSequence (inclusive).
+     * Hashes are not unique, the event type must be checked when reading the events.
+     */
+    public List<TypeIndexEntry> find(int typeHash, long fromSequence, int maxEntries) {
+        try (var view = segments.view()) {
+            List<CloseableIterator<TypeIndexEntry>> iterators = new ArrayList<>();
+            for (int i = 0; i < view.size(); i++) {
+                iterators.add(Iterators.wrap(view.get(i).iterator(typeHash, fromSequence)));
+            }
+            List<TypeIndexEntry> found = new ArrayList<>();
+            var merged = distinct(Iterators.merging(iterators, Comparator.comparingLong(TypeIndexEntry::sequence)));
+            while (merged.hasNext() && found.size() < maxEntries) {
+                found.add(merged.next());
+            }
+            return found;
+        }
+    }
+
+    public DirectorySnapshot<?> snapshot() {
+        return segments.snapshot();
+    }
+
+    public void close() {
+        segments.close();
+    }
+
+    public void delete() {
+        segments.delete();
+    }
+
+    public CompletableFuture<Void> compact() {
+        return segments.compact(2, 2);
+    }
+
+    private static class TypeIndexCompaction implements Compaction<TypeIndex> {
+
+        @Override
+        public void compact(MergeHandle<TypeIndex> handle) {
+            List<CloseableIterator<TypeIndexEntry>> iterators = handle.sources()
+                    .stream()
+                    .map(TypeIndex::iterator)
+                    .map(Iterators::wrap)
+                    .collect(Collectors.toList());
+
+            TypeIndex.write(handle.replacement(), distinct(Iterators.merging(iterators, TypeIndexEntry::compare)));
+        }
+    }
+
+    //the same events can be indexed twice when a flush is replayed after a crash (see MemTable#flush),
+    //duplicates are adjacent in a merge ordered by sequence
+    private static CloseableIterator<TypeIndexEntry> distinct(CloseableIterator<TypeIndexEntry> merged) {
+        long[] last = {-1};
+        return Iterators.filtering(merged, entry -> {
+            boolean duplicate = entry.sequence() == last[0];
+            last[0] = entry.sequence();
+            return !duplicate;
+        });
+    }
+
+}
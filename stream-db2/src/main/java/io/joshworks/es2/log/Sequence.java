@@ -0,0 +1,69 @@
+package io.joshworks.es2.log;
+
+import java.util.TreeSet;
+
+/**
+ * Global event sequence, can be shared by multiple logs (e.g. shards).
+ * Sequences reserved by writes are pending until completed, {@link #committed()} is the lowest pending sequence,
+ * so readers merging events from multiple logs can tell which sequences may still appear.
+ */
+public class Sequence {
+
+    private final TreeSet<Long> pending = new TreeSet<>();
+    private long next;
+
+    public Sequence() {
+        this(0);
+    }
+
+    public Sequence(long next) {
+        this.next = next;
+    }
+
+    /**
+     * Reserves count contiguous sequences, they are pending until {@link #complete(long)} is called with the returned value
+     *
+     * @return the first reserved sequence
+     */
+    public synchronized long reserve(int count) {
+        long start = next;
+        next += count;
+        pending.add(start);
+        return start;
+    }
+
+    /**
+     * Marks sequences reserved with {@link #reserve(int)} as no longer pending, either visible to readers or failed
+     */
+    public synchronized void complete(long start) {
+        pending.remove(start);
+    }
+
+    /**
+     * Assigns a sequence that is never pending, for writes that are not visible until fully done (e.g. bulk loads)
+     */
+    public synchronized long assign() {
+        return next++;
+    }
+
+    /**
+     * Makes sure the next sequence is at least the given one, used when restoring
+     */
+    public synchronized void advance(long next) {
+        this.next = Math.max(this.next, next);
+    }
+
+    /**
+     * @return the next sequence to be assigned
+     */
+    public synchronized long next() {
+        return next;
+    }
+
+    /**
+     * @return the lowest sequence that may still be pending, all sequences lower than this are completed
+     */
+    public synchronized long committed() {
+        return pending.isEmpty() ? next : pending.first();
+    }
+}
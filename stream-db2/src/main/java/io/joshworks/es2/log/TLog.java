@@ -3,49 +3,228 @@ package io.joshworks.es2.log;
 import io.joshworks.es2.Event;
 import io.joshworks.es2.SegmentChannel;
 import io.joshworks.es2.directory.Compaction;
+import io.joshworks.es2.directory.DirectorySnapshot;
 import io.joshworks.es2.directory.MergeHandle;
 import io.joshworks.es2.directory.SegmentDirectory;
+import io.joshworks.fstore.core.io.buffers.Buffers;
+import io.joshworks.fstore.core.metrics.Histogram;
+import io.joshworks.fstore.core.util.ByteBufferChecksum;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
 import java.nio.ByteBuffer;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
+/**
+ * Records are either a single {@link Event} or a group of events, written by {@link #appendAll(List)} as a single record:
+ *
+ * <pre>
+ * RECORD_SIZE (4 BYTES)
+ * GROUP_MARKER (8 BYTES) - in place of the event STREAM_HASH
+ * ENTRIES (4 BYTES)
+ * EVENTS [{@link Event}] (N BYTES)
+ * COMMIT (4 BYTES) - checksum of EVENTS
+ * </pre>
+ * A group without a valid commit is discarded as a whole.
+ */
 public class TLog {
 
+    static final long GROUP_MARKER = 0xC0FFEE_5EED_1DEAL;
+    private static final int GROUP_HEADER_BYTES = Integer.BYTES + Long.BYTES + Integer.BYTES;
+    private static final int GROUP_COMMIT_BYTES = Integer.BYTES;
+
+    private static final Logger log = LoggerFactory.getLogger(TLog.class);
+
     private static final String EXT = "log";
     private final SegmentDirectory<SegmentChannel> logs;
-    private final AtomicLong sequence = new AtomicLong(0);
+    private final Sequence sequence;
+    private final Histogram fsyncTime = new Histogram();
     private SegmentChannel head;
 
     public TLog(Path folder, ExecutorService executor) {
+        this(folder, executor, new Sequence());
+    }
+
+    //sequence can be shared across multiple logs
+    public TLog(Path folder, ExecutorService executor, Sequence sequence) {
+        this.sequence = sequence;
         this.logs = new SegmentDirectory<>(folder.toFile(), SegmentChannel::open, EXT, executor, new TLogCompaction());
     }
 
-    public void restore() {
+    /**
+     * Loads the sealed segments and replays the head, the only segment not yet flushed, into consumer.
+     * Only complete records are replayed (groups all or nothing), anything after them is truncated and the head
+     * is reopened for appends. The sequence is advanced past the last replayed event.
+     * Must be called once, before any append.
+     */
+    public void restore(Consumer<ByteBuffer> consumer) {
+        logs.loadSegments();
+        File headFile = logs.newHead();
+        if (!headFile.exists()) {
+            return;
+        }
+        SegmentChannel channel = SegmentChannel.open(headFile);
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            channel.close();
+            throw new IllegalStateException("Log head too large to restore: " + size);
+        }
+        ByteBuffer data = Buffers.allocate((int) size, false);
+        channel.read(data, 0);
+        data.flip();
 
+        long[] lastSequence = {-1};
+        int valid = read(data, event -> {
+            lastSequence[0] = Math.max(lastSequence[0], Event.sequence(event));
+            consumer.accept(event);
+        });
+        if (valid != size) {
+            log.warn("Discarding {} bytes of incomplete records from {}", size - valid, headFile.getName());
+        }
+        channel.position(valid);
+        channel.truncate();
+        sequence.advance(lastSequence[0] + 1);
+        this.head = channel;
     }
 
-    public void append(ByteBuffer data) {
+    /**
+     * @return the event sequence, it stays pending until {@link Sequence#complete(long)} is called
+     */
+    public long append(ByteBuffer data) {
         if (head == null) { //lazy initialization so we run restore logic
             this.head = SegmentChannel.create(logs.newHead());
         }
-        long sequence = this.sequence.getAndIncrement();
+        long sequence = this.sequence.reserve(1);
         long timestamp = System.currentTimeMillis();
 
         Event.writeTimestamp(data, timestamp);
         Event.writeSequence(data, sequence);
 
-        head.append(data);
+        try {
+            head.append(data);
+        } catch (RuntimeException e) {
+            this.sequence.complete(sequence);
+            throw e;
+        }
+        return sequence;
+    }
+
+    /**
+     * Writes all events in a single group record, sequences are contiguous
+     *
+     * @return the sequence of the first event, it stays pending until {@link Sequence#complete(long)} is called
+     */
+    public long appendAll(List<ByteBuffer> events) {
+        if (head == null) {
+            this.head = SegmentChannel.create(logs.newHead());
+        }
+        int eventsSize = 0;
+        for (ByteBuffer event : events) {
+            eventsSize += event.remaining();
+        }
+        long first = this.sequence.reserve(events.size());
+        long sequence = first;
+        long timestamp = System.currentTimeMillis();
+
+        ByteBuffer group = Buffers.allocate(GROUP_HEADER_BYTES + eventsSize + GROUP_COMMIT_BYTES, false);
+        group.putInt(group.capacity());
+        group.putLong(GROUP_MARKER);
+        group.putInt(events.size());
+        for (ByteBuffer event : events) {
+            Event.writeTimestamp(event, timestamp);
+            Event.writeSequence(event, sequence++);
+            group.put(event.duplicate());
+        }
+        group.putInt(ByteBufferChecksum.crc32(group, GROUP_HEADER_BYTES, eventsSize));
+        group.flip();
+
+        try {
+            head.append(group);
+        } catch (RuntimeException e) {
+            this.sequence.complete(first);
+            throw e;
+        }
+        return first;
+    }
+
+    /**
+     * Reads committed events from log data, starting at its position, stopping at the first incomplete record.
+     *
+     * @return The number of valid bytes read, anything after that is a partial write
+     */
+    public static int read(ByteBuffer data, Consumer<ByteBuffer> consumer) {
+        int start = data.position();
+        int pos = start;
+        while (data.limit() - pos >= Integer.BYTES + Long.BYTES) {
+            int recordSize = data.getInt(pos);
+            if (recordSize <= 0 || recordSize > data.limit() - pos) {
+                break;
+            }
+            if (data.getLong(pos + Integer.BYTES) != GROUP_MARKER) {
+                if (recordSize < Event.HEADER_BYTES) {
+                    break;
+                }
+                consumer.accept(data.slice(pos, recordSize));
+                pos += recordSize;
+                continue;
+            }
+
+            int eventsSize = recordSize - GROUP_HEADER_BYTES - GROUP_COMMIT_BYTES;
+            if (eventsSize < 0) {
+                break;
+            }
+            int commit = data.getInt(pos + recordSize - GROUP_COMMIT_BYTES);
+            if (commit != ByteBufferChecksum.crc32(data, pos + GROUP_HEADER_BYTES, eventsSize)) {
+                break;
+            }
+            int entries = data.getInt(pos + Integer.BYTES + Long.BYTES);
+            int eventPos = pos + GROUP_HEADER_BYTES;
+            for (int i = 0; i < entries; i++) {
+                int eventSize = data.getInt(eventPos);
+                consumer.accept(data.slice(eventPos, eventSize));
+                eventPos += eventSize;
+            }
+            pos += recordSize;
+        }
+        return pos - start;
+    }
+
+    /**
+     * Captures the sealed log segments and the current head up to its write position
+     */
+    public DirectorySnapshot<SegmentChannel> snapshot() {
+        return head == null ? logs.snapshot() : logs.snapshot(Map.of(head.files().get(0), head.position()));
+    }
+
+    /**
+     * Time taken to fsync the head when rolling, in nanoseconds
+     */
+    public Histogram fsyncTime() {
+        return fsyncTime;
     }
 
     public void roll() {
         head.truncate();
+        long start = System.nanoTime();
         head.force(false);
+        fsyncTime.recordSince(start);
         logs.append(head);
         head = SegmentChannel.create(logs.newHead());
     }
 
+    public void close() {
+        if (head != null) {
+            head.close();
+        }
+        logs.close();
+    }
+
     private static class TLogCompaction implements Compaction<SegmentChannel> {
 
         @Override
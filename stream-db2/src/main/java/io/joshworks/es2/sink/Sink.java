@@ -2,6 +2,7 @@ package io.joshworks.es2.sink;
 
 import io.joshworks.fstore.core.RuntimeIOException;
 import io.joshworks.fstore.core.io.buffers.Buffers;
+import io.joshworks.fstore.core.io.buffers.RefCountedBuffer;
 
 import java.io.ByteArrayOutputStream;
 import java.io.Flushable;
@@ -14,6 +15,15 @@ public interface Sink extends WritableByteChannel, Flushable {
     @Override
     int write(ByteBuffer src);
 
+    /**
+     * Writes the remaining bytes of a shared buffer, the caller keeps its reference.
+     * Sinks that hold on to the data after returning (e.g. queued network writes) should retain the buffer
+     * instead of copying it, and release it once done.
+     */
+    default int write(RefCountedBuffer src) {
+        return write(src.buffer());
+    }
+
     @Override
     boolean isOpen();
 
@@ -58,4 +68,41 @@ public interface Sink extends WritableByteChannel, Flushable {
         }
     }
 
+    /**
+     * Writes into a fixed size buffer, fails if there's not enough space
+     */
+    class Buffer implements Sink {
+        private final ByteBuffer buffer;
+
+        public Buffer(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            int len = src.remaining();
+            buffer.put(src);
+            return len;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+            buffer.clear();
+        }
+
+        @Override
+        public void flush() {
+            //do nothing
+        }
+
+        public ByteBuffer buffer() {
+            return buffer;
+        }
+    }
+
 }
@@ -0,0 +1,69 @@
+package io.joshworks.es2.sstable;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compression outcome of a single {@link BlockCodec}, blocks that didn't compress well enough are counted as rejected
+ */
+public class CodecStats {
+
+    private final LongAdder blocks = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder uncompressedBytes = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder compressTime = new LongAdder();
+
+    static Map<BlockCodec, CodecStats> create() {
+        Map<BlockCodec, CodecStats> stats = new EnumMap<>(BlockCodec.class);
+        for (BlockCodec codec : BlockCodec.values()) {
+            stats.put(codec, new CodecStats());
+        }
+        return Collections.unmodifiableMap(stats);
+    }
+
+    void record(int uncompressed, int compressed, long nanos, boolean accepted) {
+        blocks.increment();
+        uncompressedBytes.add(uncompressed);
+        compressedBytes.add(compressed);
+        compressTime.add(nanos);
+        if (!accepted) {
+            rejected.increment();
+        }
+    }
+
+    public long blocks() {
+        return blocks.sum();
+    }
+
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    public long uncompressedBytes() {
+        return uncompressedBytes.sum();
+    }
+
+    public long compressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    public long compressTimeNanos() {
+        return compressTime.sum();
+    }
+
+    public double ratio() {
+        long uncompressed = uncompressedBytes();
+        return uncompressed == 0 ? 1 : (double) compressedBytes() / uncompressed;
+    }
+
+    @Override
+    public String toString() {
+        return "blocks=" + blocks() +
+                ", rejected=" + rejected() +
+                ", ratio=" + String.format("%.2f", ratio()) +
+                ", compressTimeNanos=" + compressTimeNanos();
+    }
+}
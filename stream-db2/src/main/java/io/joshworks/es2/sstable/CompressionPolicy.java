@@ -0,0 +1,56 @@
+package io.joshworks.es2.sstable;
+
+import java.util.Arrays;
+
+/**
+ * Block compression settings.
+ * Codecs are chosen by SSTable level (level 0 being memtable flushes), the last codec is used for any level above.
+ * Blocks are stored uncompressed ({@link BlockCodec#NONE}) whenever compression does not pay off.
+ * Levels using {@link BlockCodec#DICTIONARY} compress with the latest dictionary trained from level 0 flushes,
+ * or with {@link BlockCodec#SNAPPY} while there's none.
+ */
+public class CompressionPolicy {
+
+    BlockCodec[] levels = {BlockCodec.SNAPPY};
+    //blocks are stored compressed only if compressedSize <= uncompressedSize * maxRatio
+    double maxRatio = 0.9;
+    //blocks with sampled entropy (bits per byte) above this are not even attempted to be compressed, zero disables sampling
+    double maxEntropy = 0;
+
+    public static CompressionPolicy of(BlockCodec codec) {
+        return new CompressionPolicy().levels(codec);
+    }
+
+    public CompressionPolicy levels(BlockCodec... codecs) {
+        if (codecs.length == 0) {
+            throw new IllegalArgumentException("At least one codec must be provided");
+        }
+        this.levels = Arrays.copyOf(codecs, codecs.length);
+        return this;
+    }
+
+    public CompressionPolicy maxRatio(double maxRatio) {
+        if (maxRatio <= 0) {
+            throw new IllegalArgumentException("Ratio must be greater than zero");
+        }
+        this.maxRatio = maxRatio;
+        return this;
+    }
+
+    public CompressionPolicy maxEntropy(double maxEntropy) {
+        if (maxEntropy < 0 || maxEntropy > 8) {
+            throw new IllegalArgumentException("Entropy must be between 0 and 8 bits per byte");
+        }
+        this.maxEntropy = maxEntropy;
+        return this;
+    }
+
+    boolean usesDictionary() {
+        return Arrays.asList(levels).contains(BlockCodec.DICTIONARY);
+    }
+
+    BlockCodec codec(int level) {
+        return levels[Math.min(level, levels.length - 1)];
+    }
+
+}
@@ -0,0 +1,222 @@
+package io.joshworks.es2.sstable;
+
+import io.joshworks.fstore.codec.std.DictionaryCodec;
+import io.joshworks.fstore.codec.std.DictionaryTrainer;
+import io.joshworks.fstore.core.codec.Codec;
+import io.joshworks.fstore.core.RuntimeIOException;
+import io.joshworks.fstore.core.util.ByteBufferChecksum;
+import io.joshworks.fstore.core.util.FileUtils;
+import io.joshworks.fstore.core.util.Size;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Trained compression dictionaries for {@link BlockCodec#DICTIONARY}, stored alongside the SSTables.
+ * Dictionaries are never deleted as blocks are copied as is during compaction and may still reference old dictionaries.
+ * <p>
+ * Blocks reference dictionaries by id (content hash), each store resolves ids against its own dictionaries only,
+ * see {@link SSTables#codec(int)}. A trained dictionary whose id is already taken by a different dictionary is discarded,
+ * so an id always resolves to the dictionary the block was compressed with.
+ *
+ * <pre>
+ * FORMAT_VERSION (4 BYTES)
+ * GENERATION (4 BYTES)
+ * DICTIONARY_ID (4 BYTES)
+ * LENGTH (4 BYTES)
+ * CHECKSUM (4 BYTES)
+ *
+ * DATA (N BYTES)
+ * </pre>
+ */
+class Dictionaries {
+
+    private static final Logger log = LoggerFactory.getLogger(Dictionaries.class);
+
+    private static final String EXT = "dict";
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = Integer.BYTES * 5;
+
+    private static final int DICTIONARY_SIZE = Size.KB.ofInt(16);
+    private static final int MAX_SAMPLE_BYTES = Size.KB.ofInt(512);
+    //dictionaries are retrained every N flushes, so they follow changes in the data
+    private static final int RETRAIN_INTERVAL = 16;
+
+    private final File root;
+    private final Map<Integer, byte[]> registry = new ConcurrentHashMap<>();
+    private final Codec decoder = new DictionaryCodec(this::get);
+    private final DictionaryTrainer trainer = new DictionaryTrainer(DICTIONARY_SIZE, MAX_SAMPLE_BYTES);
+    private DictionaryCodec current;
+    private int generation = -1;
+    private int flushes;
+
+    Dictionaries(File root) {
+        this.root = root;
+        load();
+    }
+
+    byte[] get(int id) {
+        return registry.get(id);
+    }
+
+    /**
+     * Decompress only codec, resolving any dictionary of this store
+     */
+    Codec decoder() {
+        return decoder;
+    }
+
+    /**
+     * @return The codec for the latest dictionary, or null if no dictionary has been trained yet
+     */
+    DictionaryCodec current() {
+        return current;
+    }
+
+    /**
+     * Dictionary files written so far, they are immutable and never deleted
+     */
+    List<File> files() {
+        File[] files = root.listFiles((dir, name) -> name.endsWith("." + EXT));
+        return files == null ? List.of() : List.of(files);
+    }
+
+    /**
+     * Samples each event passing through the returned iterator, used to train the next dictionary
+     */
+    Iterator<ByteBuffer> sampling(Iterator<ByteBuffer> events) {
+        boolean train = current == null || flushes % RETRAIN_INTERVAL == 0;
+        flushes++;
+        if (!train) {
+            return events;
+        }
+        trainer.clear();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return events.hasNext();
+            }
+
+            @Override
+            public ByteBuffer next() {
+                ByteBuffer event = events.next();
+                trainer.add(event);
+                return event;
+            }
+        };
+    }
+
+    /**
+     * Trains a new dictionary from the collected samples, if any
+     */
+    void train() {
+        if (trainer.samples() == 0) {
+            return;
+        }
+        byte[] dictionary = trainer.train();
+        trainer.clear();
+        if (dictionary == null || collides(dictionary)) {
+            return;
+        }
+        write(generation + 1, dictionary);
+        register(generation + 1, dictionary);
+    }
+
+    //a different dictionary with the same id would make existing blocks decode with the wrong dictionary
+    private boolean collides(byte[] dictionary) {
+        int id = DictionaryCodec.dictionaryId(dictionary);
+        byte[] existing = registry.get(id);
+        if (existing != null && !Arrays.equals(existing, dictionary)) {
+            log.warn("Discarding dictionary, id {} already used by another dictionary", id);
+            return true;
+        }
+        return false;
+    }
+
+    private void register(int gen, byte[] dictionary) {
+        registry.putIfAbsent(DictionaryCodec.dictionaryId(dictionary), dictionary);
+        if (gen > generation) {
+            generation = gen;
+            current = new DictionaryCodec(dictionary, this::get);
+        }
+    }
+
+    private void write(int gen, byte[] dictionary) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + dictionary.length);
+        buffer.position(HEADER_BYTES);
+        buffer.put(dictionary);
+        buffer.putInt(0, FORMAT_VERSION);
+        buffer.putInt(4, gen);
+        buffer.putInt(8, DictionaryCodec.dictionaryId(dictionary));
+        buffer.putInt(12, dictionary.length);
+        buffer.putInt(16, ByteBufferChecksum.crc32(buffer, HEADER_BYTES, dictionary.length));
+        buffer.flip();
+
+        //durable before any table can reference its id
+        File file = new File(root, fileName(gen));
+        File tmp = new File(root, fileName(gen) + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            throw new RuntimeIOException("Failed to write dictionary " + file.getAbsolutePath(), e);
+        }
+        FileUtils.moveAtomically(tmp.toPath(), file.toPath());
+    }
+
+    private void load() {
+        File[] files = root.listFiles((dir, name) -> name.endsWith("." + EXT));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+                int version = buffer.getInt(0);
+                int gen = buffer.getInt(4);
+                int id = buffer.getInt(8);
+                int length = buffer.getInt(12);
+                int checksum = buffer.getInt(16);
+                if (version != FORMAT_VERSION || length != buffer.capacity() - HEADER_BYTES) {
+                    log.warn("Invalid dictionary file {}", file.getName());
+                    continue;
+                }
+                if (checksum != ByteBufferChecksum.crc32(buffer, HEADER_BYTES, length)) {
+                    log.warn("Dictionary checksum mismatch {}", file.getName());
+                    continue;
+                }
+                byte[] dictionary = new byte[length];
+                buffer.get(HEADER_BYTES, dictionary);
+                if (id != DictionaryCodec.dictionaryId(dictionary)) {
+                    log.warn("Dictionary id mismatch {}", file.getName());
+                    continue;
+                }
+                if (collides(dictionary)) {
+                    continue;
+                }
+                register(gen, dictionary);
+                log.info("Loaded dictionary {}", file.getName());
+            } catch (Exception e) {
+                throw new RuntimeIOException("Failed to load dictionary " + file.getAbsolutePath(), e);
+            }
+        }
+    }
+
+    private static String fileName(int generation) {
+        return String.format("%010d", generation) + "." + EXT;
+    }
+
+}
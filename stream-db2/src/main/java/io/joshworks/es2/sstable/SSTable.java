@@ -9,44 +9,77 @@ import io.joshworks.es2.index.IndexEntry;
 import io.joshworks.es2.index.IndexFunction;
 import io.joshworks.es2.index.IndexWriter;
 import io.joshworks.es2.sink.Sink;
+import io.joshworks.fstore.core.RuntimeIOException;
 import io.joshworks.fstore.core.util.Memory;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Iterator;
+import java.util.List;
 
 import static io.joshworks.es2.Event.NO_VERSION;
 
+/**
+ * Files are only opened on first access, open files are kept in a bounded {@link TableHandles} cache
+ */
 class SSTable implements SegmentFile {
 
     private static final String INDEX_EXT = "idx";
+    private static final TableHandles DEFAULT_HANDLES = new TableHandles(TableHandles.DEFAULT_MAX_OPEN);
 
     public static final int NO_DATA = -11;
 
-    final SegmentChannel data;
-    final BPTreeIndexSegment index;
+    private final File dataFile;
+    private final TableHandles handles;
 
-    private SSTable(SegmentChannel data, BPTreeIndexSegment index) {
-        this.data = data;
-        this.index = index;
+    private SSTable(File dataFile, TableHandles handles) {
+        this.dataFile = dataFile;
+        this.handles = handles;
     }
 
     static SSTable open(File dataFile) {
-        var indexFile = indexFile(dataFile);
-        var data = SegmentChannel.open(dataFile);
-        var index = BPTreeIndexSegment.open(indexFile);
-        return new SSTable(data, index);
+        return open(dataFile, DEFAULT_HANDLES);
+    }
+
+    //no IO is done until the table is accessed
+    static SSTable open(File dataFile, TableHandles handles) {
+        return new SSTable(dataFile, handles);
+    }
+
+    TableHandles.Handle acquire() {
+        return handles.acquire(dataFile);
     }
 
     public int version(long stream) {
-        IndexEntry ie = index.find(stream, Integer.MAX_VALUE, IndexFunction.FLOOR);
-        return ie == null ? NO_VERSION : ie.version() + ie.entries() - 1;
+        try (var handle = acquire()) {
+            IndexEntry ie = handle.index.find(stream, Integer.MAX_VALUE, IndexFunction.FLOOR);
+            return ie == null || ie.stream() != stream ? NO_VERSION : ie.version() + ie.entries() - 1;
+        }
     }
 
     public int get(long stream, int version, Sink sink) {
-        IndexEntry ie = index.find(stream, version, IndexFunction.FLOOR);
-        if (ie == null) {
+        try (var handle = acquire()) {
+            IndexEntry ie = handle.index.find(stream, version, IndexFunction.FLOOR);
+            return read(handle.data, ie, stream, version, sink);
+        }
+    }
+
+    /**
+     * Batched version of {@link #get(long, int, Sink)}, walking the index once for all streams.
+     * Streams must be sorted, results are stored in the same position of the stream in the array
+     */
+    public void get(long[] streams, int version, Sink sink, int[] results) {
+        try (var handle = acquire()) {
+            handle.index.find(streams, version, IndexFunction.FLOOR, (ie, i) -> results[i] = read(handle.data, ie, streams[i], version, sink));
+        }
+    }
+
+    private static int read(SegmentChannel data, IndexEntry ie, long stream, int version, Sink sink) {
+        //floor may land on the previous stream's entry
+        if (ie == null || ie.stream() != stream) {
             return NO_DATA;
         }
 
@@ -66,17 +99,25 @@ class SSTable implements SegmentFile {
     }
 
     public IndexEntry get(long stream, int version) {
-        return index.find(stream, version, IndexFunction.FLOOR);
+        try (var handle = acquire()) {
+            return handle.index.find(stream, version, IndexFunction.FLOOR);
+        }
     }
 
     static SSTable create(File dataFile, Iterator<ByteBuffer> items) {
+        return create(dataFile, items, new StreamBlockWriter(BlockCodec.SNAPPY, Memory.PAGE_SIZE));
+    }
+
+    static SSTable create(File dataFile, Iterator<ByteBuffer> items, StreamBlockWriter dataChunkWriter) {
+        return create(dataFile, items, dataChunkWriter, DEFAULT_HANDLES);
+    }
+
+    static SSTable create(File dataFile, Iterator<ByteBuffer> items, StreamBlockWriter dataChunkWriter, TableHandles handles) {
         var indexFile = indexFile(dataFile);
 
         var dataChannel = SegmentChannel.create(dataFile);
         var indexChannel = SegmentChannel.create(indexFile);
 
-        var dataChunkWriter = new StreamBlockWriter(BlockCodec.SNAPPY, Memory.PAGE_SIZE);
-
         try (var indexWriter = new IndexWriter(indexChannel)) {
             while (items.hasNext()) {
                 ByteBuffer data = items.next();
@@ -87,11 +128,18 @@ class SSTable implements SegmentFile {
 
             dataChannel.truncate();
             indexWriter.complete(); //indexwriter already truncates channel
-            return new SSTable(dataChannel, BPTreeIndexSegment.open(indexFile));
+            indexChannel.close();
+            //already open, keep it in the cache
+            handles.put(dataFile, dataChannel, BPTreeIndexSegment.open(indexFile));
+            return new SSTable(dataFile, handles);
         }
     }
 
-    static void writeBlocks(File dataFile, Iterator<ByteBuffer> blocks) {
+    /**
+     * Blocks not using the writer's codec are recompressed, blocks stored raw (incompressible) and
+     * dictionary blocks are always copied as is
+     */
+    static void writeBlocks(File dataFile, Iterator<ByteBuffer> blocks, StreamBlockWriter writer) {
 
         try (var dataChannel = SegmentChannel.create(dataFile);
              var indexWriter = new IndexWriter(SegmentChannel.create(indexFile(dataFile)))) {
@@ -99,6 +147,11 @@ class SSTable implements SegmentFile {
             while(blocks.hasNext()) {
                 var block = blocks.next();
 
+                if (requiresRecompression(block, writer.codec())) {
+                    writer.recompress(block, dataChannel, indexWriter);
+                    continue;
+                }
+
                 var stream = StreamBlock.stream(block);
                 var startVersion = StreamBlock.startVersion(block);
                 var blockSize = StreamBlock.sizeOf(block);
@@ -113,6 +166,14 @@ class SSTable implements SegmentFile {
         }
     }
 
+    private static boolean requiresRecompression(ByteBuffer block, BlockCodec target) {
+        byte codec = StreamBlock.codec(block);
+        return codec != target.id &&
+                codec != BlockCodec.NONE.id &&
+                codec != BlockCodec.DICTIONARY.id &&
+                !BlockCodec.DICTIONARY.equals(target);
+    }
+
     static File indexFile(File dataFile) {
         Path parent = dataFile.toPath().getParent();
         String indexFileName = dataFile.getName().split("\\.")[0] + "." + INDEX_EXT;
@@ -121,24 +182,33 @@ class SSTable implements SegmentFile {
 
     @Override
     public void close() {
-        data.close();
-        index.close();
+        handles.evict(dataFile);
     }
 
     @Override
     public void delete() {
-        data.delete();
-        index.delete();
+        handles.evict(dataFile);
+        try {
+            Files.deleteIfExists(dataFile.toPath());
+            Files.deleteIfExists(indexFile(dataFile).toPath());
+        } catch (IOException e) {
+            throw new RuntimeIOException("Failed to delete " + dataFile.getName(), e);
+        }
     }
 
     @Override
     public String name() {
-        return data.name();
+        return dataFile.getName().split("\\.")[0];
+    }
+
+    @Override
+    public List<File> files() {
+        return List.of(dataFile, indexFile(dataFile));
     }
 
     @Override
     public String toString() {
-        return data.toString();
+        return dataFile.getName();
     }
 
 }
@@ -10,28 +10,42 @@ import io.joshworks.fstore.core.iterators.PeekingIterator;
 
 import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.function.IntFunction;
 import java.util.stream.Collectors;
 
 class SSTableCompaction implements Compaction<SSTable> {
 
-    //TODO pass compaction parameters (codec per level, block size etc)
+    //writer for a given level
+    private final IntFunction<StreamBlockWriter> writers;
+
+    SSTableCompaction(IntFunction<StreamBlockWriter> writers) {
+        this.writers = writers;
+    }
 
     @Override
     public void compact(MergeHandle<SSTable> handle) {
-        List<PeekingIterator<ByteBuffer>> iterators = handle.sources()
+        //sources are kept open for the whole merge
+        List<TableHandles.Handle> tables = handle.sources()
                 .stream()
-                .map(s -> s.data)
-                .map(LengthPrefixedIterator::new)
-                .map(Iterators::closeableIterator)
-                .map(Iterators::peekingIterator)
+                .map(SSTable::acquire)
                 .collect(Collectors.toList());
 
-        //TODO if recompaction is required then:
-        //- decompress blocks (streaming entries from blocks), must be added before mergeSort iterator
-        //- construct a new SStable using the new compression
-        //- use SSTable.create to append each entry
-        CloseableIterator<ByteBuffer> merging = Iterators.merging(iterators, StreamBlock::compare);
-        SSTable.writeBlocks(handle.replacement(), merging);
+        try {
+            List<PeekingIterator<ByteBuffer>> iterators = tables.stream()
+                    .map(t -> t.data)
+                    .map(LengthPrefixedIterator::new)
+                    .map(Iterators::closeableIterator)
+                    .map(Iterators::peekingIterator)
+                    .collect(Collectors.toList());
+
+            //blocks are recompressed individually if the target level uses a different codec
+            var writer = writers.apply(handle.level());
+
+            CloseableIterator<ByteBuffer> merging = Iterators.merging(iterators, StreamBlock::compare);
+            SSTable.writeBlocks(handle.replacement(), merging, writer);
+        } finally {
+            tables.forEach(TableHandles.Handle::close);
+        }
     }
 }
 
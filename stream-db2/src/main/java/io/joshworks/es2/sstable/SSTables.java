@@ -1,12 +1,23 @@
 package io.joshworks.es2.sstable;
 
+import io.joshworks.es2.Event;
+import io.joshworks.es2.directory.DirectorySnapshot;
 import io.joshworks.es2.directory.SegmentDirectory;
 import io.joshworks.es2.sink.Sink;
+import io.joshworks.fstore.core.codec.Codec;
+import io.joshworks.fstore.core.util.FileUtils;
+import io.joshworks.fstore.core.util.Memory;
 
+import java.io.File;
 import java.nio.ByteBuffer;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
 import java.util.concurrent.ExecutorService;
 
 import static io.joshworks.es2.Event.NO_VERSION;
@@ -16,9 +27,31 @@ public class SSTables {
 
     private static final String DATA_EXT = "sst";
     private final SegmentDirectory<SSTable> sstables;
+    private final CompressionPolicy compression;
+    private final Map<BlockCodec, CodecStats> codecStats = CodecStats.create();
+    private final Dictionaries dictionaries;
+    private final TableHandles handles;
 
     public SSTables(Path folder, ExecutorService executor) {
-        sstables = new SegmentDirectory<>(folder.toFile(), SSTable::open, DATA_EXT, executor, new SSTableCompaction());
+        this(folder, executor, new CompressionPolicy());
+    }
+
+    public SSTables(Path folder, ExecutorService executor, BlockCodec codec) {
+        this(folder, executor, CompressionPolicy.of(codec));
+    }
+
+    public SSTables(Path folder, ExecutorService executor, CompressionPolicy compression) {
+        this(folder, executor, compression, TableHandles.DEFAULT_MAX_OPEN);
+    }
+
+    /**
+     * @param maxOpenTables maximum number of tables kept open, tables are opened lazily on first access
+     */
+    public SSTables(Path folder, ExecutorService executor, CompressionPolicy compression, int maxOpenTables) {
+        this.handles = new TableHandles(maxOpenTables);
+        this.compression = compression;
+        this.dictionaries = compression.usesDictionary() ? new Dictionaries(folder.toFile()) : null;
+        this.sstables = new SegmentDirectory<>(folder.toFile(), file -> SSTable.open(file, handles), DATA_EXT, executor, new SSTableCompaction(this::writer));
         sstables.loadSegments();
     }
 
@@ -35,6 +68,50 @@ public class SSTables {
         return SSTable.NO_DATA;
     }
 
+    /**
+     * Batched lookup, each table's index is walked only once for all pending streams.
+     * Streams must be sorted, results follow the same order and values of {@link #get(long, int, Sink)}.
+     * Entries in results that are already resolved (>= 0 or {@link Event#VERSION_TOO_HIGH}) are skipped,
+     * entries not found in any table are set to {@link SSTable#NO_DATA}.
+     */
+    public void get(long[] streams, int fromVersionInclusive, Sink sink, int[] results) {
+        try (var view = sstables.view()) {
+            for (int i = 0; i < view.size(); i++) {
+                int pending = 0;
+                for (int res : results) {
+                    pending += resolved(res) ? 0 : 1;
+                }
+                if (pending == 0) {
+                    return;
+                }
+
+                long[] keys = new long[pending];
+                int[] positions = new int[pending];
+                for (int k = 0, p = 0; k < streams.length; k++) {
+                    if (!resolved(results[k])) {
+                        keys[p] = streams[k];
+                        positions[p++] = k;
+                    }
+                }
+
+                int[] tableResults = new int[pending];
+                view.get(i).get(keys, fromVersionInclusive, sink, tableResults);
+                for (int p = 0; p < pending; p++) {
+                    results[positions[p]] = tableResults[p];
+                }
+            }
+        }
+        for (int k = 0; k < results.length; k++) {
+            if (!resolved(results[k])) {
+                results[k] = SSTable.NO_DATA;
+            }
+        }
+    }
+
+    private static boolean resolved(int res) {
+        return res >= 0 || res == VERSION_TOO_HIGH;
+    }
+
     public int version(long stream) {
         try (var view = sstables.view()) {
             for (int i = 0; i < view.size(); i++) {
@@ -50,10 +127,108 @@ public class SSTables {
 
     public void flush(Iterator<ByteBuffer> iterator) {
         var headFile = sstables.newHead();
-        var sstable = SSTable.create(headFile, iterator);
+        var sstable = BlockCodec.DICTIONARY.equals(compression.codec(0)) ? flushWithDictionary(headFile, iterator) : SSTable.create(headFile, iterator, writer(0), handles);
         sstables.append(sstable);
     }
 
+    /**
+     * Builds one table per input in parallel and registers all of them at once, skipping the memtable and compaction.
+     * Tables are placed in the highest level (at least 1), each input must be sorted by stream and version.
+     * Events of a stream must all be in the same input, and the streams must not exist in any other table.
+     */
+    public void load(List<Iterator<ByteBuffer>> inputs, Executor executor) {
+        load(inputs, executor, () -> {
+        });
+    }
+
+    /**
+     * @param beforeCommit runs once all tables are built, before they become visible. Tables are discarded if it fails
+     */
+    public void load(List<Iterator<ByteBuffer>> inputs, Executor executor, Runnable beforeCommit) {
+        inputs = inputs.stream().filter(Iterator::hasNext).collect(Collectors.toList());
+        if (inputs.isEmpty()) {
+            return;
+        }
+        int level = Math.max(1, sstables.maxLevel());
+        List<File> files = sstables.newFiles(level, inputs.size());
+        try {
+            List<CompletableFuture<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < inputs.size(); i++) {
+                File file = files.get(i);
+                Iterator<ByteBuffer> input = inputs.get(i);
+                //tables are reopened lazily once registered under their final name
+                tasks.add(CompletableFuture.runAsync(() -> SSTable.create(file, input, writer(level), handles).close(), executor));
+            }
+            CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new)).join();
+            beforeCommit.run();
+        } catch (Exception e) {
+            for (File file : files) {
+                FileUtils.deleteIfExists(file);
+                FileUtils.deleteIfExists(SSTable.indexFile(file));
+            }
+            sstables.release(files);
+            throw new RuntimeException("Failed to load tables", e);
+        }
+        sstables.appendAll(files);
+    }
+
+    //all writers (flush, load and compaction) are created here, the dictionary codec can only decompress on its own
+    private StreamBlockWriter writer(int level) {
+        BlockCodec codec = compression.codec(level);
+        if (BlockCodec.DICTIONARY.equals(codec)) {
+            var dictCodec = dictionaries.current();
+            if (dictCodec != null) {
+                return new StreamBlockWriter(BlockCodec.DICTIONARY, dictCodec, Memory.PAGE_SIZE, compression, codecStats);
+            }
+            codec = BlockCodec.SNAPPY;
+        }
+        return new StreamBlockWriter(codec, codec.codec, Memory.PAGE_SIZE, compression, codecStats);
+    }
+
+    //samples the flushed events for the next dictionary
+    private SSTable flushWithDictionary(File headFile, Iterator<ByteBuffer> iterator) {
+        var writer = writer(0);
+        var sampling = dictionaries.sampling(iterator);
+        var sstable = SSTable.create(headFile, sampling, writer, handles);
+        dictionaries.train();
+        return sstable;
+    }
+
+    /**
+     * Codec to decompress blocks of this store, dictionary blocks can only be decompressed by the store that wrote them
+     */
+    public Codec codec(int id) {
+        if (id == BlockCodec.DICTIONARY.id && dictionaries != null) {
+            return dictionaries.decoder();
+        }
+        return BlockCodec.from((byte) id);
+    }
+
+    /**
+     * Per codec compression ratio and time, for both flushes and compactions
+     */
+    public Map<BlockCodec, CodecStats> codecStats() {
+        return codecStats;
+    }
+
+    /**
+     * Number of tables currently open
+     */
+    public int openTables() {
+        return handles.size();
+    }
+
+    /**
+     * Captures the current tables and dictionaries, see {@link SegmentDirectory#snapshot()}
+     */
+    public DirectorySnapshot<?> snapshot() {
+        return sstables.snapshot(Map.of(), dictionaries == null ? List.of() : dictionaries.files());
+    }
+
+    public void close() {
+        sstables.close();
+    }
+
     public void delete() {
         sstables.delete();
     }
@@ -4,13 +4,22 @@ import io.joshworks.es2.Event;
 import io.joshworks.es2.SegmentChannel;
 import io.joshworks.es2.StreamBlock;
 import io.joshworks.es2.index.IndexWriter;
+import io.joshworks.fstore.core.codec.Codec;
 import io.joshworks.fstore.core.io.buffers.Buffers;
 
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
+import java.util.Map;
 
 public class StreamBlockWriter {
 
+    private static final int ENTROPY_SAMPLES = 1024;
+
     private final BlockCodec codec;
+    private final Codec compressor;
+    private final double maxRatio;
+    private final double maxEntropy;
+    private final Map<BlockCodec, CodecStats> stats;
     //use do append event data to be compressed
     private final ByteBuffer rawChunkData;
     //StreamChunk header + compressed
@@ -20,23 +29,43 @@ public class StreamBlockWriter {
     Long currentStream = null;
     int chunkEntries = 0;
     int chunkStartVersion = -1;
+    long chunkTypes = 0;
 
     public StreamBlockWriter(BlockCodec codec, int chunkSize) {
+        this(codec, codec.codec, chunkSize, CompressionPolicy.of(codec), CodecStats.create());
+    }
+
+    //compressor must produce data readable by the given codec, used by codecs that carry state (e.g. dictionaries)
+    public StreamBlockWriter(BlockCodec codec, Codec compressor, int chunkSize, CompressionPolicy policy, Map<BlockCodec, CodecStats> stats) {
         this.codec = codec;
+        this.compressor = compressor;
+        this.maxRatio = policy.maxRatio;
+        this.maxEntropy = policy.maxEntropy;
+        this.stats = stats;
         this.rawChunkData = Buffers.allocate(chunkSize, false);
-        this.chunk = Buffers.allocate(StreamBlock.HEADER_BYTES + chunkSize, false);
+        //extra room for codecs that expand incompressible data, block is then stored raw
+        this.chunk = Buffers.allocate(StreamBlock.HEADER_BYTES + chunkSize + (chunkSize / 6) + 64, false);
     }
 
     public void clear() {
         currentStream = null;
         chunkEntries = 0;
         chunkStartVersion = -1;
+        chunkTypes = 0;
 
         rawChunkData.clear();
         chunk.clear();
 
     }
 
+    public BlockCodec codec() {
+        return codec;
+    }
+
+    public Map<BlockCodec, CodecStats> stats() {
+        return stats;
+    }
+
     public void add(ByteBuffer data, SegmentChannel dataChannel, IndexWriter indexWriter) {
         assert data.remaining() <= rawChunkData.capacity();
 
@@ -60,9 +89,38 @@ public class StreamBlockWriter {
         assert expected == version : "Event version must be contiguous (" + expected + " / " + version + ")";
 
         Buffers.copy(data, rawChunkData);
+        chunkTypes |= Event.typeBit(data);
         chunkEntries++;
     }
 
+    /**
+     * Re-encodes an existing block with this writer's codec, entries are kept in a single block.
+     * Blocks bigger than this writer's chunk size are copied as is.
+     */
+    public void recompress(ByteBuffer block, SegmentChannel dataChannel, IndexWriter indexWriter) {
+        assert rawChunkData.position() == 0 : "Pending block data";
+
+        int uncompressedSize = StreamBlock.uncompressedSize(block);
+        if (uncompressedSize > rawChunkData.capacity()) {
+            long logPos = dataChannel.append(block);
+            indexWriter.add(StreamBlock.stream(block), StreamBlock.startVersion(block), StreamBlock.sizeOf(block), StreamBlock.entries(block), logPos);
+            return;
+        }
+
+        int blockSize = StreamBlock.sizeOf(block);
+        int headerSize = StreamBlock.headerSize(block);
+        ByteBuffer compressed = block.slice(block.position() + headerSize, blockSize - headerSize);
+        rawChunkData.limit(uncompressedSize);
+        BlockCodec.from(StreamBlock.codec(block)).decompress(compressed, rawChunkData);
+        rawChunkData.limit(rawChunkData.capacity());
+
+        currentStream = StreamBlock.stream(block);
+        chunkStartVersion = StreamBlock.startVersion(block);
+        chunkEntries = StreamBlock.entries(block);
+        chunkTypes = StreamBlock.types(block);
+        flushChunk(dataChannel, indexWriter);
+    }
+
     public void complete(SegmentChannel dataChannel, IndexWriter indexWriter) {
         if (rawChunkData.position() > 0) {
             flushChunk(dataChannel, indexWriter);
@@ -77,11 +135,11 @@ public class StreamBlockWriter {
         int uncompressedSize = rawChunkData.remaining();
         chunk.position(StreamBlock.HEADER_BYTES);
 
-        codec.codec.compress(rawChunkData, chunk);
+        BlockCodec blockCodec = compress(rawChunkData, chunk);
         chunk.flip();
 
         //STREAM BLOCK WRITE
-        StreamBlock.writeHeader(chunk, currentStream, chunkStartVersion, chunkEntries, uncompressedSize, codec);
+        StreamBlock.writeHeader(chunk, currentStream, chunkStartVersion, chunkEntries, uncompressedSize, chunkTypes, blockCodec);
 
         int chunkSize = chunk.remaining();
         long logPos = channel.append(chunk);
@@ -89,4 +147,56 @@ public class StreamBlockWriter {
         clear();
     }
 
+    //returns the codec actually used, NONE if the data was stored raw
+    private BlockCodec compress(ByteBuffer raw, ByteBuffer dst) {
+        int uncompressedSize = raw.remaining();
+        if (BlockCodec.NONE.equals(codec) || (maxEntropy > 0 && entropy(raw) > maxEntropy)) {
+            dst.put(raw);
+            stats.get(BlockCodec.NONE).record(uncompressedSize, uncompressedSize, 0, true);
+            return BlockCodec.NONE;
+        }
+
+        int rawPos = raw.position();
+        boolean fits = true;
+        long start = System.nanoTime();
+        try {
+            compressor.compress(raw, dst);
+        } catch (BufferOverflowException e) {
+            fits = false;
+        }
+        long elapsed = System.nanoTime() - start;
+
+        int compressedSize = fits ? dst.position() - StreamBlock.HEADER_BYTES : uncompressedSize;
+        boolean accepted = fits && compressedSize <= uncompressedSize * maxRatio;
+        stats.get(codec).record(uncompressedSize, compressedSize, elapsed, accepted);
+        if (accepted) {
+            return codec;
+        }
+
+        raw.position(rawPos);
+        dst.position(StreamBlock.HEADER_BYTES);
+        dst.put(raw);
+        return BlockCodec.NONE;
+    }
+
+    //Shannon entropy (bits per byte) of evenly spaced byte samples
+    private static double entropy(ByteBuffer data) {
+        int len = data.remaining();
+        int step = Math.max(1, len / ENTROPY_SAMPLES);
+        int[] freq = new int[256];
+        int samples = 0;
+        for (int i = data.position(); i < data.limit(); i += step) {
+            freq[data.get(i) & 0xFF]++;
+            samples++;
+        }
+        double entropy = 0;
+        for (int count : freq) {
+            if (count > 0) {
+                double p = (double) count / samples;
+                entropy -= p * (Math.log(p) / Math.log(2));
+            }
+        }
+        return entropy;
+    }
+
 }
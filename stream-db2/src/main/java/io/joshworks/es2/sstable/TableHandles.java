@@ -0,0 +1,167 @@
+package io.joshworks.es2.sstable;
+
+import io.joshworks.es2.SegmentChannel;
+import io.joshworks.es2.index.BPTreeIndexSegment;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded LRU of open SSTable files (data channel + mapped index).
+ * Tables are opened on first access, the least recently used table is closed when the limit is reached.
+ * Handles are reference counted, an evicted handle is only closed once all its users have released it,
+ * so the number of open tables can temporarily exceed the limit under concurrent access.
+ * <p>
+ * Acquiring an open table doesn't lock. A table is opened within {@link ConcurrentHashMap#computeIfAbsent},
+ * so only one handle per file exists (files are locked when opened), which doesn't block lookups of other tables.
+ * Only eviction is serialized.
+ */
+class TableHandles {
+
+    static final int DEFAULT_MAX_OPEN = 512;
+
+    private final int maxOpen;
+    //all handles with open files, cached or still in use after being evicted
+    private final Map<File, Handle> open = new ConcurrentHashMap<>();
+    private final AtomicInteger cached = new AtomicInteger();
+    private final Object evictLock = new Object();
+
+    TableHandles(int maxOpen) {
+        if (maxOpen <= 0) {
+            throw new IllegalArgumentException("Max open tables must be greater than zero");
+        }
+        this.maxOpen = maxOpen;
+    }
+
+    /**
+     * Returns the open handle for the given data file, opening it if needed. Must be closed after use.
+     */
+    Handle acquire(File dataFile) {
+        while (true) {
+            Handle handle = open.get(dataFile);
+            if (handle == null) {
+                handle = open.computeIfAbsent(dataFile, f -> new Handle(f, SegmentChannel.open(f), BPTreeIndexSegment.open(SSTable.indexFile(f))));
+                evictIfNeeded();
+                if (handle.retain()) {
+                    handle.cache();
+                    return handle;
+                }
+            } else if (handle.retain()) {
+                handle.cache();
+                return handle;
+            }
+            //last reference released, wait for its files to be closed
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Registers an already open table, used by newly created tables
+     */
+    void put(File dataFile, SegmentChannel data, BPTreeIndexSegment index) {
+        Handle handle = new Handle(dataFile, data, index);
+        Handle previous = open.put(dataFile, handle);
+        if (previous != null) {
+            previous.evict();
+        }
+        evictIfNeeded();
+    }
+
+    void evict(File dataFile) {
+        Handle handle = open.get(dataFile);
+        if (handle != null) {
+            handle.evict();
+        }
+    }
+
+    int size() {
+        return open.size();
+    }
+
+    boolean isOpen(File dataFile) {
+        return open.containsKey(dataFile);
+    }
+
+    private void evictIfNeeded() {
+        if (cached.get() <= maxOpen) {
+            return;
+        }
+        synchronized (evictLock) {
+            while (cached.get() > maxOpen) {
+                Handle eldest = null;
+                for (Handle handle : open.values()) {
+                    if (handle.cached.get() && (eldest == null || handle.lastAccess < eldest.lastAccess)) {
+                        eldest = handle;
+                    }
+                }
+                if (eldest == null) {
+                    return;
+                }
+                eldest.evict();
+            }
+        }
+    }
+
+    final class Handle implements Closeable {
+        final SegmentChannel data;
+        final BPTreeIndexSegment index;
+        private final File dataFile;
+        //users plus one while cached, files are closed when it reaches zero
+        private final AtomicInteger refCount = new AtomicInteger(1);
+        private final AtomicBoolean cached = new AtomicBoolean(true);
+        private volatile long lastAccess = System.nanoTime();
+
+        //created cached, holding only the cache reference
+        private Handle(File dataFile, SegmentChannel data, BPTreeIndexSegment index) {
+            this.dataFile = dataFile;
+            this.data = data;
+            this.index = index;
+            TableHandles.this.cached.incrementAndGet();
+        }
+
+        //false if the files are closed or being closed
+        private boolean retain() {
+            int count;
+            do {
+                count = refCount.get();
+                if (count == 0) {
+                    return false;
+                }
+            } while (!refCount.compareAndSet(count, count + 1));
+            lastAccess = System.nanoTime();
+            return true;
+        }
+
+        //caller must hold a reference
+        private void cache() {
+            if (!cached.get() && cached.compareAndSet(false, true)) {
+                refCount.incrementAndGet();
+                TableHandles.this.cached.incrementAndGet();
+                evictIfNeeded();
+            }
+        }
+
+        private void evict() {
+            if (cached.compareAndSet(true, false)) {
+                TableHandles.this.cached.decrementAndGet();
+                close();
+            }
+        }
+
+        @Override
+        public void close() {
+            int count = refCount.decrementAndGet();
+            assert count >= 0;
+            if (count == 0) {
+                data.close();
+                index.close();
+                open.remove(dataFile, this);
+            }
+        }
+    }
+
+}
@@ -1,18 +1,37 @@
 package io.joshworks.es2;
 
+import io.joshworks.es2.log.Sequence;
 import io.joshworks.es2.sink.Sink;
+import io.joshworks.es2.sstable.BlockCodec;
+import io.joshworks.es2.sstable.CompressionPolicy;
 import io.joshworks.es2.sstable.StreamBlockDeserializer;
 import io.joshworks.es2.sstable.TestEvent;
+import io.joshworks.fstore.core.io.buffers.Buffers;
+import io.joshworks.fstore.core.util.Memory;
 import io.joshworks.fstore.core.util.TestUtils;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class EventStoreTest {
@@ -41,6 +60,19 @@ public class EventStoreTest {
         assertEquals(0, store.version(StreamHasher.hash(stream)));
     }
 
+    @Test
+    public void append_by_name_registers_stream() {
+        String stream = "stream-1";
+        long hash = store.append(stream, TestEvent.create("other", Event.NO_VERSION, 0, "type-a", "data-1").serialize());
+        store.appendAll(stream, 1, List.of(TestEvent.create("other", Event.NO_VERSION, 0, "type-a", "data-2").serialize()));
+
+        assertEquals(StreamHasher.hash(stream), hash);
+        assertEquals(hash, store.hash(stream));
+        assertEquals(stream, store.catalog().name(hash));
+        assertEquals(1, store.version(hash));
+        assertEquals(Event.NO_VERSION, store.version(StreamHasher.hash("other")));
+    }
+
     @Test
     public void read_version_too_high() {
         String stream = "stream-1";
@@ -75,4 +107,523 @@ public class EventStoreTest {
         assertEquals(1, events.get(1).version);
     }
 
+    @Test
+    public void read_many() {
+        String stream1 = "stream-1";
+        String stream2 = "stream-2";
+        store.append(TestEvent.create(stream1, Event.NO_VERSION, 0, "type-a", "data-1").serialize());
+        store.append(TestEvent.create(stream2, Event.NO_VERSION, 0, "type-a", "data-1").serialize());
+
+        long[] streams = {StreamHasher.hash(stream2), StreamHasher.hash("absent"), StreamHasher.hash(stream1)};
+        Sink.Memory sink = new Sink.Memory();
+        int[] results = store.read(streams, 0, sink);
+
+        assertTrue(results[0] > 0);
+        assertTrue(results[1] < 0);
+        assertTrue(results[2] > 0);
+    }
+
+    @Test
+    public void read_many_same_results_as_single_read() {
+        String stream = "stream-1";
+        store.append(TestEvent.create(stream, Event.NO_VERSION, 0, "type-a", "data-1").serialize());
+
+        //nothing written, e.g. a full non blocking channel
+        Sink rejecting = new Sink.Buffer(ByteBuffer.allocate(0)) {
+            @Override
+            public int write(ByteBuffer src) {
+                return 0;
+            }
+        };
+        long hash = StreamHasher.hash(stream);
+        for (int version = 0; version < 3; version++) {
+            assertEquals(store.read(hash, version, rejecting), store.read(new long[]{hash}, version, rejecting)[0]);
+            Sink.Memory sink = new Sink.Memory();
+            assertEquals(store.read(hash, version, sink), store.read(new long[]{hash}, version, new Sink.Memory())[0]);
+        }
+    }
+
+    @Test
+    public void read_filtered() {
+        String stream = "stream-1";
+        for (int i = 0; i < 10; i++) {
+            String type = i % 2 == 0 ? "type-a" : "type-b";
+            store.append(TestEvent.create(stream, Event.NO_VERSION, i, type, "data-" + i).serialize());
+        }
+
+        Sink.Memory sink = new Sink.Memory();
+        int next = store.read(StreamHasher.hash(stream), 2, EventFilter.ofTypes("type-b"), sink);
+        assertEquals(10, next);
+
+        ByteBuffer block = ByteBuffer.wrap(sink.data());
+        assertTrue(StreamBlock.sparse(block));
+        assertEquals(3, StreamBlock.startVersion(block));
+        assertEquals(4, StreamBlock.entries(block));
+
+        List<TestEvent> events = StreamBlockDeserializer.deserialize(sink.data());
+        assertEquals(4, events.size());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals("type-b", events.get(i).type);
+            assertEquals(3 + i * 2, events.get(i).version);
+        }
+    }
+
+    @Test
+    public void read_filtered_event_bigger_than_a_page() {
+        String stream = "stream-1";
+        String big = "x".repeat(Memory.PAGE_SIZE);
+        store.append(TestEvent.create(stream, Event.NO_VERSION, 0, "type-b", big).serialize());
+        store.append(TestEvent.create(stream, Event.NO_VERSION, 1, "type-b", big).serialize());
+        store.append(TestEvent.create(stream, Event.NO_VERSION, 2, "type-b", "data-2").serialize());
+
+        long hash = StreamHasher.hash(stream);
+        List<TestEvent> events = new ArrayList<>();
+        int version = 0;
+        for (int reads = 0; version < 3; reads++) {
+            assertTrue("Read is not moving forward", reads < 3);
+            Sink.Memory sink = new Sink.Memory();
+            version = store.read(hash, version, EventFilter.ofTypes("type-b"), sink);
+            events.addAll(StreamBlockDeserializer.deserialize(sink.data()));
+        }
+
+        assertEquals(3, events.size());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(i, events.get(i).version);
+        }
+        assertEquals(big, events.get(0).data);
+    }
+
+    @Test
+    public void read_filtered_no_match() {
+        String stream = "stream-1";
+        store.append(TestEvent.create(stream, Event.NO_VERSION, 0, "type-a", "data-1").serialize());
+
+        Sink.Memory sink = new Sink.Memory();
+        int next = store.read(StreamHasher.hash(stream), 0, EventFilter.ofTypes("type-b"), sink);
+        assertEquals(1, next);
+        assertEquals(0, sink.data().length);
+    }
+
+    @Test
+    public void read_type() {
+        store.close();
+        store = new EventStore(TestUtils.testFolder().toPath(), Executors.newSingleThreadExecutor(), true);
+        for (int i = 0; i < 10; i++) {
+            String type = i % 2 == 0 ? "type-a" : "type-b";
+            store.append(TestEvent.create("stream-" + (i % 3), Event.NO_VERSION, i, type, "data-" + i).serialize());
+        }
+
+        Sink.Memory sink = new Sink.Memory();
+        long next = store.readType("type-b", 0, 3, sink);
+        assertEquals(6, next);
+
+        ByteBuffer data = ByteBuffer.wrap(sink.data());
+        int count = 0;
+        while (data.hasRemaining()) {
+            assertEquals("type-b", Event.eventType(data));
+            Buffers.offsetPosition(data, Event.sizeOf(data));
+            count++;
+        }
+        assertEquals(3, count);
+    }
+
+    @Test
+    public void concurrent_appends_have_no_version_gaps_or_duplicates() throws Exception {
+        int threads = 8;
+        int appendsPerThread = 4000;
+        int streams = 16;
+        String data = "x".repeat(400); //enough to trigger memtable flushes
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            tasks.add(executor.submit(() -> {
+                for (int i = 0; i < appendsPerThread; i++) {
+                    String stream = "stream-" + ((thread + i) % streams);
+                    store.append(TestEvent.create(stream, Event.NO_VERSION, 0, "type-a", data).serialize());
+                }
+            }));
+        }
+        for (Future<?> task : tasks) {
+            task.get();
+        }
+        executor.shutdown();
+
+        int total = 0;
+        for (int s = 0; s < streams; s++) {
+            List<TestEvent> events = readAll(StreamHasher.hash("stream-" + s));
+            for (int i = 0; i < events.size(); i++) {
+                assertEquals(i, events.get(i).version);
+            }
+            assertEquals(events.size() - 1, store.version(StreamHasher.hash("stream-" + s)));
+            total += events.size();
+        }
+        assertEquals(threads * appendsPerThread, total);
+    }
+
+    @Test
+    public void concurrent_appends_with_expected_version_only_one_wins() throws Exception {
+        int threads = 8;
+        int versions = 500;
+        String stream = "stream-1";
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        AtomicInteger succeeded = new AtomicInteger();
+        for (int v = 0; v < versions; v++) {
+            int expected = v;
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                tasks.add(executor.submit(() -> {
+                    try {
+                        store.append(TestEvent.create(stream, expected, 0, "type-a", "data").serialize());
+                        succeeded.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        //version mismatch
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(versions, succeeded.get());
+        assertEquals(versions - 1, store.version(StreamHasher.hash(stream)));
+    }
+
+    @Test
+    public void append_all() {
+        String stream = "stream-1";
+        long hash = StreamHasher.hash(stream);
+        store.append(TestEvent.create(stream, Event.NO_VERSION, 0, "type-a", "data-0").serialize());
+
+        List<ByteBuffer> events = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            events.add(TestEvent.create(stream, Event.NO_VERSION, 0, "type-a", "data-" + i).serialize());
+        }
+        store.appendAll(hash, 1, events);
+
+        assertEquals(10, store.version(hash));
+        List<TestEvent> read = readAll(hash);
+        assertEquals(11, read.size());
+        for (int i = 0; i < read.size(); i++) {
+            assertEquals(i, read.get(i).version);
+        }
+    }
+
+    @Test
+    public void append_all_version_mismatch_writes_nothing() {
+        String stream = "stream-1";
+        long hash = StreamHasher.hash(stream);
+        List<ByteBuffer> events = List.of(
+                TestEvent.create(stream, Event.NO_VERSION, 0, "type-a", "data-1").serialize(),
+                TestEvent.create(stream, Event.NO_VERSION, 0, "type-a", "data-2").serialize());
+
+        try {
+            store.appendAll(hash, 5, events);
+        } catch (RuntimeException e) {
+            //expected
+        }
+        assertEquals(Event.NO_VERSION, store.version(hash));
+    }
+
+    @Test
+    public void load() {
+        int inputs = 4;
+        int streamsPerInput = 25;
+        int versions = 100;
+        List<Iterator<ByteBuffer>> sources = new ArrayList<>();
+        List<String> streams = new ArrayList<>();
+        for (int i = 0; i < inputs; i++) {
+            List<String> inputStreams = new ArrayList<>();
+            for (int s = 0; s < streamsPerInput; s++) {
+                inputStreams.add("stream-" + i + "-" + s);
+            }
+            inputStreams.sort(Comparator.comparingLong(StreamHasher::hash));
+            List<ByteBuffer> events = new ArrayList<>();
+            for (String stream : inputStreams) {
+                for (int v = 0; v < versions; v++) {
+                    events.add(TestEvent.create(stream, Event.NO_VERSION, 0, "type-a", "data-" + v).serialize());
+                }
+            }
+            streams.addAll(inputStreams);
+            sources.add(events.iterator());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(inputs);
+        try {
+            store.load(sources, executor);
+        } finally {
+            executor.shutdown();
+        }
+
+        for (String stream : streams) {
+            long hash = StreamHasher.hash(stream);
+            assertEquals(versions - 1, store.version(hash));
+            List<TestEvent> read = readAll(hash);
+            assertEquals(versions, read.size());
+            for (int v = 0; v < versions; v++) {
+                assertEquals(v, read.get(v).version);
+            }
+        }
+
+        //appends continue after loaded versions
+        store.append(TestEvent.create(streams.get(0), Event.NO_VERSION, 0, "type-a", "data").serialize());
+        assertEquals(versions, store.version(StreamHasher.hash(streams.get(0))));
+    }
+
+    @Test
+    public void load_existing_stream_registers_nothing() {
+        String stream = "stream-1";
+        store.append(TestEvent.create(stream, Event.NO_VERSION, 0, "type-a", "data").serialize());
+
+        List<ByteBuffer> events = List.of(
+                TestEvent.create("stream-0", Event.NO_VERSION, 0, "type-a", "data").serialize(),
+                TestEvent.create(stream, Event.NO_VERSION, 0, "type-a", "data").serialize());
+        List<ByteBuffer> sorted = new ArrayList<>(events);
+        sorted.sort(Comparator.comparingLong(Event::stream));
+        try {
+            store.load(List.of(sorted.iterator()), Runnable::run);
+        } catch (RuntimeException e) {
+            //expected
+        }
+        assertEquals(0, store.version(StreamHasher.hash(stream)));
+        assertEquals(Event.NO_VERSION, store.version(StreamHasher.hash("stream-0")));
+    }
+
+    @Test
+    public void snapshot() throws IOException {
+        int streams = 10;
+        List<ByteBuffer> events = new ArrayList<>();
+        for (int s = 0; s < streams; s++) {
+            events.add(TestEvent.create("stream-" + s, Event.NO_VERSION, 0, "type-a", "data").serialize());
+        }
+        events.sort(Comparator.comparingLong(Event::stream));
+        store.load(List.of(events.iterator()), Runnable::run);
+        store.append(TestEvent.create("stream-a", Event.NO_VERSION, 0, "type-a", "data").serialize());
+
+        File first = TestUtils.testFolder();
+        Snapshot snapshot = store.snapshot(first.toPath());
+        assertEquals(snapshot.files(), Snapshot.read(first.toPath()).files());
+        assertEquals(streams + 1, snapshot.sequence());
+
+        //linked files are shared with the (locked) store files, restore from a copy
+        File restored = TestUtils.testFolder();
+        for (String file : snapshot.files().keySet()) {
+            Files.copy(first.toPath().resolve(file), restored.toPath().resolve(file));
+        }
+        try (var copy = new EventStore(restored.toPath(), Executors.newSingleThreadExecutor())) {
+            for (int s = 0; s < streams; s++) {
+                assertEquals(0, copy.version(StreamHasher.hash("stream-" + s)));
+            }
+            //replayed from the log head
+            assertEquals(0, copy.version(StreamHasher.hash("stream-a")));
+        }
+
+        store.append(TestEvent.create("stream-a", Event.NO_VERSION, 0, "type-a", "data").serialize());
+        File second = TestUtils.testFolder();
+        List<String> changed = store.snapshot(second.toPath()).diff(snapshot);
+        //metadata files are rewritten in place, they are always copied
+        assertEquals(1, changed.stream().filter(name -> name.endsWith(".log")).count());
+        assertTrue(changed.stream().anyMatch(name -> name.endsWith(".metadata")));
+        assertTrue(changed.contains(Snapshot.MANIFEST));
+        assertTrue(changed.stream().allMatch(name -> name.endsWith(".log") || name.endsWith(".metadata") || name.equals(Snapshot.MANIFEST)));
+
+        TestUtils.deleteRecursively(first);
+        TestUtils.deleteRecursively(second);
+        TestUtils.deleteRecursively(restored);
+    }
+
+    @Test
+    public void restore_replays_log_head() throws IOException {
+        store.append(TestEvent.create("stream-1", Event.NO_VERSION, 0, "type-a", "data-1").serialize());
+        store.appendAll(StreamHasher.hash("stream-2"), Event.NO_VERSION, List.of(
+                TestEvent.create("stream-2", Event.NO_VERSION, 0, "type-a", "data-1").serialize(),
+                TestEvent.create("stream-2", Event.NO_VERSION, 0, "type-a", "data-2").serialize()));
+
+        File restored = copyOf(root);
+        try (var copy = new EventStore(restored.toPath(), Executors.newSingleThreadExecutor())) {
+            assertEquals(0, copy.version(StreamHasher.hash("stream-1")));
+            assertEquals(1, copy.version(StreamHasher.hash("stream-2")));
+            assertEquals("data-2", readAll(copy, StreamHasher.hash("stream-2")).get(1).data);
+
+            //sequence continues after the replayed events
+            copy.append(TestEvent.create("stream-1", Event.NO_VERSION, 0, "type-a", "data-2").serialize());
+            assertEquals(1, copy.version(StreamHasher.hash("stream-1")));
+        }
+        TestUtils.deleteRecursively(restored);
+    }
+
+    @Test
+    public void restore_discards_incomplete_group() throws IOException {
+        store.append(TestEvent.create("stream-1", Event.NO_VERSION, 0, "type-a", "data-1").serialize());
+        store.appendAll(StreamHasher.hash("stream-2"), Event.NO_VERSION, List.of(
+                TestEvent.create("stream-2", Event.NO_VERSION, 0, "type-a", "data-1").serialize(),
+                TestEvent.create("stream-2", Event.NO_VERSION, 0, "type-a", "data-2").serialize()));
+
+        File restored = copyOf(root);
+        File[] logs = restored.listFiles((dir, name) -> name.endsWith(".log"));
+        assertEquals(1, logs.length);
+        try (var channel = FileChannel.open(logs[0].toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+
+        try (var copy = new EventStore(restored.toPath(), Executors.newSingleThreadExecutor())) {
+            assertEquals(0, copy.version(StreamHasher.hash("stream-1")));
+            assertEquals(Event.NO_VERSION, copy.version(StreamHasher.hash("stream-2")));
+        }
+        TestUtils.deleteRecursively(restored);
+    }
+
+    @Test
+    public void compact_merges_catalog_segments() {
+        for (int segment = 0; segment < 4; segment++) {
+            for (int i = 0; i < 10; i++) {
+                String stream = "stream-" + segment + "-" + i;
+                store.append(stream, TestEvent.create(stream, Event.NO_VERSION, 0, "type", "data").serialize());
+            }
+            store.catalog().flush();
+        }
+        assertEquals(0, catalogSegments(1));
+
+        store.compact().join();
+
+        assertEquals(1, catalogSegments(1));
+        assertEquals("stream-0-0", store.catalog().name(store.hash("stream-0-0")));
+    }
+
+    private int catalogSegments(int level) {
+        String prefix = String.format("%010d-", level);
+        return root.listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(".cat")).length;
+    }
+
+    @Test
+    public void read_type_pages_past_hash_collisions() {
+        store.close();
+        store = new EventStore(TestUtils.testFolder().toPath(), Executors.newSingleThreadExecutor(), true);
+        assertEquals(Event.typeHash("Aa".getBytes(StandardCharsets.UTF_8)), Event.typeHash("BB".getBytes(StandardCharsets.UTF_8)));
+
+        String data = "x".repeat(3000); //enough to trigger memtable flushes
+        int events = 4000;
+        for (int i = 0; i < events; i++) {
+            String type = i % 4 == 0 ? "BB" : "Aa";
+            store.append(TestEvent.create("stream-" + (i % 3), Event.NO_VERSION, i, type, data).serialize());
+        }
+
+        int found = 0;
+        long next = 0;
+        while (true) {
+            Sink.Memory sink = new Sink.Memory();
+            next = store.readType("BB", next, 7, sink);
+            ByteBuffer read = ByteBuffer.wrap(sink.data());
+            if (!read.hasRemaining()) {
+                break;
+            }
+            while (read.hasRemaining()) {
+                assertEquals("BB", Event.eventType(read));
+                Buffers.offsetPosition(read, Event.sizeOf(read));
+                found++;
+            }
+        }
+        assertEquals(events / 4, found);
+    }
+
+    @Test
+    public void sequence_is_restored_when_log_head_is_empty() {
+        File folder = TestUtils.testFolder();
+        List<ByteBuffer> events = new ArrayList<>();
+        for (int s = 0; s < 5; s++) {
+            events.add(TestEvent.create("stream-" + s, Event.NO_VERSION, 0, "type-a", "data").serialize());
+        }
+        events.sort(Comparator.comparingLong(Event::stream));
+        try (var loaded = new EventStore(folder.toPath(), Executors.newSingleThreadExecutor(), false, new CompressionPolicy(), new Sequence())) {
+            //bulk loaded events are never logged
+            loaded.load(List.of(events.iterator()), Runnable::run);
+        }
+
+        Sequence sequence = new Sequence();
+        try (var reopened = new EventStore(folder.toPath(), Executors.newSingleThreadExecutor(), false, new CompressionPolicy(), sequence)) {
+            assertEquals(5, sequence.next());
+            reopened.append(TestEvent.create("stream-a", Event.NO_VERSION, 0, "type-a", "data").serialize());
+        }
+
+        sequence = new Sequence();
+        try (var reopened = new EventStore(folder.toPath(), Executors.newSingleThreadExecutor(), false, new CompressionPolicy(), sequence)) {
+            assertEquals(6, sequence.next());
+        }
+        TestUtils.deleteRecursively(folder);
+    }
+
+    @Test
+    public void sequence_is_restored_after_flush() {
+        File folder = TestUtils.testFolder();
+        String data = "x".repeat(400); //enough to trigger memtable flushes
+        int appends = 30000;
+        try (var flushed = new EventStore(folder.toPath(), Executors.newSingleThreadExecutor(), false, new CompressionPolicy(), new Sequence())) {
+            for (int i = 0; i < appends; i++) {
+                flushed.append(TestEvent.create("stream-" + (i % 10), Event.NO_VERSION, 0, "type-a", data).serialize());
+            }
+        }
+        Sequence sequence = new Sequence();
+        try (var reopened = new EventStore(folder.toPath(), Executors.newSingleThreadExecutor(), false, new CompressionPolicy(), sequence)) {
+            assertEquals(appends, sequence.next());
+        }
+        TestUtils.deleteRecursively(folder);
+    }
+
+    @Test
+    public void dictionary_compression() {
+        File folder = TestUtils.testFolder();
+        CompressionPolicy compression = CompressionPolicy.of(BlockCodec.DICTIONARY);
+        int appends = 30000; //enough to trigger memtable flushes
+        try (var store = new EventStore(folder.toPath(), Executors.newSingleThreadExecutor(), false, compression)) {
+            for (int i = 0; i < appends; i++) {
+                store.append(TestEvent.create("stream-" + (i % 10), Event.NO_VERSION, 0, "type-a", "data-" + i + "-" + "x".repeat(400)).serialize());
+            }
+        }
+        assertTrue(folder.listFiles((dir, name) -> name.endsWith(".dict")).length > 0);
+
+        try (var reopened = new EventStore(folder.toPath(), Executors.newSingleThreadExecutor(), false, compression)) {
+            Sink.Memory sink = new Sink.Memory();
+            reopened.read(StreamHasher.hash("stream-3"), 0, EventFilter.ofTypes("type-a"), sink);
+            List<TestEvent> events = StreamBlockDeserializer.deserialize(sink.data());
+            assertFalse(events.isEmpty());
+            assertEquals(0, events.get(0).version);
+            assertTrue(events.get(0).data.startsWith("data-3-"));
+        }
+        TestUtils.deleteRecursively(folder);
+    }
+
+    //store files are locked, reopen from a copy
+    private static File copyOf(File folder) throws IOException {
+        File copy = TestUtils.testFolder();
+        for (File file : folder.listFiles(File::isFile)) {
+            Files.copy(file.toPath(), copy.toPath().resolve(file.getName()), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return copy;
+    }
+
+    private List<TestEvent> readAll(long stream) {
+        return readAll(store, stream);
+    }
+
+    private static List<TestEvent> readAll(EventStore store, long stream) {
+        List<TestEvent> events = new ArrayList<>();
+        int version = 0;
+        while (true) {
+            Sink.Memory sink = new Sink.Memory();
+            if (store.read(stream, version, sink) < 0) {
+                return events;
+            }
+            for (TestEvent event : StreamBlockDeserializer.deserialize(sink.data())) {
+                if (event.version >= version) { //stored blocks may start before the requested version
+                    events.add(event);
+                }
+            }
+            version = events.get(events.size() - 1).version + 1;
+        }
+    }
+
 }
\ No newline at end of file
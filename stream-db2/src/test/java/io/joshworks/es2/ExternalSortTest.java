@@ -0,0 +1,133 @@
+package io.joshworks.es2;
+
+import io.joshworks.es2.sstable.TestEvent;
+import io.joshworks.fstore.core.util.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ExternalSortTest {
+
+    private static final int RUN_SIZE = 4096;
+
+    private File root;
+    private ForkJoinPool pool;
+    private ExternalSort sort;
+
+    @Before
+    public void setUp() {
+        root = TestUtils.testFolder();
+        pool = new ForkJoinPool(4);
+        sort = new ExternalSort(root.toPath(), RUN_SIZE, 2, pool);
+    }
+
+    @After
+    public void tearDown() {
+        sort.close();
+        pool.shutdown();
+        TestUtils.deleteRecursively(root);
+    }
+
+    @Test
+    public void sorted() {
+        List<ByteBuffer> events = shuffledEvents(50, 40);
+        for (ByteBuffer event : events) {
+            sort.add(event);
+        }
+
+        var it = sort.sorted();
+        long prevStream = Long.MIN_VALUE;
+        int prevVersion = -1;
+        int count = 0;
+        while (it.hasNext()) {
+            ByteBuffer event = it.next();
+            long stream = Event.stream(event);
+            int version = Event.version(event);
+            if (stream == prevStream) {
+                assertEquals(prevVersion + 1, version);
+            } else {
+                assertTrue(stream > prevStream);
+                assertEquals(0, version);
+            }
+            prevStream = stream;
+            prevVersion = version;
+            count++;
+        }
+        assertEquals(events.size(), count);
+        assertTrue(sort.runs() > 1);
+    }
+
+    @Test
+    public void sorted_input_can_be_loaded() {
+        int streams = 30;
+        int versions = 20;
+        for (ByteBuffer event : shuffledEvents(streams, versions)) {
+            sort.add(event);
+        }
+
+        File storeRoot = TestUtils.testFolder();
+        try (var store = new EventStore(storeRoot.toPath(), Executors.newSingleThreadExecutor())) {
+            store.load(List.of(sort.sorted()), Runnable::run);
+            for (int s = 0; s < streams; s++) {
+                assertEquals(versions - 1, store.version(StreamHasher.hash("stream-" + s)));
+            }
+        } finally {
+            TestUtils.deleteRecursively(storeRoot);
+        }
+    }
+
+    @Test
+    public void unversioned_events_keep_input_order_within_stream() {
+        int streams = 20;
+        int perStream = 60;
+        Random random = new Random(123);
+        int[] added = new int[streams];
+        for (int i = 0; i < streams * perStream; i++) {
+            int s;
+            do {
+                s = random.nextInt(streams);
+            } while (added[s] == perStream);
+            sort.add(TestEvent.create("stream-" + s, Event.NO_VERSION, 0, "type-a", "data-" + added[s]++).serialize());
+        }
+
+        var it = sort.sorted();
+        long prevStream = Long.MIN_VALUE;
+        int expected = 0;
+        int count = 0;
+        while (it.hasNext()) {
+            TestEvent event = TestEvent.from(it.next());
+            if (event.stream != prevStream) {
+                prevStream = event.stream;
+                expected = 0;
+            }
+            assertEquals("data-" + expected++, event.data);
+            count++;
+        }
+        assertEquals(streams * perStream, count);
+        assertTrue(sort.runs() > 1);
+    }
+
+    private static List<ByteBuffer> shuffledEvents(int streams, int versions) {
+        List<ByteBuffer> events = new ArrayList<>();
+        for (int s = 0; s < streams; s++) {
+            for (int v = 0; v < versions; v++) {
+                events.add(TestEvent.create("stream-" + s, v, 0, "type-a", "data-" + v).serialize());
+            }
+        }
+        Collections.shuffle(events, new Random(123));
+        return events;
+    }
+
+}
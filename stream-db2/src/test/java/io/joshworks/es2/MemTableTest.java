@@ -11,6 +11,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.concurrent.Executors;
 
@@ -83,6 +84,28 @@ public class MemTableTest {
 
     }
 
+    @Test
+    public void read_type_concurrent_with_add() throws Exception {
+        int events = 10000;
+        int eventSize = EventSerializer.serialize("s1", "type-1", 0, "data", 0).remaining();
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < events; i++) {
+                memTable.add(EventSerializer.serialize("s1", "type-1", i, "data", i));
+            }
+        });
+        writer.start();
+
+        byte[] type = "type-1".getBytes(StandardCharsets.UTF_8);
+        long next = 0;
+        while (next < events) {
+            Sink.Memory sink = new Sink.Memory();
+            next = memTable.readType(type, 0, Integer.MAX_VALUE, sink);
+            //only complete events are visible
+            assertEquals(next * eventSize, sink.data().length);
+        }
+        writer.join();
+    }
+
     @Test
     public void clear() {
     }
@@ -0,0 +1,128 @@
+package io.joshworks.es2;
+
+import io.joshworks.es2.sink.Sink;
+import io.joshworks.es2.sstable.StreamBlockDeserializer;
+import io.joshworks.es2.sstable.TestEvent;
+import io.joshworks.fstore.core.util.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ShardedEventStoreTest {
+
+    private static final int SHARDS = 4;
+
+    private ShardedEventStore store;
+    private File root;
+
+    @Before
+    public void setUp() {
+        root = TestUtils.testFolder();
+        store = new ShardedEventStore(root.toPath(), SHARDS);
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+        TestUtils.deleteRecursively(root);
+    }
+
+    @Test
+    public void append_many_streams() {
+        int streams = 100;
+        int versions = 50;
+        for (int v = 0; v < versions; v++) {
+            List<CompletableFuture<Void>> tasks = new ArrayList<>();
+            for (int s = 0; s < streams; s++) {
+                tasks.add(store.append(TestEvent.create("stream-" + s, Event.NO_VERSION, 0, "type-a", "data").serialize()));
+            }
+            CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new)).join();
+        }
+
+        for (int s = 0; s < streams; s++) {
+            assertEquals(versions - 1, store.version(StreamHasher.hash("stream-" + s)));
+        }
+    }
+
+    @Test
+    public void read() {
+        String stream = "stream-1";
+        store.append(TestEvent.create(stream, Event.NO_VERSION, 0, "type-a", "data-1").serialize()).join();
+        store.append(TestEvent.create(stream, Event.NO_VERSION, 0, "type-a", "data-2").serialize()).join();
+
+        Sink.Memory sink = new Sink.Memory();
+        int read = store.read(StreamHasher.hash(stream), 0, sink);
+        assertTrue(read > 0);
+
+        List<TestEvent> events = StreamBlockDeserializer.deserialize(sink.data());
+        assertEquals(2, events.size());
+        assertEquals(0, events.get(0).version);
+        assertEquals(1, events.get(1).version);
+    }
+
+    @Test
+    public void read_many() {
+        int streams = 20;
+        long[] hashes = new long[streams + 1];
+        for (int s = 0; s < streams; s++) {
+            store.append(TestEvent.create("stream-" + s, Event.NO_VERSION, 0, "type-a", "data").serialize()).join();
+            hashes[s] = StreamHasher.hash("stream-" + s);
+        }
+        hashes[streams] = StreamHasher.hash("absent");
+
+        int[] results = store.read(hashes, 0, new Sink.Memory());
+        for (int s = 0; s < streams; s++) {
+            assertTrue(results[s] > 0);
+        }
+        assertTrue(results[streams] < 0);
+    }
+
+    @Test
+    public void sequences_are_unique_across_shards() {
+        store.close();
+        store = new ShardedEventStore(TestUtils.testFolder().toPath(), SHARDS, true);
+
+        int streams = 40;
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        for (int s = 0; s < streams; s++) {
+            tasks.add(store.append(TestEvent.create("stream-" + s, Event.NO_VERSION, 0, "type-a", "data").serialize()));
+        }
+        CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new)).join();
+
+        Sink.Memory sink = new Sink.Memory();
+        long next = store.readType("type-a", 0, Integer.MAX_VALUE, sink);
+        assertEquals(streams, next);
+    }
+
+    @Test
+    public void read_type_stops_at_sequences_still_being_written() {
+        store.close();
+        store = new ShardedEventStore(TestUtils.testFolder().toPath(), SHARDS, true);
+
+        store.append(TestEvent.create("stream-0", Event.NO_VERSION, 0, "type-a", "data").serialize()).join();
+        //a shard that took the next sequence but hasn't committed yet
+        long pending = store.sequence().reserve(1);
+        store.append(TestEvent.create("stream-1", Event.NO_VERSION, 0, "type-a", "data").serialize()).join();
+
+        Sink.Memory sink = new Sink.Memory();
+        long next = store.readType("type-a", 0, Integer.MAX_VALUE, sink);
+        assertEquals(pending, next);
+        assertEquals(0, Event.sequence(ByteBuffer.wrap(sink.data())));
+
+        store.sequence().complete(pending);
+        sink = new Sink.Memory();
+        next = store.readType("type-a", next, Integer.MAX_VALUE, sink);
+        assertEquals(pending + 2, next);
+        assertEquals(pending + 1, Event.sequence(ByteBuffer.wrap(sink.data())));
+    }
+
+}
@@ -0,0 +1,73 @@
+package io.joshworks.es2;
+
+import io.joshworks.es2.sstable.BlockCodec;
+import io.joshworks.es2.sstable.StreamBlockDeserializer;
+import io.joshworks.es2.sstable.TestEvent;
+import io.joshworks.fstore.core.util.ByteBufferChecksum;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StreamBlockTest {
+
+    @Test
+    public void block_header() {
+        ByteBuffer event = TestEvent.create("stream-1", 0, 0, "type-a", "data").serialize();
+        ByteBuffer block = block(StreamBlock.HEADER_BYTES, event);
+        StreamBlock.writeHeader(block, 123, 0, 1, event.remaining(), Event.typeBit(event), BlockCodec.NONE);
+
+        assertTrue(StreamBlock.isValid(block));
+        assertEquals(StreamBlock.HEADER_BYTES, StreamBlock.headerSize(block));
+        assertEquals(BlockCodec.NONE.id, StreamBlock.codec(block));
+        assertEquals(Event.typeBit(event), StreamBlock.types(block));
+        assertFalse(StreamBlock.sparse(block));
+        assertEquals(1, StreamBlockDeserializer.deserialize(block).size());
+    }
+
+    @Test
+    public void sparse_block_header() {
+        ByteBuffer event = TestEvent.create("stream-1", 5, 0, "type-a", "data").serialize();
+        ByteBuffer block = block(StreamBlock.HEADER_BYTES, event);
+        StreamBlock.writeHeader(block, 123, 5, 1, event.remaining(), Event.typeBit(event), BlockCodec.NONE, true);
+
+        assertTrue(StreamBlock.isValid(block));
+        assertTrue(StreamBlock.sparse(block));
+        assertEquals(BlockCodec.NONE.id, StreamBlock.codec(block));
+    }
+
+    @Test
+    public void blocks_without_types_are_readable() {
+        ByteBuffer event = TestEvent.create("stream-1", 0, 0, "type-a", "data").serialize();
+        ByteBuffer block = block(StreamBlock.V0_HEADER_BYTES, event);
+        //header as written before TYPES was added
+        block.putInt(0, block.remaining());
+        block.putLong(4, 123);
+        block.putInt(12, 0);
+        block.putInt(16, 1);
+        block.putInt(20, ByteBufferChecksum.crc32(block, StreamBlock.V0_HEADER_BYTES, event.remaining()));
+        block.putInt(24, event.remaining());
+        block.put(28, BlockCodec.NONE.id);
+
+        assertTrue(StreamBlock.isValid(block));
+        assertEquals(StreamBlock.V0_HEADER_BYTES, StreamBlock.headerSize(block));
+        assertEquals(-1L, StreamBlock.types(block));
+        assertEquals(123, StreamBlock.stream(block));
+        assertEquals(1, StreamBlock.entries(block));
+
+        List<TestEvent> events = StreamBlockDeserializer.deserialize(block);
+        assertEquals(1, events.size());
+        assertEquals("data", events.get(0).data);
+    }
+
+    private static ByteBuffer block(int headerSize, ByteBuffer event) {
+        ByteBuffer block = ByteBuffer.allocate(headerSize + event.remaining());
+        block.position(headerSize);
+        block.put(event.duplicate());
+        return block.flip();
+    }
+}
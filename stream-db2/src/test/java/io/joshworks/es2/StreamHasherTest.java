@@ -0,0 +1,49 @@
+package io.joshworks.es2;
+
+import io.joshworks.fstore.core.hash.Murmur3Hash;
+import io.joshworks.fstore.core.hash.XXHash;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class StreamHasherTest {
+
+    private static final String[] NAMES = {"", "a", "abc", "stream-1", "user-12345678", "café", "流-123", "emoji-😀", "bad-\ud83d-surrogate"};
+
+    @Test
+    public void string_hash_is_unchanged() {
+        for (String name : NAMES) {
+            assertEquals(name, legacyHash(name), StreamHasher.hash(name));
+            //cached
+            assertEquals(name, legacyHash(name), StreamHasher.hash(name));
+        }
+    }
+
+    @Test
+    public void char_sequence() {
+        for (String name : NAMES) {
+            assertEquals(name, legacyHash(name), StreamHasher.hash(new StringBuilder(name)));
+        }
+    }
+
+    @Test
+    public void buffer_slice() {
+        for (String name : NAMES) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer frame = ByteBuffer.allocate(bytes.length + 13);
+            frame.position(7).put(bytes);
+            assertEquals(name, legacyHash(name), StreamHasher.hash(frame, 7, bytes.length));
+        }
+    }
+
+    private static long legacyHash(String stream) {
+        byte[] data = stream.getBytes(StandardCharsets.UTF_8);
+        long high = ((long) new XXHash().hash32(data)) << Integer.SIZE;
+        int low = new Murmur3Hash().hash32(data);
+        return high | ((1L << Integer.SIZE) - 1 & low);
+    }
+
+}
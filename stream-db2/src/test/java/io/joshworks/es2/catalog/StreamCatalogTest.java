@@ -0,0 +1,148 @@
+package io.joshworks.es2.catalog;
+
+import io.joshworks.es2.StreamHasher;
+import io.joshworks.fstore.core.util.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StreamCatalogTest {
+
+    private static final int FLUSH_THRESHOLD = 100;
+
+    private File root;
+    private ExecutorService executor;
+    private StreamCatalog catalog;
+
+    @Before
+    public void setUp() {
+        root = TestUtils.testFolder();
+        executor = Executors.newSingleThreadExecutor();
+        catalog = new StreamCatalog(root.toPath(), executor, StreamHasher::hash, FLUSH_THRESHOLD);
+    }
+
+    @After
+    public void tearDown() {
+        catalog.close();
+        executor.shutdown();
+        TestUtils.deleteRecursively(root);
+    }
+
+    @Test
+    public void register() {
+        long hash = catalog.register("stream-1");
+        assertEquals(StreamHasher.hash("stream-1"), hash);
+        assertEquals(hash, catalog.register("stream-1"));
+        assertEquals(hash, catalog.hash("stream-1").getAsLong());
+        assertEquals("stream-1", catalog.name(hash));
+        assertFalse(catalog.hash("stream-2").isPresent());
+        assertNull(catalog.name(StreamHasher.hash("stream-2")));
+    }
+
+    @Test
+    public void resolved_names_are_cached() {
+        catalog.close();
+        AtomicInteger hashed = new AtomicInteger();
+        catalog = new StreamCatalog(TestUtils.testFolder().toPath(), executor, name -> {
+            hashed.incrementAndGet();
+            return StreamHasher.hash(name);
+        }, FLUSH_THRESHOLD);
+
+        long hash = catalog.register("stream-1");
+        catalog.flush();
+        int before = hashed.get();
+        for (int i = 0; i < 10; i++) {
+            assertEquals(hash, catalog.register("stream-1"));
+            assertEquals(hash, catalog.hash("stream-1").getAsLong());
+        }
+        assertEquals(before, hashed.get());
+    }
+
+    @Test
+    public void collisions_get_alternative_hashes() {
+        catalog.close();
+        catalog = new StreamCatalog(TestUtils.testFolder().toPath(), executor, name -> 42L, FLUSH_THRESHOLD);
+
+        int streams = FLUSH_THRESHOLD + 10;
+        Set<Long> hashes = new HashSet<>();
+        for (int i = 0; i < streams; i++) {
+            hashes.add(catalog.register("stream-" + i));
+        }
+        assertEquals(streams, hashes.size());
+        assertTrue(catalog.collisions() > 0);
+        for (int i = 0; i < streams; i++) {
+            long hash = catalog.hash("stream-" + i).getAsLong();
+            assertEquals("stream-" + i, catalog.name(hash));
+        }
+    }
+
+    @Test
+    public void restore() {
+        int streams = FLUSH_THRESHOLD * 2 + 10;
+        for (int i = 0; i < streams; i++) {
+            catalog.register("stream-" + i);
+        }
+        catalog.close();
+        catalog = new StreamCatalog(root.toPath(), executor, StreamHasher::hash, FLUSH_THRESHOLD);
+
+        for (int i = 0; i < streams; i++) {
+            assertEquals("stream-" + i, catalog.name(StreamHasher.hash("stream-" + i)));
+        }
+    }
+
+    @Test
+    public void list_prefix() {
+        for (int i = 0; i < FLUSH_THRESHOLD * 2 + 10; i++) {
+            catalog.register("user-" + i);
+            catalog.register("order-" + i);
+        }
+        List<String> users = catalog.list("user-1", Integer.MAX_VALUE);
+        for (String user : users) {
+            assertTrue(user.startsWith("user-1"));
+        }
+        //user-1, user-10..user-19, user-100..user-199
+        assertEquals(111, users.size());
+        List<String> sorted = new ArrayList<>(users);
+        sorted.sort(String::compareTo);
+        assertEquals(sorted, users);
+
+        assertEquals(5, catalog.list("order-", 5).size());
+    }
+
+    @Test
+    public void list_pattern() {
+        for (int i = 0; i < FLUSH_THRESHOLD * 2; i++) {
+            catalog.register("user-" + i);
+        }
+        assertEquals(List.of("user-7", "user-77"), catalog.list(Pattern.compile("user-7+"), 10));
+    }
+
+    @Test
+    public void compaction() {
+        int streams = FLUSH_THRESHOLD * 4;
+        for (int i = 0; i < streams; i++) {
+            catalog.register("stream-" + i);
+        }
+        catalog.compact().join();
+        for (int i = 0; i < streams; i++) {
+            assertEquals("stream-" + i, catalog.name(StreamHasher.hash("stream-" + i)));
+        }
+        assertEquals(streams, catalog.list("stream-", Integer.MAX_VALUE).size());
+    }
+
+}
@@ -9,11 +9,13 @@ import org.junit.Test;
 import java.io.File;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import static io.joshworks.es2.directory.Metadata.add;
 import static io.joshworks.es2.directory.Metadata.delete;
 import static io.joshworks.es2.directory.Metadata.merge;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class MetadataTest {
 
@@ -56,6 +58,53 @@ public class MetadataTest {
         assertEquals(3, state.iterator().next().idx());
     }
 
+    @Test
+    public void checkpoint_keeps_state() {
+        metadata.append(add(seg(1)));
+        metadata.append(add(seg(2)));
+        metadata.append(merge(seg(3), List.of(seg(1), seg(2))));
+        metadata.checkpoint();
+        metadata.append(add(seg(4)));
+
+        metadata.close();
+        metadata = new Metadata(testFile);
+
+        assertEquals(Set.of(3L, 4L), metadata.state().stream().map(SegmentId::idx).collect(Collectors.toSet()));
+    }
+
+    @Test
+    public void checkpoint_empty_state() {
+        metadata.append(add(seg(1)));
+        metadata.append(delete(List.of(seg(1))));
+        metadata.checkpoint();
+
+        metadata.close();
+        metadata = new Metadata(testFile);
+
+        assertTrue(metadata.state().isEmpty());
+        metadata.append(add(seg(1)));
+        assertEquals(1, metadata.state().size());
+    }
+
+    @Test
+    public void log_is_compacted_periodically() {
+        for (int i = 0; i < Metadata.CHECKPOINT_INTERVAL * 3; i++) {
+            metadata.append(add(seg(i)));
+            if (i > 0) {
+                metadata.append(delete(List.of(seg(i - 1))));
+            }
+        }
+        //one checkpoint record with one segment plus less than CHECKPOINT_INTERVAL records after it
+        assertTrue(testFile.length() < Metadata.CHECKPOINT_INTERVAL * 40L);
+
+        metadata.close();
+        metadata = new Metadata(testFile);
+
+        Set<SegmentId> state = metadata.state();
+        assertEquals(1, state.size());
+        assertEquals(Metadata.CHECKPOINT_INTERVAL * 3 - 1, state.iterator().next().idx());
+    }
+
     @Test(expected = Exception.class)
     public void deleting_without_segment_throw_exception() {
         metadata.append(delete(List.of(seg(1))));
@@ -95,6 +144,11 @@ public class MetadataTest {
         public String name() {
             return name;
         }
+
+        @Override
+        public List<File> files() {
+            return List.of();
+        }
     }
 
 }
\ No newline at end of file
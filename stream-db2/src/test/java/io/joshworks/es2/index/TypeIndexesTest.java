@@ -0,0 +1,142 @@
+package io.joshworks.es2.index;
+
+import io.joshworks.es2.Event;
+import io.joshworks.es2.sstable.EventSerializer;
+import io.joshworks.fstore.core.util.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TypeIndexesTest {
+
+    private TypeIndexes index;
+    private Path folder;
+
+    @Before
+    public void open() {
+        folder = TestUtils.testFolder().toPath();
+        index = new TypeIndexes(folder, Executors.newSingleThreadExecutor());
+    }
+
+    @After
+    public void tearDown() {
+        index.delete();
+        TestUtils.deleteRecursively(folder.toFile());
+    }
+
+    @Test
+    public void find() {
+        index.flush(events(0, 10).iterator());
+
+        List<TypeIndexEntry> found = index.find(typeHash("type-b"), 0, Integer.MAX_VALUE);
+        assertEquals(5, found.size());
+        for (int i = 0; i < found.size(); i++) {
+            assertEquals(i * 2 + 1, found.get(i).sequence());
+        }
+    }
+
+    @Test
+    public void find_from_sequence() {
+        index.flush(events(0, 10).iterator());
+
+        List<TypeIndexEntry> found = index.find(typeHash("type-a"), 5, Integer.MAX_VALUE);
+        assertEquals(List.of(6L, 8L), found.stream().map(TypeIndexEntry::sequence).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void find_many_leaf_blocks() {
+        int items = 100_000;
+        index.flush(events(0, items).iterator());
+
+        List<TypeIndexEntry> found = index.find(typeHash("type-a"), 0, Integer.MAX_VALUE);
+        assertEquals(items / 2, found.size());
+        for (int i = 0; i < found.size(); i++) {
+            assertEquals(i * 2L, found.get(i).sequence());
+        }
+    }
+
+    @Test
+    public void find_across_segments() {
+        index.flush(events(0, 10).iterator());
+        index.flush(events(10, 10).iterator());
+
+        List<TypeIndexEntry> found = index.find(typeHash("type-b"), 0, Integer.MAX_VALUE);
+        assertEquals(10, found.size());
+        for (int i = 0; i < found.size(); i++) {
+            assertEquals(i * 2 + 1, found.get(i).sequence());
+        }
+    }
+
+    @Test
+    public void compaction() {
+        for (int i = 0; i < 5; i++) {
+            index.flush(events(i * 1000L, 1000).iterator());
+        }
+        index.compact().join();
+
+        List<TypeIndexEntry> found = index.find(typeHash("type-a"), 0, Integer.MAX_VALUE);
+        assertEquals(2500, found.size());
+        for (int i = 0; i < found.size(); i++) {
+            assertEquals(i * 2L, found.get(i).sequence());
+        }
+    }
+
+    @Test
+    public void duplicate_entries_are_dropped() {
+        //same events indexed twice, as when a flush is replayed after a crash
+        index.flush(events(0, 10).iterator());
+        index.flush(events(0, 10).iterator());
+        index.flush(events(10, 10).iterator());
+
+        assertEquals(10, index.find(typeHash("type-b"), 0, Integer.MAX_VALUE).size());
+
+        index.compact().join();
+        List<TypeIndexEntry> found = index.find(typeHash("type-b"), 0, Integer.MAX_VALUE);
+        assertEquals(10, found.size());
+        for (int i = 0; i < found.size(); i++) {
+            assertEquals(i * 2 + 1, found.get(i).sequence());
+        }
+    }
+
+    @Test
+    public void max_entries() {
+        index.flush(events(0, 100).iterator());
+        List<TypeIndexEntry> found = index.find(typeHash("type-a"), 0, 3);
+        assertEquals(3, found.size());
+    }
+
+    @Test
+    public void entry_points_to_event() {
+        index.flush(events(0, 10).iterator());
+        List<TypeIndexEntry> found = index.find(typeHash("type-b"), 3, 1);
+        assertTrue(found.size() == 1);
+        assertEquals(3, found.get(0).version());
+    }
+
+    private static int typeHash(String type) {
+        return Event.typeHash(type.getBytes(StandardCharsets.UTF_8));
+    }
+
+    //alternating type-a and type-b events, each in its own stream
+    private static List<ByteBuffer> events(long startSequence, int count) {
+        List<ByteBuffer> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            long sequence = startSequence + i;
+            String type = sequence % 2 == 0 ? "type-a" : "type-b";
+            events.add(EventSerializer.serialize("stream-" + (sequence % 7), type, (int) sequence, "data", sequence));
+        }
+        return events;
+    }
+
+}
@@ -0,0 +1,30 @@
+package io.joshworks.es2.log;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SequenceTest {
+
+    @Test
+    public void committed_is_the_lowest_pending_sequence() {
+        Sequence sequence = new Sequence();
+        long first = sequence.reserve(1);
+        long second = sequence.reserve(3);
+        assertEquals(4, sequence.next());
+        assertEquals(first, sequence.committed());
+
+        sequence.complete(second);
+        assertEquals(first, sequence.committed());
+
+        sequence.complete(first);
+        assertEquals(4, sequence.committed());
+    }
+
+    @Test
+    public void assigned_sequences_are_never_pending() {
+        Sequence sequence = new Sequence(10);
+        assertEquals(10, sequence.assign());
+        assertEquals(11, sequence.committed());
+    }
+}
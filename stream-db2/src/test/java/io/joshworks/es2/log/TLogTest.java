@@ -0,0 +1,96 @@
+package io.joshworks.es2.log;
+
+import io.joshworks.es2.Event;
+import io.joshworks.es2.sstable.EventSerializer;
+import io.joshworks.fstore.core.util.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+
+public class TLogTest {
+
+    private File root;
+    private TLog tlog;
+
+    @Before
+    public void setUp() {
+        root = TestUtils.testFolder();
+        tlog = new TLog(root.toPath(), Executors.newSingleThreadExecutor());
+    }
+
+    @After
+    public void tearDown() {
+        TestUtils.deleteRecursively(root);
+    }
+
+    @Test
+    public void group_events_have_contiguous_sequences() throws Exception {
+        tlog.append(EventSerializer.serialize("stream-1", "type-a", 0, "data", 0));
+        tlog.appendAll(events("stream-2", 5));
+        tlog.roll();
+
+        List<ByteBuffer> read = new ArrayList<>();
+        ByteBuffer data = ByteBuffer.wrap(readLog());
+        int valid = TLog.read(data, read::add);
+
+        assertEquals(data.remaining(), valid);
+        assertEquals(6, read.size());
+        for (int i = 0; i < read.size(); i++) {
+            assertEquals(i, Event.sequence(read.get(i)));
+        }
+    }
+
+    @Test
+    public void partial_group_is_discarded() throws Exception {
+        tlog.append(EventSerializer.serialize("stream-1", "type-a", 0, "data", 0));
+        tlog.appendAll(events("stream-2", 5));
+        tlog.roll();
+
+        byte[] log = readLog();
+        ByteBuffer torn = ByteBuffer.wrap(Arrays.copyOf(log, log.length - 1));
+        List<ByteBuffer> read = new ArrayList<>();
+        int valid = TLog.read(torn, read::add);
+
+        assertEquals(1, read.size());
+        assertEquals(Event.sizeOf(read.get(0)), valid);
+    }
+
+    @Test
+    public void corrupted_group_is_discarded() throws Exception {
+        tlog.appendAll(events("stream-2", 5));
+        tlog.roll();
+
+        byte[] log = readLog();
+        log[log.length / 2] ^= 1;
+        List<ByteBuffer> read = new ArrayList<>();
+        int valid = TLog.read(ByteBuffer.wrap(log), read::add);
+
+        assertEquals(0, read.size());
+        assertEquals(0, valid);
+    }
+
+    private byte[] readLog() throws Exception {
+        File[] logs = root.listFiles((dir, name) -> name.endsWith(".log"));
+        Arrays.sort(logs);
+        return Files.readAllBytes(logs[0].toPath());
+    }
+
+    private static List<ByteBuffer> events(String stream, int count) {
+        List<ByteBuffer> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            events.add(EventSerializer.serialize(stream, "type-a", i, "data-" + i, 0));
+        }
+        return events;
+    }
+
+}
@@ -1,10 +1,13 @@
 package io.joshworks.es2.sstable;
 
 import io.joshworks.es2.Event;
+import io.joshworks.es2.LengthPrefixedIterator;
+import io.joshworks.es2.StreamBlock;
 import io.joshworks.es2.StreamHasher;
 import io.joshworks.es2.index.IndexEntry;
 import io.joshworks.es2.sink.Sink;
 import io.joshworks.fstore.core.iterators.Iterators;
+import io.joshworks.fstore.core.util.Memory;
 import io.joshworks.fstore.core.util.TestUtils;
 import org.junit.After;
 import org.junit.Before;
@@ -12,7 +15,10 @@ import org.junit.Test;
 
 import java.io.File;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Random;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -103,4 +109,88 @@ public class SSTableTest {
 
     }
 
+    @Test
+    public void blocks_not_compressing_enough_are_stored_raw() {
+        String stream = "stream-1";
+        var policy = CompressionPolicy.of(BlockCodec.SNAPPY).maxRatio(0.01);
+        var writer = new StreamBlockWriter(BlockCodec.SNAPPY, BlockCodec.SNAPPY.codec, Memory.PAGE_SIZE, policy, CodecStats.create());
+
+        List<ByteBuffer> events = IntStream.range(0, 10)
+                .mapToObj(v -> EventSerializer.serialize(stream, "type-1", v, "data", 0))
+                .collect(Collectors.toList());
+        sstable = SSTable.create(dataFile, events.iterator(), writer);
+
+        Sink.Memory memory = new Sink.Memory();
+        long res = sstable.get(StreamHasher.hash(stream), 0, memory);
+        assertTrue(res > 0);
+
+        ByteBuffer block = ByteBuffer.wrap(memory.data());
+        assertEquals(BlockCodec.NONE.id, StreamBlock.codec(block));
+        assertEquals(10, StreamBlockDeserializer.deserialize(block).size());
+        assertEquals(1, writer.stats().get(BlockCodec.SNAPPY).rejected());
+    }
+
+    @Test
+    public void compaction_recompresses_blocks_with_target_codec() {
+        String stream = "stream-1";
+        List<ByteBuffer> events = IntStream.range(0, 200)
+                .mapToObj(v -> EventSerializer.serialize(stream, "type-1", v, "data-data-data-data", 0))
+                .collect(Collectors.toList());
+        sstable = SSTable.create(dataFile, events.iterator());
+
+        File target = TestUtils.testFile();
+        var policy = CompressionPolicy.of(BlockCodec.DEFLATE);
+        var writer = new StreamBlockWriter(BlockCodec.DEFLATE, BlockCodec.DEFLATE.codec, Memory.PAGE_SIZE, policy, CodecStats.create());
+        try (var handle = sstable.acquire()) {
+            SSTable.writeBlocks(target, new LengthPrefixedIterator(handle.data), writer);
+        }
+
+        SSTable compacted = SSTable.open(target);
+        try {
+            for (int version = 0; version < 200; version++) {
+                Sink.Memory memory = new Sink.Memory();
+                assertTrue(compacted.get(StreamHasher.hash(stream), version, memory) > 0);
+                ByteBuffer block = ByteBuffer.wrap(memory.data());
+                assertEquals(BlockCodec.DEFLATE.id, StreamBlock.codec(block));
+                List<TestEvent> read = StreamBlockDeserializer.deserialize(block);
+                assertEquals(version, read.get(version - StreamBlock.startVersion(block)).version);
+            }
+            assertTrue(writer.stats().get(BlockCodec.DEFLATE).blocks() > 0);
+        } finally {
+            compacted.delete();
+        }
+    }
+
+    @Test
+    public void high_entropy_blocks_are_not_compressed() {
+        String stream = "stream-1";
+        //random ASCII, close to 7 bits per byte once serialized as UTF-8
+        Random random = new Random(123);
+        byte[] noise = new byte[3000];
+        for (int i = 0; i < noise.length; i++) {
+            noise[i] = (byte) random.nextInt(128);
+        }
+        String randomData = new String(noise, StandardCharsets.US_ASCII);
+
+        var policy = CompressionPolicy.of(BlockCodec.SNAPPY).maxEntropy(6);
+        var writer = new StreamBlockWriter(BlockCodec.SNAPPY, BlockCodec.SNAPPY.codec, Memory.PAGE_SIZE, policy, CodecStats.create());
+        List<ByteBuffer> events = List.of(
+                EventSerializer.serialize(stream, "type-1", 0, randomData, 0),
+                EventSerializer.serialize("stream-2", "type-1", 0, "data".repeat(500), 0));
+        events = events.stream().sorted(Comparator.comparingLong(Event::stream)).collect(Collectors.toList());
+        sstable = SSTable.create(dataFile, events.iterator(), writer);
+
+        assertEquals(BlockCodec.NONE.id, blockCodec(stream));
+        assertEquals(BlockCodec.SNAPPY.id, blockCodec("stream-2"));
+        //sampled blocks are never handed to the codec
+        assertEquals(1, writer.stats().get(BlockCodec.SNAPPY).blocks());
+        assertEquals(1, writer.stats().get(BlockCodec.NONE).blocks());
+    }
+
+    private byte blockCodec(String stream) {
+        Sink.Memory memory = new Sink.Memory();
+        assertTrue(sstable.get(StreamHasher.hash(stream), 0, memory) > 0);
+        return StreamBlock.codec(ByteBuffer.wrap(memory.data()));
+    }
+
 }
\ No newline at end of file
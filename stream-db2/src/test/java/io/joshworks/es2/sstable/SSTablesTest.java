@@ -1,5 +1,6 @@
 package io.joshworks.es2.sstable;
 
+import io.joshworks.es2.StreamBlock;
 import io.joshworks.es2.StreamHasher;
 import io.joshworks.es2.sink.Sink;
 import io.joshworks.fstore.core.iterators.Iterators;
@@ -8,13 +9,26 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.IntStream;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class SSTablesTest {
 
@@ -79,6 +93,198 @@ public class SSTablesTest {
     }
 
 
+    @Test
+    public void batched_get() {
+        int numStreams = 5000;
+        List<String> streams = IntStream.range(0, numStreams)
+                .mapToObj(i -> "stream-" + i)
+                .sorted(Comparator.comparingLong(StreamHasher::hash))
+                .collect(Collectors.toList());
+
+        sstables.flush(streams.stream()
+                .flatMap(stream -> IntStream.range(0, 3).mapToObj(v -> createEntry(stream, v)))
+                .iterator());
+
+        //every other stream, plus absent ones
+        long[] hashes = IntStream.range(0, numStreams * 2)
+                .filter(i -> i % 2 == 0)
+                .mapToLong(i -> StreamHasher.hash("stream-" + i))
+                .sorted()
+                .toArray();
+
+        int[] results = new int[hashes.length];
+        Arrays.fill(results, SSTable.NO_DATA);
+        Sink.Memory batchSink = new Sink.Memory();
+        sstables.get(hashes, 1, batchSink, results);
+
+        int found = 0;
+        Sink.Memory singleSink = new Sink.Memory();
+        for (int i = 0; i < hashes.length; i++) {
+            int expected = sstables.get(hashes[i], 1, singleSink);
+            assertEquals(expected, results[i]);
+            found += results[i] > 0 ? 1 : 0;
+        }
+        assertEquals(numStreams / 2, found);
+        assertArrayEquals(singleSink.data(), batchSink.data());
+    }
+
+    @Test
+    public void dictionary_codec() {
+        Path dictFolder = TestUtils.testFolder().toPath();
+        SSTables sstables = new SSTables(dictFolder, Executors.newSingleThreadExecutor(), BlockCodec.DICTIONARY);
+
+        String stream = "stream-1";
+        long streamHash = StreamHasher.hash(stream);
+        //first flush trains the dictionary, second one uses it
+        for (int seg = 0; seg < 2; seg++) {
+            var startVersion = seg * 100;
+            sstables.flush(IntStream.range(startVersion, startVersion + 100)
+                    .mapToObj(i -> createEntry(stream, i))
+                    .iterator());
+        }
+
+        Sink.Memory mem = new Sink.Memory();
+        int res = sstables.get(streamHash, 150, mem);
+        assertTrue(res > 0);
+
+        ByteBuffer block = ByteBuffer.wrap(mem.data());
+        assertEquals(BlockCodec.DICTIONARY.id, StreamBlock.codec(block));
+        List<TestEvent> events = StreamBlockDeserializer.deserialize(block, sstables::codec);
+        assertEquals(100, events.size());
+        assertEquals(100, events.get(0).version);
+
+        //dictionaries are scoped to the store
+        try {
+            StreamBlockDeserializer.deserialize(block);
+            fail("Expected dictionary not found");
+        } catch (IllegalStateException expected) {
+            //no dictionaries outside the store
+        }
+
+        sstables.delete();
+        TestUtils.deleteRecursively(dictFolder.toFile());
+    }
+
+    @Test
+    public void bulk_load_uses_trained_dictionary() {
+        Path dictFolder = TestUtils.testFolder().toPath();
+        SSTables sstables = new SSTables(dictFolder, Executors.newSingleThreadExecutor(), BlockCodec.DICTIONARY);
+
+        sstables.flush(IntStream.range(0, 100).mapToObj(i -> createEntry("stream-1", i)).iterator());
+        sstables.load(List.of(IntStream.range(0, 100).mapToObj(i -> createEntry("stream-2", i)).iterator()), Runnable::run);
+
+        assertEquals(BlockCodec.DICTIONARY.id, firstBlockCodec(sstables, "stream-2"));
+        Sink.Memory mem = new Sink.Memory();
+        sstables.get(StreamHasher.hash("stream-2"), 0, mem);
+        assertEquals(0, StreamBlockDeserializer.deserialize(ByteBuffer.wrap(mem.data()), sstables::codec).get(0).version);
+
+        sstables.delete();
+        TestUtils.deleteRecursively(dictFolder.toFile());
+    }
+
+    @Test
+    public void snapshot_includes_dictionaries() throws IOException {
+        Path dictFolder = TestUtils.testFolder().toPath();
+        SSTables sstables = new SSTables(dictFolder, Executors.newSingleThreadExecutor(), BlockCodec.DICTIONARY);
+        sstables.flush(IntStream.range(0, 100).mapToObj(i -> createEntry("stream-1", i)).iterator());
+
+        File target = TestUtils.testFolder();
+        Map<String, Long> files;
+        try (var snapshot = sstables.snapshot()) {
+            files = snapshot.linkTo(target);
+        }
+        assertTrue(files.keySet().stream().anyMatch(name -> name.endsWith(".dict")));
+
+        //linked files share the store file locks, restore from a copy
+        File restored = TestUtils.testFolder();
+        for (String file : files.keySet()) {
+            Files.copy(target.toPath().resolve(file), restored.toPath().resolve(file));
+        }
+        SSTables copy = new SSTables(restored.toPath(), Executors.newSingleThreadExecutor(), BlockCodec.DICTIONARY);
+        Sink.Memory mem = new Sink.Memory();
+        assertTrue(copy.get(StreamHasher.hash("stream-1"), 0, mem) > 0);
+        assertEquals(0, StreamBlockDeserializer.deserialize(ByteBuffer.wrap(mem.data()), copy::codec).get(0).version);
+
+        copy.delete();
+        sstables.delete();
+        TestUtils.deleteRecursively(dictFolder.toFile());
+        TestUtils.deleteRecursively(target);
+        TestUtils.deleteRecursively(restored);
+    }
+
+    @Test
+    public void bulk_load_without_trained_dictionary_uses_snappy() {
+        Path dictFolder = TestUtils.testFolder().toPath();
+        SSTables sstables = new SSTables(dictFolder, Executors.newSingleThreadExecutor(), BlockCodec.DICTIONARY);
+
+        sstables.load(List.of(IntStream.range(0, 100).mapToObj(i -> createEntry("stream-1", i)).iterator()), Runnable::run);
+        assertEquals(BlockCodec.SNAPPY.id, firstBlockCodec(sstables, "stream-1"));
+
+        sstables.delete();
+        TestUtils.deleteRecursively(dictFolder.toFile());
+    }
+
+    private static byte firstBlockCodec(SSTables sstables, String stream) {
+        Sink.Memory mem = new Sink.Memory();
+        assertTrue(sstables.get(StreamHasher.hash(stream), 0, mem) > 0);
+        return StreamBlock.codec(ByteBuffer.wrap(mem.data()));
+    }
+
+    @Test
+    public void open_tables_are_bounded() {
+        Path lazyFolder = TestUtils.testFolder().toPath();
+        SSTables sstables = new SSTables(lazyFolder, Executors.newSingleThreadExecutor(), new CompressionPolicy(), 2);
+
+        int tables = 5;
+        for (int t = 0; t < tables; t++) {
+            String stream = "stream-" + t;
+            sstables.flush(IntStream.range(0, 10).mapToObj(i -> createEntry(stream, i)).iterator());
+            assertTrue(sstables.openTables() <= 2);
+        }
+
+        //lookups visit every table, older tables are reopened on demand
+        for (int t = 0; t < tables; t++) {
+            assertEquals(9, sstables.version(StreamHasher.hash("stream-" + t)));
+            assertTrue(sstables.openTables() <= 2);
+        }
+
+        sstables.delete();
+        TestUtils.deleteRecursively(lazyFolder.toFile());
+    }
+
+    @Test
+    public void concurrent_reads_with_table_eviction() throws Exception {
+        Path lazyFolder = TestUtils.testFolder().toPath();
+        SSTables sstables = new SSTables(lazyFolder, Executors.newSingleThreadExecutor(), new CompressionPolicy(), 2);
+
+        int tables = 6;
+        for (int t = 0; t < tables; t++) {
+            String stream = "stream-" + t;
+            sstables.flush(IntStream.range(0, 10).mapToObj(i -> createEntry(stream, i)).iterator());
+        }
+
+        ExecutorService readers = Executors.newFixedThreadPool(4);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int r = 0; r < 4; r++) {
+            int offset = r;
+            tasks.add(readers.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    String stream = "stream-" + ((i + offset) % tables);
+                    assertEquals(9, sstables.version(StreamHasher.hash(stream)));
+                    assertTrue(sstables.get(StreamHasher.hash(stream), 5, new Sink.Memory()) > 0);
+                }
+            }));
+        }
+        for (Future<?> task : tasks) {
+            task.get();
+        }
+        readers.shutdown();
+        assertTrue(sstables.openTables() <= 2);
+
+        sstables.delete();
+        TestUtils.deleteRecursively(lazyFolder.toFile());
+    }
+
     private void assertStream(long streamHash, int expectedVersion) {
         int version = sstables.version(streamHash);
         assertEquals(expectedVersion, version);
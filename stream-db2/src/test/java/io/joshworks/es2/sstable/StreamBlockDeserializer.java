@@ -8,6 +8,7 @@ import io.joshworks.fstore.core.io.buffers.Buffers;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.IntFunction;
 
 public class StreamBlockDeserializer {
 
@@ -16,16 +17,21 @@ public class StreamBlockDeserializer {
     }
 
     public static List<TestEvent> deserialize(ByteBuffer block) {
+        return deserialize(block, id -> BlockCodec.from((byte) id));
+    }
+
+    public static List<TestEvent> deserialize(ByteBuffer block, IntFunction<Codec> codecs) {
         assert StreamBlock.isValid(block);
 
         int uncompressedSize = StreamBlock.uncompressedSize(block);
         byte codecId = StreamBlock.codec(block);
 
         ByteBuffer decompressed = Buffers.allocate(uncompressedSize, false);
-        Codec codec = BlockCodec.from(codecId);
+        Codec codec = codecs.apply(codecId);
 
         int chunkSize = StreamBlock.sizeOf(block);
-        ByteBuffer dataSlice = block.slice(block.position() + StreamBlock.HEADER_BYTES, chunkSize - StreamBlock.HEADER_BYTES);
+        int headerSize = StreamBlock.headerSize(block);
+        ByteBuffer dataSlice = block.slice(block.position() + headerSize, chunkSize - headerSize);
         codec.decompress(dataSlice, decompressed);
         decompressed.flip();
 